@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.rvesse.github.pr.stats.collectors.PullRequestsCollector;
+
+/**
+ * Measures collecting a whole pull request stream with
+ * {@link PullRequestsCollector}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class CollectorBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int size;
+
+    @Param({ "0", "2" })
+    public int precision;
+
+    private List<PullRequest> prs;
+
+    @Setup
+    public void setup() {
+        this.prs = new SyntheticPullRequests(Math.max(10, this.size / 50), 20160101L).generate(this.size);
+    }
+
+    @Benchmark
+    public PullRequestsCollector collect() {
+        PullRequestsCollector collector = new PullRequestsCollector(true, true);
+        collector.setPrecision(this.precision);
+        collector.start();
+        for (PullRequest pr : this.prs) {
+            collector.collect(null, pr);
+        }
+        collector.end();
+        return collector;
+    }
+}
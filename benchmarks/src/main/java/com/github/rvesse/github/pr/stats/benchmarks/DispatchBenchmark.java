@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.benchmarks;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.rvesse.github.pr.stats.collectors.AbstractPullRequestCollector;
+import com.github.rvesse.github.pr.stats.collectors.MergingUserCollector;
+import com.github.rvesse.github.pr.stats.collectors.PullRequestsCollector;
+import com.github.rvesse.github.pr.stats.collectors.UserCollector;
+
+/**
+ * Compares dispatching pull requests to the per-user collectors in a single
+ * classification pass against the previous approach of boxed map lookups
+ * followed by each user collector filtering and classifying the pull request
+ * again
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DispatchBenchmark {
+
+    private static final int SIZE = 100000;
+
+    @Param({ "100", "2000" })
+    public int users;
+
+    private List<PullRequest> prs;
+
+    @Setup
+    public void setup() {
+        this.prs = new SyntheticPullRequests(this.users, 20160101L).generate(SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public PullRequestsCollector singlePass() {
+        PullRequestsCollector collector = new PullRequestsCollector(true, true);
+        collector.start();
+        for (PullRequest pr : this.prs) {
+            collector.collect(null, pr);
+        }
+        collector.end();
+        return collector;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public Object perCollectorFiltering() {
+        AbstractPullRequestCollector global = new AbstractPullRequestCollector();
+        Map<Integer, UserCollector> users = new HashMap<Integer, UserCollector>();
+        Map<Integer, MergingUserCollector> mergers = new HashMap<Integer, MergingUserCollector>();
+        global.start();
+        for (PullRequest pr : this.prs) {
+            global.collect(null, pr);
+            if (pr.getMergedAt() != null && pr.getMergedBy() != null) {
+                MergingUserCollector merger = mergers.get(pr.getMergedBy().getId());
+                if (merger == null) {
+                    merger = new MergingUserCollector(pr.getMergedBy());
+                    merger.start();
+                    mergers.put(pr.getMergedBy().getId(), merger);
+                }
+                merger.collect(null, pr);
+            }
+            UserCollector user = users.get(pr.getUser().getId());
+            if (user == null) {
+                user = new UserCollector(pr.getUser());
+                user.start();
+                users.put(pr.getUser().getId(), user);
+            }
+            user.collect(null, pr);
+        }
+        global.end();
+        return users;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.rvesse.github.pr.stats.collectors.LongStatsCollector;
+
+/**
+ * Measures finishing a {@link LongStatsCollector} and calculating the
+ * distribution statistics used by the report
+ * <p>
+ * Distribution statistics are remembered once calculated so each invocation
+ * calculates them on a fresh copy of the collected values.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LongStatsBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int size;
+
+    @Param({ "0", "2" })
+    public int precision;
+
+    private long[] values;
+    private LongStatsCollector collector;
+
+    @Setup
+    public void setup() {
+        SyntheticPullRequests generator = new SyntheticPullRequests(100, 20160101L);
+        this.values = new long[this.size];
+        for (int i = 0; i < this.size; i++) {
+            PullRequest pr = generator.next(i + 1);
+            long end = pr.getClosedAt() != null ? pr.getClosedAt().getTime() : pr.getCreatedAt().getTime();
+            this.values[i] = TimeUnit.MILLISECONDS.toDays(end - pr.getCreatedAt().getTime());
+        }
+        this.collector = new LongStatsCollector(this.precision);
+        this.collector.start();
+        for (long value : this.values) {
+            this.collector.add(value);
+        }
+        this.collector.end();
+    }
+
+    @Benchmark
+    public LongStatsCollector collectAndEnd() {
+        LongStatsCollector collector = new LongStatsCollector(this.precision);
+        collector.start();
+        for (long value : this.values) {
+            collector.add(value);
+        }
+        collector.end();
+        return collector;
+    }
+
+    @Benchmark
+    public long[] modes(Cold cold) {
+        return cold.collector.getModes();
+    }
+
+    @Benchmark
+    public void percentiles(Cold cold, Blackhole bh) {
+        bh.consume(cold.collector.getPercentile(25));
+        bh.consume(cold.collector.getPercentile(50));
+        bh.consume(cold.collector.getPercentile(75));
+        bh.consume(cold.collector.getPercentile(100));
+    }
+
+    /**
+     * A copy of the collected values made before each invocation, so nothing
+     * has been calculated from them yet
+     */
+    @State(Scope.Thread)
+    public static class Cold {
+
+        private LongStatsCollector collector;
+
+        @Setup(Level.Invocation)
+        public void setup(LongStatsBenchmark benchmark) {
+            this.collector = new LongStatsCollector(benchmark.precision);
+            this.collector.start();
+            this.collector.combine(benchmark.collector);
+            this.collector.end();
+        }
+    }
+}
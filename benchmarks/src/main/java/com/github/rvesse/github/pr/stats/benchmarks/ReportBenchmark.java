@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.rvesse.airline.SingleCommand;
+import com.github.rvesse.github.pr.stats.PullRequestStats;
+import com.github.rvesse.github.pr.stats.collectors.PullRequestsCollector;
+import com.github.rvesse.github.pr.stats.report.ReportFormat;
+
+/**
+ * Measures rendering the full report, including all user and merging user
+ * statistics, for already collected statistics in each report format
+ * <p>
+ * Distribution statistics are remembered once calculated so each invocation
+ * renders a fresh copy of the collected statistics.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class ReportBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int size;
+
+    @Param({ "text", "json", "csv" })
+    public String format;
+
+    private PullRequestStats command;
+    private PullRequestsCollector collected, collector;
+    private ReportFormat reportFormat;
+
+    @Setup
+    public void setup() {
+        this.command = SingleCommand.singleCommand(PullRequestStats.class).parse("--all", "benchmarks/synthetic");
+        this.collected = new PullRequestsCollector(true, true);
+        this.collected.start();
+        for (PullRequest pr : new SyntheticPullRequests(Math.max(10, this.size / 50), 20160101L)
+                .generate(this.size)) {
+            this.collected.collect(null, pr);
+        }
+        this.collected.end();
+        this.reportFormat = ReportFormat.valueOf(this.format.toUpperCase(Locale.ROOT));
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        this.collector = new PullRequestsCollector(true, true);
+        this.collector.start();
+        this.collector.combine(this.collected);
+        this.collector.end();
+    }
+
+    @Benchmark
+    public void render() throws IOException {
+        // Discard the report so only rendering is measured
+        Writer writer = new Writer() {
+
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        this.command.outputReport(this.collector, this.reportFormat.createSink(writer));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.PullRequestMarker;
+import org.eclipse.egit.github.core.User;
+
+/**
+ * Generates synthetic pull request streams with a realistic skew
+ * <p>
+ * Authors are drawn from a Zipf distribution so a handful of heavy authors
+ * account for most pull requests while there is a long tail of occasional
+ * contributors, merges are made by a small group of maintainers. Durations are
+ * drawn from a log-normal distribution so most pull requests are resolved in a
+ * few days but some stay around for years. Generation is deterministic for a
+ * given seed.
+ * </p>
+ */
+public class SyntheticPullRequests {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long EPOCH = 1420070400000L; // 2015-01-01
+    private static final int HISTORY_DAYS = 3650;
+
+    private final Random random;
+    private final User[] authors;
+    private final double[] authorWeights;
+    private final int maintainers;
+    private final Repository repo;
+
+    /**
+     * Creates a new generator
+     * 
+     * @param users
+     *            Number of distinct authors
+     * @param seed
+     *            Random seed
+     */
+    public SyntheticPullRequests(int users, long seed) {
+        if (users <= 0)
+            throw new IllegalArgumentException("users must be greater than zero");
+        this.random = new Random(seed);
+        this.authors = new User[users];
+        this.authorWeights = new double[users];
+        double total = 0;
+        for (int i = 0; i < users; i++) {
+            this.authors[i] = new User().setId(i + 1).setLogin("user" + (i + 1));
+            total += 1d / (i + 1);
+            this.authorWeights[i] = total;
+        }
+        for (int i = 0; i < users; i++) {
+            this.authorWeights[i] /= total;
+        }
+        this.maintainers = Math.max(1, Math.min(10, users / 20));
+        this.repo = new Repository().setName("synthetic").setOwner(new User().setId(0).setLogin("benchmarks"));
+    }
+
+    /**
+     * Generates a list of pull requests
+     * 
+     * @param count
+     *            Number of pull requests
+     * @return Pull requests
+     */
+    public List<PullRequest> generate(int count) {
+        List<PullRequest> prs = new ArrayList<PullRequest>(count);
+        for (int i = 0; i < count; i++) {
+            prs.add(next(i + 1));
+        }
+        return prs;
+    }
+
+    /**
+     * Generates the next pull request
+     * 
+     * @param number
+     *            Pull request number
+     * @return Pull request
+     */
+    public PullRequest next(int number) {
+        Date created = new Date(EPOCH + (long) this.random.nextInt(HISTORY_DAYS) * DAY
+                + (long) this.random.nextInt((int) DAY));
+        PullRequestMarker base = new PullRequestMarker();
+        base.setRef("master");
+        base.setRepo(this.repo);
+        PullRequest pr = new PullRequest().setNumber(number).setId(number).setCreatedAt(created)
+                .setUser(nextAuthor()).setBase(base);
+
+        int outcome = this.random.nextInt(100);
+        Date resolved = new Date(created.getTime() + nextDuration());
+        if (outcome < 60) {
+            pr.setState("closed").setMerged(true).setMergedAt(resolved).setClosedAt(resolved)
+                    .setMergedBy(this.authors[this.random.nextInt(this.maintainers)]);
+        } else if (outcome < 85) {
+            pr.setState("closed").setClosedAt(resolved);
+        } else {
+            pr.setState("open").setMergeable(this.random.nextBoolean());
+        }
+        pr.setUpdatedAt(pr.getClosedAt() != null ? pr.getClosedAt() : created);
+        return pr;
+    }
+
+    private User nextAuthor() {
+        double r = this.random.nextDouble();
+        int low = 0, high = this.authorWeights.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.authorWeights[mid] < r) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return this.authors[low];
+    }
+
+    private long nextDuration() {
+        // Log-normal with a median of around two days
+        double days = Math.exp(0.7 + 1.6 * this.random.nextGaussian());
+        return (long) (Math.min(days, HISTORY_DAYS) * DAY);
+    }
+}
@@ -15,23 +15,51 @@
 package com.github.rvesse.github.pr.stats;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
-import org.apache.commons.math3.stat.Frequency;
-import org.apache.commons.math3.stat.descriptive.rank.Percentile;
 import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.Repository;
 import org.eclipse.egit.github.core.RepositoryId;
 import org.eclipse.egit.github.core.User;
 import org.eclipse.egit.github.core.client.GitHubClient;
-import org.eclipse.egit.github.core.service.PullRequestService;
+import org.eclipse.egit.github.core.client.IGitHubConstants;
+import org.eclipse.egit.github.core.service.RepositoryService;
 import org.eclipse.egit.github.core.service.UserService;
+import org.joda.time.Instant;
+import org.joda.time.format.ISODateTimeFormat;
 
 import com.github.rvesse.airline.HelpOption;
 import com.github.rvesse.airline.SingleCommand;
@@ -39,8 +67,10 @@ import com.github.rvesse.airline.annotations.Arguments;
 import com.github.rvesse.airline.annotations.Command;
 import com.github.rvesse.airline.annotations.Option;
 import com.github.rvesse.airline.annotations.Parser;
+import com.github.rvesse.airline.annotations.restrictions.AllowedRawValues;
 import com.github.rvesse.airline.annotations.restrictions.MutuallyExclusiveWith;
-import com.github.rvesse.airline.annotations.restrictions.Required;
+import com.github.rvesse.airline.annotations.restrictions.RequiredOnlyIf;
+import com.github.rvesse.airline.annotations.restrictions.ranges.IntegerRange;
 import com.github.rvesse.airline.help.Help;
 import com.github.rvesse.airline.help.cli.CliCommandUsageGenerator;
 import com.github.rvesse.airline.model.CommandMetadata;
@@ -48,22 +78,68 @@ import com.github.rvesse.airline.model.ParserMetadata;
 import com.github.rvesse.airline.parser.ParseResult;
 import com.github.rvesse.airline.parser.errors.ParseException;
 import com.github.rvesse.airline.parser.errors.handlers.CollectAll;
-import com.github.rvesse.github.pr.stats.collectors.AbstractPullRequestCollector;
+import com.github.rvesse.github.pr.stats.cache.PullRequestCache;
+import com.github.rvesse.github.pr.stats.checkpoint.Checkpointer;
+import com.github.rvesse.github.pr.stats.client.ConditionalRequestCache;
+import com.github.rvesse.github.pr.stats.client.PullRequestStatsClient;
+import com.github.rvesse.github.pr.stats.client.RateLimitScheduler;
+import com.github.rvesse.github.pr.stats.client.ResponseArchive;
 import com.github.rvesse.github.pr.stats.collectors.AbstractUserPullRequestCollector;
-import com.github.rvesse.github.pr.stats.collectors.LongStatsCollector;
+import com.github.rvesse.github.pr.stats.collectors.MergeUserResolver;
 import com.github.rvesse.github.pr.stats.collectors.MergingUserCollector;
+import com.github.rvesse.github.pr.stats.collectors.ParallelCollection;
+import com.github.rvesse.github.pr.stats.collectors.ParallelCollection.CollectorFactory;
 import com.github.rvesse.github.pr.stats.collectors.PullRequestsCollector;
+import com.github.rvesse.github.pr.stats.collectors.ReviewCollector;
+import com.github.rvesse.github.pr.stats.collectors.ReviewResolver;
+import com.github.rvesse.github.pr.stats.collectors.ReviewerCollector;
 import com.github.rvesse.github.pr.stats.collectors.UserCollector;
+import com.github.rvesse.github.pr.stats.collectors.WindowStats;
+import com.github.rvesse.github.pr.stats.collectors.WindowedCollector;
+import com.github.rvesse.github.pr.stats.collectors.Windowing;
+import com.github.rvesse.github.pr.stats.comparators.ReviewerComparator;
 import com.github.rvesse.github.pr.stats.comparators.UserComparator;
+import com.github.rvesse.github.pr.stats.report.ReportFormat;
+import com.github.rvesse.github.pr.stats.report.ReportSink;
+import com.github.rvesse.github.pr.stats.report.UserKind;
+import com.github.rvesse.github.pr.stats.report.UserMetric;
+import com.github.rvesse.github.pr.stats.report.UserRanking;
+import com.github.rvesse.github.pr.stats.report.UserSummary;
+import com.github.rvesse.github.pr.stats.server.PullRequestIndex;
+import com.github.rvesse.github.pr.stats.server.StatsServer;
+import com.github.rvesse.github.pr.stats.sources.PrefetchingIterator;
+import com.github.rvesse.github.pr.stats.sources.FilteredPullRequestSource;
+import com.github.rvesse.github.pr.stats.sources.GraphQLPullRequestSource;
+import com.github.rvesse.github.pr.stats.sources.PullRequestFilter;
+import com.github.rvesse.github.pr.stats.sources.PullRequestPage;
+import com.github.rvesse.github.pr.stats.sources.PullRequestSource;
+import com.github.rvesse.github.pr.stats.sources.RestPullRequestSource;
+import com.github.rvesse.github.pr.stats.store.PullRequestStore;
 
 @Command(name = "pr-stats", description = "Generates Pull Request statistics for a GitHub repository")
 @Parser(errorHandler = CollectAll.class)
 public class PullRequestStats {
 
+    private static final int PARALLEL_BATCH_SIZE = 10000;
+    private static final String BACKEND_REST = "rest", BACKEND_GRAPHQL = "graphql";
+
     @Arguments(title = { "Owner", "Repository" }, description = "Sets the repository for which to generate statistics")
-    @Required
     private List<String> repo = new ArrayList<String>();
 
+    @Option(name = {
+            "--repository" }, title = "Owner/Repository", description = "Adds a repository for which to generate statistics, may be specified multiple times to generate combined statistics across several repositories")
+    private List<String> repositories = new ArrayList<String>();
+
+    @Option(name = {
+            "--org" }, title = "Organisation", description = "Generates combined statistics across all repositories of the given organisation")
+    @MutuallyExclusiveWith(tag = "Offline")
+    private String org;
+
+    @Option(name = {
+            "--repo-threads" }, title = "Threads", description = "Sets how many repositories are fetched in parallel when generating statistics for multiple repositories, defaults to 4.  All repositories share the same GitHub API rate limit")
+    @IntegerRange(min = 1, max = 32)
+    private int repoThreads = 4;
+
     @Option(name = { "-u", "--user",
             "--username" }, title = "GitHubUsername", description = "Sets the GitHub username with which to authenticate, it is generally more secure to use OAuth2 tokens via the --oauth option.  If omitted the application will prompt you for it.")
     private String user;
@@ -96,9 +172,176 @@ public class PullRequestStats {
             "--merge-stats" }, description = "When set includes detailed merging user statistics i.e. details about who merges the pull requests")
     private boolean mergeDetailedStats = false;
 
+    @Option(name = {
+            "--top" }, title = "Users", description = "When set limits the detailed user and merging user statistics to this many users, those ranked highest by --top-by listed highest first.  The users are selected without sorting every user so this is much cheaper than full detailed statistics when there are many users")
+    @IntegerRange(min = 1, max = 1000000)
+    private Integer top;
+
+    @Option(name = {
+            "--top-by" }, title = "Metric", description = "Sets the statistic by which users are ranked for --top, defaults to total.  Users with the same value are ranked by login")
+    @AllowedRawValues(allowedValues = { "total", "open", "open_mergeable", "merged", "closed", "self_merged",
+            "merged_percentage", "self_merged_percentage" })
+    private String topBy = "total";
+
+    @Option(name = {
+            "--approximate-users" }, title = "Users", description = "When set user and merging user statistics are only kept for this many of the most frequent users, tracked with the Space-Saving algorithm, and the numbers of distinct users and merging users are estimated with HyperLogLog sketches.  This bounds the memory used however many users there are, the statistics of a user only cover the pull requests collected since they were last among the most frequent users")
+    @IntegerRange(min = 1, max = 1000000)
+    private Integer approximateUsers;
+
+    @Option(name = {
+            "--page-size" }, title = "PageSize", description = "Sets the number of pull requests to request per page from the GitHub API, defaults to 100 which is the maximum GitHub allows")
+    @IntegerRange(min = 1, max = 100)
+    private int pageSize = 100;
+
+    @Option(name = {
+            "--backend" }, title = "Backend", description = "Sets the GitHub API used to fetch pull requests, rest (the default) or graphql.  The GraphQL API returns the merging user of every pull request up front so no further requests per pull request are needed, it always requires authentication.  Caches are always refreshed via the REST API")
+    @AllowedRawValues(allowedValues = { BACKEND_REST, BACKEND_GRAPHQL })
+    private String backend = BACKEND_REST;
+
+    @Option(name = {
+            "--api-url" }, title = "URL", description = "Sets the base URL of the GitHub server to use e.g. https://github.example.com for a GitHub Enterprise server or http://localhost:8080 for a local stub server, defaults to GitHub.com.  For servers other than GitHub.com the REST API is requested under /api/v3 and the GraphQL API at /api/graphql")
+    private String apiUrl;
+
+    @Option(name = {
+            "--merge-fetch-threads" }, title = "Threads", description = "Sets the maximum number of concurrent requests used to look up the merging user of pull requests when the pull request listing does not include it, defaults to 4.  Setting this to 0 makes the lookups one at a time as each pull request is processed")
+    @IntegerRange(min = 0, max = 64)
+    private int mergeFetchThreads = 4;
+
+    @Option(name = {
+            "--review-stats" }, description = "When set includes review statistics, the time to first review and to approval, the review rounds and the review load of each reviewer, for pull requests opened within the last --review-days days.  Reviews are fetched only for those pull requests and are cached in the --cache-dir directory if given.  Cannot be combined with --serve or --offline")
+    private boolean reviewStats = false;
+
+    @Option(name = {
+            "--review-days" }, title = "Days", description = "Sets the number of days before now within which pull requests must have been opened to be included in the review statistics, defaults to 90")
+    @IntegerRange(min = 1, max = 36500)
+    private int reviewDays = 90;
+
+    @Option(name = {
+            "--review-fetch-threads" }, title = "Threads", description = "Sets the maximum number of concurrent requests used to fetch the reviews of pull requests, defaults to 4")
+    @IntegerRange(min = 1, max = 64)
+    private int reviewFetchThreads = 4;
+
+    @Option(name = {
+            "--cache-dir" }, title = "CacheDirectory", description = "Sets a directory in which to cache pull request information between runs, when set only pull requests updated since the previous run are fetched from GitHub.  A compact binary snapshot of the cached pull requests is also kept for use with --offline")
+    @RequiredOnlyIf(names = { "--offline" })
+    private String cacheDir;
+
+    @Option(name = {
+            "--offline" }, description = "When set generates statistics from the pull request snapshots in the --cache-dir directory without contacting GitHub, snapshots are memory mapped so statistics are generated almost immediately however many pull requests they hold.  Cannot be combined with --org or --label")
+    @MutuallyExclusiveWith(tag = "Offline")
+    private boolean offline = false;
+
+    @Option(name = {
+            "--http-cache-dir" }, title = "HttpCacheDirectory", description = "Sets a directory in which to store GitHub API responses, when set requests are made conditionally and unchanged responses, which do not count against the GitHub rate limit, are served from this directory")
+    private String httpCacheDir;
+
+    @Option(name = {
+            "--record" }, title = "ArchiveDirectory", description = "Sets a directory to which every GitHub API response used is recorded, the recorded responses may later be replayed with the --replay option")
+    @MutuallyExclusiveWith(tag = "Replay")
+    private String recordDir;
+
+    @Option(name = {
+            "--replay" }, title = "ArchiveDirectory", description = "Sets a directory of GitHub API responses previously recorded with the --record option, when set all responses are served from this directory and no network requests are made")
+    @MutuallyExclusiveWith(tag = "Replay")
+    private String replayDir;
+
+    @Option(name = {
+            "--rate-limit-reserve" }, title = "Percent", description = "Sets the percentage of the GitHub API rate limit below which requests are spread out evenly until the rate limit resets, defaults to 10.  Regardless of this setting the tool pauses until the rate limit resets if it is exhausted.")
+    @IntegerRange(min = 0, max = 100)
+    private int rateLimitReserve = 10;
+
+    @Option(name = {
+            "--max-retries" }, title = "Retries", description = "Sets the maximum number of times a request rejected by a GitHub secondary rate limit is retried with backoff, defaults to 5")
+    @IntegerRange(min = 0, max = 20)
+    private int maxRetries = 5;
+
+    @Option(name = {
+            "--sketch-precision" }, title = "Digits", description = "When set to a value greater than zero age statistics are collected in fixed size sketches accurate to this many significant digits rather than exactly, this bounds the memory used for very large repositories.  Defaults to 0 which collects exact statistics")
+    @IntegerRange(min = 0, max = 5)
+    private int sketchPrecision = 0;
+
+    @Option(name = {
+            "--time-unit" }, title = "Unit", description = "Sets the unit, minutes, hours or days, in which ages and review latencies are reported, defaults to days.  Ages are measured to the second, exact statistics are truncated to days while with --sketch-precision ages are recorded to the second and only converted to this unit when reported.  Minutes and hours are always recorded in sketches, accurate to 3 significant digits unless --sketch-precision is given")
+    @AllowedRawValues(allowedValues = { "minutes", "hours", "days" })
+    private String timeUnit = "days";
+
+    @Option(name = {
+            "--window" }, title = "Window", description = "When set includes trends of pull requests opened, merged and closed and of their days to merge and close for each window of time, the window may be week, month or a number of days.  Weeks and months are calendar weeks and months in UTC while windows of a number of days are counted back from now")
+    private String window;
+
+    @Option(name = {
+            "--now" }, title = "DateTime", description = "Sets the date and time, in ISO 8601 format, as of which statistics are generated, defaults to the current time.  Pull requests are treated as they were at that time so statistics for an earlier point in time can be reproduced")
+    private String now;
+
+    @Option(name = {
+            "--since" }, title = "DateTime", description = "When set only includes pull requests created at or after this date and time, given in ISO 8601 format.  Pull requests are listed newest first so that no further pages are fetched once older pull requests are reached")
+    private String since;
+
+    @Option(name = {
+            "--until" }, title = "DateTime", description = "When set only includes pull requests created before this date and time, given in ISO 8601 format")
+    private String until;
+
+    @Option(name = {
+            "--base" }, title = "Branch", description = "When set only includes pull requests targeting this base branch")
+    private String base;
+
+    @Option(name = {
+            "--author" }, title = "Login", description = "When set only includes pull requests opened by the user with this login")
+    private String author;
+
+    @Option(name = {
+            "--label" }, title = "Label", description = "When set only includes pull requests with this label, the matching pull requests are found via the GitHub issues API")
+    private String label;
+
+    @Option(name = {
+            "--format" }, title = "Format", description = "Sets the format of the statistics report, text (the default) is intended for people while json and csv are intended for ingestion by other tools.  When a json or csv report is written to standard output progress messages are written to standard error instead")
+    @AllowedRawValues(allowedValues = { "text", "json", "csv" })
+    private String format = "text";
+
+    @Option(name = {
+            "--output" }, title = "File", description = "Sets a file to which the statistics report is written, if omitted the report is written to standard output")
+    private String output;
+
     @Option(name = { "-a", "--all" }, description = "When set includes all available statistics in the output")
     private boolean all = false;
 
+    @Option(name = {
+            "--parallel" }, title = "Threads", description = "When set to a value greater than 1 pull requests are collected in parallel using this many threads, this is most useful when pull requests are served from the cache")
+    @IntegerRange(min = 1, max = 256)
+    @MutuallyExclusiveWith(tag = "Checkpoint")
+    private int parallelism = 1;
+
+    @Option(name = {
+            "--checkpoint-dir" }, title = "CheckpointDirectory", description = "Sets a directory in which the progress of collecting each repository is periodically checkpointed so that an interrupted run may be continued with the --resume option, checkpoints are deleted once a run completes.  Cannot be combined with --parallel")
+    @MutuallyExclusiveWith(tag = "Checkpoint")
+    @RequiredOnlyIf(names = { "--resume" })
+    private String checkpointDir;
+
+    @Option(name = {
+            "--checkpoint-interval" }, title = "Seconds", description = "Sets the minimum number of seconds between checkpoints, defaults to 60")
+    @IntegerRange(min = 1, max = 86400)
+    private int checkpointInterval = 60;
+
+    @Option(name = {
+            "--serve" }, title = "Port", description = "When set runs as a server which keeps an in-memory index of the pull requests of each repository, refreshes it incrementally and answers statistics queries over HTTP on this port of the local machine rather than generating a single report.  When combined with --cache-dir the indexes persist across restarts")
+    @IntegerRange(min = 1, max = 65535)
+    private Integer servePort;
+
+    @Option(name = {
+            "--refresh-interval" }, title = "Minutes", description = "Sets the number of minutes between refreshes of the pull request indexes when running as a server, defaults to 5")
+    @IntegerRange(min = 1, max = 1440)
+    private int refreshInterval = 5;
+
+    @Option(name = {
+            "--resume" }, description = "When set continues an interrupted run from the checkpoints in the --checkpoint-dir directory, the run must be made with the same options as the interrupted run")
+    private boolean resume = false;
+
+    private Instant asOf;
+    private Windowing windowing;
+    private PullRequestFilter filter = new PullRequestFilter();
+    private ReviewResolver reviewResolver;
+    private volatile boolean failedRepositories = false;
+
     @Inject
     private HelpOption<PullRequestStats> help = new HelpOption<PullRequestStats>();
 
@@ -145,8 +388,55 @@ public class PullRequestStats {
             return;
         }
 
-        GitHubClient client = new GitHubClient();
-        prepareCredentials(client);
+        // Keep standard output clean for machine readable reports
+        ReportFormat reportFormat = ReportFormat.valueOf(this.format.toUpperCase(Locale.ROOT));
+        PrintStream reportOut = System.out;
+        if (reportFormat != ReportFormat.TEXT && this.output == null)
+            System.setOut(System.err);
+
+        if (this.now != null) {
+            this.asOf = new Instant(parseDate(this.now));
+            System.out.println("Generating statistics as of " + this.asOf);
+        }
+        if (this.window != null)
+            this.windowing = Windowing.parse(this.window);
+        if (this.since != null)
+            this.filter.setSince(parseDate(this.since));
+        if (this.until != null)
+            this.filter.setUntil(parseDate(this.until));
+        this.filter.setBase(this.base).setAuthor(this.author).setLabel(this.label);
+        if (!this.filter.isEmpty())
+            System.out.println("Only including " + this.filter);
+
+        if (this.reviewStats && (this.servePort != null || this.offline)) {
+            System.err.println("The --review-stats option cannot be used with --serve or --offline");
+            System.exit(1);
+        }
+        if (this.offline) {
+            if (this.servePort != null || this.label != null) {
+                System.err.println("The --serve and --label options cannot be used with --offline");
+                System.exit(1);
+            }
+            outputReport(collectOffline(prepareRepositoryIds(null)), reportFormat, reportOut);
+            return;
+        }
+
+        PullRequestStatsClient client = createClient();
+        if (this.httpCacheDir != null)
+            client.setConditionalCache(new ConditionalRequestCache(new File(this.httpCacheDir)));
+        if (this.recordDir != null)
+            client.setRecordTo(new ResponseArchive(new File(this.recordDir)));
+        if (this.replayDir != null) {
+            File replayDir = new File(this.replayDir);
+            if (!replayDir.isDirectory())
+                throw new FileNotFoundException("Replay archive directory " + replayDir + " does not exist");
+            client.setReplayFrom(new ResponseArchive(replayDir));
+            System.out.println("Replaying GitHub API responses recorded in " + replayDir);
+        } else {
+            if (this.rateLimitReserve > 0 || this.maxRetries > 0)
+                client.setScheduler(new RateLimitScheduler(this.rateLimitReserve / 100d, this.maxRetries));
+            prepareCredentials(client);
+        }
         client.setUserAgent("GitHub PR Stats Bot/0.1.0 (+http://github.com/rvesse/gh-pr-stats.git)");
 
         // Get the user just to force us to make one request so we can get stats
@@ -158,18 +448,30 @@ public class PullRequestStats {
         long start = client.getRemainingRequests();
 
         // Collect statistics for the pull requests
-        PullRequestService prService = new PullRequestService(client);
-        RepositoryId repoId = prepareRepositoryId();
-        List<PullRequest> prs = prService.getPullRequests(repoId, "all");
-        PullRequestsCollector collector = new PullRequestsCollector(
-                this.userSummary || this.userDetailedStats || this.all,
-                this.mergeSummary || this.mergeDetailedStats || this.all);
-        collector.start();
-        for (PullRequest pr : prs) {
-            System.out.println("Processing PR #" + pr.getNumber());
-            collector.collect(client, pr);
+        List<RepositoryId> repoIds = prepareRepositoryIds(client);
+        if (this.servePort != null) {
+            serve(client, repoIds);
+            return;
+        }
+        if (this.checkpointDir != null)
+            prepareCheckpoints(repoIds);
+        PullRequestsCollector collector;
+        if (this.reviewStats)
+            this.reviewResolver = new ReviewResolver(this.reviewFetchThreads,
+                    this.cacheDir != null ? new File(this.cacheDir) : null);
+        try {
+            collector = repoIds.size() == 1 ? collectRepository(client, repoIds.get(0), false)
+                    : collectRepositories(client, repoIds);
+            if (this.reviewResolver != null) {
+                this.reviewResolver.save();
+                System.out.println("Fetched reviews of " + this.reviewResolver.getFetched()
+                        + " pull requests, reviews of " + this.reviewResolver.getCached()
+                        + " pull requests were cached");
+            }
+        } finally {
+            if (this.reviewResolver != null)
+                this.reviewResolver.close();
         }
-        collector.end();
 
         // Inform the user about how many API requests were used
         System.out.println();
@@ -177,151 +479,515 @@ public class PullRequestStats {
                 + client.getRequestLimit() + " remaining");
         System.out.println(
                 "Generating statistics used " + (start - client.getRemainingRequests()) + " GitHub API requests");
+        if (this.httpCacheDir != null)
+            System.out.println(client.getNotModifiedRequests()
+                    + " further GitHub API requests were unchanged and served from the local HTTP cache");
+        if (client.getScheduler() != null) {
+            RateLimitScheduler scheduler = client.getScheduler();
+            System.out.println(String.format(
+                    "Made %d GitHub API requests at %.2f requests/second, %d requests were retried and %d seconds were spent throttled",
+                    scheduler.getRequests(), scheduler.getRequestsPerSecond(), scheduler.getRetries(),
+                    TimeUnit.MILLISECONDS.toSeconds(scheduler.getThrottledMillis())));
+        }
         System.out.println();
 
-        // Output Stats
-        // Basic stats
-        outputBasicStatus(collector);
-        System.out.println();
+        outputReport(collector, reportFormat, reportOut);
 
-        // Age Stats
-        outputAgeStats(collector.getDaysToMergeStats(), "Days to Merge", true);
-        System.out.println();
-        outputAgeStats(collector.getDaysOpenStats(), "Days Open", true);
-        System.out.println();
-        outputAgeStats(collector.getDaysToCloseStats(), "Days to Close", true);
-        System.out.println();
+        // Checkpoints are only needed until the whole run has succeeded
+        if (this.checkpointDir != null && !this.failedRepositories) {
+            for (RepositoryId repoId : repoIds) {
+                Files.deleteIfExists(Checkpointer.getCheckpointFile(new File(this.checkpointDir), repoId).toPath());
+            }
+        }
+    }
 
-        // User Stats
-        List<UserCollector> userStats = collector.getUserStats();
-        UserComparator<UserCollector> userComparator = new UserComparator<UserCollector>();
-        if (this.userSummary || this.all) {
-            System.out.println("Total Users: " + userStats.size());
-
-            if (userStats.size() > 0) {
-                UserCollector maxUser = Collections.max(userStats, userComparator);
-                List<UserCollector> maxUsers = findEquivalent(userStats, maxUser, userComparator);
-                UserCollector minUser = Collections.min(userStats, userComparator);
-                List<UserCollector> minUsers = findEquivalent(userStats, minUser, userComparator);
-
-                System.out.println("Max Pull Requests by User: " + maxUser.getTotal() + " " + maxUsers);
-                System.out.println("Min Pull Requests by User: " + minUser.getTotal() + " " + minUsers);
-                System.out.println("Average Pull Requests per User: " + (collector.getTotal() / userStats.size()));
+    private void outputReport(PullRequestsCollector collector, ReportFormat reportFormat, PrintStream reportOut)
+            throws IOException {
+        if (this.output != null) {
+            try (Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(this.output), StandardCharsets.UTF_8))) {
+                outputReport(collector, reportFormat.createSink(writer));
             }
-            System.out.println();
+            System.out.println("Statistics report written to " + this.output);
+        } else {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(reportOut, StandardCharsets.UTF_8));
+            outputReport(collector, reportFormat.createSink(writer));
+            writer.flush();
         }
+    }
+
+    /**
+     * Outputs the statistics report for the collected statistics
+     * 
+     * @param collector
+     *            Collector, must have been ended
+     * @param sink
+     *            Sink to which the report is written
+     * @throws IOException
+     *             Thrown if the report cannot be written
+     */
+    public void outputReport(PullRequestsCollector collector, ReportSink sink) throws IOException {
+        sink.begin(collector.getPrecision(), collector.getTimeUnit(), collector.getReviewStats() != null);
+        sink.overall(collector);
 
-        if (userStats.size() > 0 && (this.userDetailedStats || this.all)) {
-            Collections.sort(userStats, userComparator);
-            for (AbstractUserPullRequestCollector userCollector : userStats) {
-                outputUserStats(userCollector);
-                System.out.println();
+        // Windowed Stats
+        if (collector.getWindowStats() != null) {
+            WindowedCollector windows = collector.getWindowStats();
+            sink.beginWindows(windows.getWindowing());
+            for (WindowStats window : windows.getWindows()) {
+                sink.window(window);
             }
+            sink.endWindows();
         }
 
+        // Review Stats
+        if (collector.getReviewStats() != null) {
+            ReviewCollector reviews = collector.getReviewStats();
+            sink.beginReviews(reviews);
+            List<ReviewerCollector> reviewers = reviews.getReviewerStats();
+            Collections.sort(reviewers, new ReviewerComparator());
+            for (ReviewerCollector reviewer : reviewers) {
+                sink.reviewer(reviewer);
+            }
+            sink.endReviews();
+        }
+
+        // User Stats
+        List<UserCollector> userStats = collector.getUserStats();
+        if (this.userSummary || this.all)
+            sink.userSummary(collector.isApproximateUsers()
+                    ? UserSummary.summariseApproximate(UserKind.AUTHORS, collector, userStats,
+                            collector.getTotalUsers())
+                    : UserSummary.summarise(UserKind.AUTHORS, collector, userStats));
+        if (userStats.size() > 0 && (this.userDetailedStats || this.all))
+            outputUsers(sink, UserKind.AUTHORS, userStats);
+
         // Merging User Stats
         List<MergingUserCollector> mergingUserStats = collector.getMergingUserStats();
-        UserComparator<MergingUserCollector> mergeUserComparator = new UserComparator<MergingUserCollector>();
-        if (this.mergeSummary || this.all) {
-            System.out.println("Total Merging Users: " + mergingUserStats.size());
-
-            if (mergingUserStats.size() > 0) {
-                MergingUserCollector maxUser = Collections.max(mergingUserStats, mergeUserComparator);
-                List<MergingUserCollector> maxUsers = findEquivalent(mergingUserStats, maxUser, mergeUserComparator);
-                MergingUserCollector minUser = Collections.min(mergingUserStats, mergeUserComparator);
-                List<MergingUserCollector> minUsers = findEquivalent(mergingUserStats, minUser, mergeUserComparator);
-
-                System.out.println("Max Pull Requests Merged by User: " + maxUser.getMerged() + " " + maxUsers);
-                System.out.println("Min Pull Requests Merged by User: " + minUser.getMerged() + " " + minUsers);
-                System.out.println(
-                        "Average Pull Requests Merged per User: " + (collector.getMerged() / mergingUserStats.size()));
+        if (this.mergeSummary || this.all)
+            sink.userSummary(collector.isApproximateUsers()
+                    ? UserSummary.summariseApproximate(UserKind.MERGERS, collector, mergingUserStats,
+                            collector.getTotalMergingUsers())
+                    : UserSummary.summarise(UserKind.MERGERS, collector, mergingUserStats));
+        if (mergingUserStats.size() > 0 && (this.mergeDetailedStats || this.all))
+            outputUsers(sink, UserKind.MERGERS, mergingUserStats);
+
+        sink.end();
+    }
+
+    private <T extends AbstractUserPullRequestCollector> void outputUsers(ReportSink sink, UserKind kind,
+            List<T> users) throws IOException {
+        if (this.top != null) {
+            users = new UserRanking<T>(UserMetric.parse(this.topBy), this.top).select(users);
+        } else {
+            Collections.sort(users, new UserComparator<T>());
+        }
+        sink.beginUsers(kind);
+        for (T user : users) {
+            sink.user(kind, user);
+        }
+        sink.endUsers(kind);
+    }
+
+    private PullRequestsCollector createCollector() {
+        return createCollector(this.mergeFetchThreads);
+    }
+
+    private void serve(PullRequestStatsClient client, List<RepositoryId> repoIds) throws IOException {
+        Map<String, PullRequestIndex> indexes = new LinkedHashMap<String, PullRequestIndex>();
+        MergeUserResolver resolver = this.mergeSummary || this.mergeDetailedStats || this.all
+                ? new MergeUserResolver(this.mergeFetchThreads) : null;
+        boolean refreshNow = false;
+        for (RepositoryId repoId : repoIds) {
+            PullRequestCache cache = new PullRequestCache(
+                    this.cacheDir != null ? PullRequestCache.getCacheFile(new File(this.cacheDir), repoId) : null,
+                    repoId);
+            cache.setPageSize(this.pageSize);
+            PullRequestIndex index = new PullRequestIndex(cache,
+                    this.cacheDir != null ? PullRequestStore.getSnapshotFile(new File(this.cacheDir), repoId) : null);
+            if (index.load()) {
+                // Serve from the snapshot straight away and refresh once the
+                // server is up
+                System.out.println("Loaded " + index.getPullRequests().size() + " pull requests for "
+                        + repoId.generateId() + " from snapshot");
+                refreshNow = true;
+            } else {
+                int fetched = index.refresh(client, resolver);
+                System.out.println("Indexed " + index.getPullRequests().size() + " pull requests for "
+                        + repoId.generateId() + ", fetched " + fetched);
             }
-            System.out.println();
+            indexes.put(repoId.generateId(), index);
+        }
+
+        // Queries are answered purely from the indexes so collectors never
+        // look up merging users themselves
+        CollectorFactory<PullRequest, PullRequestsCollector> factory = new CollectorFactory<PullRequest, PullRequestsCollector>() {
+
+            @Override
+            public PullRequestsCollector create() {
+                return createCollector(0);
+            }
+        };
+        StatsServer.ReportGenerator generator = new StatsServer.ReportGenerator() {
+
+            @Override
+            public void generate(PullRequestsCollector collector, ReportSink sink) throws IOException {
+                outputReport(collector, sink);
+            }
+        };
+        final StatsServer server = new StatsServer(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                this.servePort), Runtime.getRuntime().availableProcessors(), indexes, client, factory, generator);
+        server.start(refreshNow ? 0 : this.refreshInterval, this.refreshInterval, TimeUnit.MINUTES, resolver);
+        System.out.println("Serving statistics for " + indexes.size() + " repositories at http://"
+                + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/stats");
+
+        final CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+
+            @Override
+            public void run() {
+                server.close();
+                stopped.countDown();
+            }
+        });
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while serving statistics");
+        } finally {
+            if (resolver != null)
+                resolver.close();
         }
+    }
 
-        if (mergingUserStats.size() > 0 && (this.mergeDetailedStats || this.all)) {
-            Collections.sort(mergingUserStats, mergeUserComparator);
-            for (MergingUserCollector userCollector : mergingUserStats) {
-                outputUserStats(userCollector);
-                System.out.println();
+    private void prepareCheckpoints(List<RepositoryId> repoIds) throws IOException {
+        // All repositories must be collected as of the same time so when
+        // resuming use the time of the interrupted run
+        if (this.resume && this.asOf == null) {
+            for (RepositoryId repoId : repoIds) {
+                this.asOf = Checkpointer.readNow(Checkpointer.getCheckpointFile(new File(this.checkpointDir), repoId));
+                if (this.asOf != null) {
+                    System.out.println("Resuming statistics as of " + this.asOf);
+                    break;
+                }
             }
         }
+        if (this.asOf == null)
+            this.asOf = Instant.now();
+    }
 
+    private String describeConfiguration(RepositoryId repoId) {
+        return String.format(
+                "repository=%s users=%b merging_users=%b approximate_users=%d precision=%d time_unit=%s window=%s review_days=%d source=%s page_size=%d filter=%s",
+                repoId.generateId(), this.userSummary || this.userDetailedStats || this.all,
+                this.mergeSummary || this.mergeDetailedStats || this.all,
+                this.approximateUsers != null ? this.approximateUsers : 0, this.sketchPrecision, this.timeUnit,
+                this.windowing != null ? this.windowing.getName() : "none", this.reviewStats ? this.reviewDays : 0,
+                this.cacheDir != null ? "cache" : this.backend, this.pageSize, this.filter);
     }
 
-    private void outputBasicStatus(AbstractPullRequestCollector collector) {
-        if (collector.getTotal() == 0)
-            return;
-        System.out.println("Total Pull Requests: " + collector.getTotal());
-        if (collector.getMerged() > 0) {
-            System.out.println("Merged Pull Requests: " + collector.getMerged());
+    private static Date parseDate(String value) {
+        return ISODateTimeFormat.dateTimeParser().withZoneUTC().parseDateTime(value).toDate();
+    }
+
+    private PullRequestsCollector createCollector(int mergeFetchThreads) {
+        PullRequestsCollector collector = new PullRequestsCollector(
+                this.userSummary || this.userDetailedStats || this.all,
+                this.mergeSummary || this.mergeDetailedStats || this.all, mergeFetchThreads);
+        collector.setPrecision(this.sketchPrecision);
+        collector.setTimeUnit(TimeUnit.valueOf(this.timeUnit.toUpperCase(Locale.ROOT)));
+        if (this.approximateUsers != null)
+            collector.setApproximateUsers(this.approximateUsers);
+        if (this.asOf != null)
+            collector.setNow(this.asOf);
+        collector.setWindowing(this.windowing);
+        collector.setReviews(this.reviewResolver, this.reviewDays);
+        return collector;
+    }
+
+    private PullRequestsCollector collectRepository(PullRequestStatsClient client, RepositoryId repoId,
+            boolean multiRepo) throws IOException {
+        if (this.checkpointDir != null) {
+            try (Checkpointer checkpointer = new Checkpointer(
+                    Checkpointer.getCheckpointFile(new File(this.checkpointDir), repoId),
+                    describeConfiguration(repoId), TimeUnit.SECONDS.toMillis(this.checkpointInterval))) {
+                return collectRepository(client, repoId, multiRepo, checkpointer);
+            }
         }
-        if (collector.getOpen() > 0) {
-            System.out.println("Open Pull Requests: " + collector.getOpen());
-            System.out.println("Open Mergeable Pull Requests: " + collector.getOpenMergeable());
+        return collectRepository(client, repoId, multiRepo, null);
+    }
+
+    private PullRequestsCollector collectRepository(PullRequestStatsClient client, RepositoryId repoId,
+            boolean multiRepo, Checkpointer checkpointer) throws IOException {
+        String cursor = null;
+        PullRequestsCollector collector = createCollector();
+        collector.start();
+        if (checkpointer != null && this.resume && checkpointer.load()) {
+            if (!checkpointer.getNow().equals(collector.getNow()))
+                throw new IOException("Checkpoint for " + repoId.generateId() + " was made as of "
+                        + checkpointer.getNow() + " not " + collector.getNow() + " so cannot be resumed");
+            checkpointer.restore(collector);
+            if (checkpointer.isComplete()) {
+                System.out.println("Restored completed statistics for " + repoId.generateId() + " from checkpoint");
+                collector.end();
+                return collector;
+            }
+            cursor = checkpointer.getCursor();
+            System.out.println("Resuming " + repoId.generateId() + " from checkpoint after " + collector.getTotal()
+                    + " pull requests");
         }
-        if (collector.getClosed() > 0) {
-            System.out.println("Closed Pull Requests: " + collector.getClosed());
+
+        PullRequestSource source;
+        PullRequestFilter remaining = this.filter;
+        if (this.cacheDir != null) {
+            source = prepareCache(client, repoId);
+        } else if (BACKEND_GRAPHQL.equals(this.backend)) {
+            source = new GraphQLPullRequestSource(client, repoId, this.pageSize, this.filter)
+                    .setIncludeReviews(this.reviewResolver != null);
+            // Labels are applied by the query
+            remaining = this.filter.copy().setLabel(null);
+        } else {
+            source = new RestPullRequestSource(client, repoId, "all", this.pageSize, this.filter);
         }
-        if (collector.getMerged() > 0) {
-            outputPercentage(collector.getMergedPercentage(), "Merged Pull Requests");
+        if (!remaining.isEmpty())
+            source = new FilteredPullRequestSource(source, remaining, client, repoId, this.pageSize);
+        if (this.parallelism > 1)
+            return collectRepositoryParallel(client, source, multiRepo ? repoId.generateId() + " " : "");
+
+        // Stream the pull requests a page at a time, the next page is fetched
+        // in the background while we process the current page
+        String prefix = multiRepo ? "Processing " + repoId.generateId() + " PR #" : "Processing PR #";
+        try (PrefetchingIterator<Collection<PullRequest>> pages = new PrefetchingIterator<Collection<PullRequest>>(
+                source.pages(cursor))) {
+            while (pages.hasNext()) {
+                Collection<PullRequest> page = pages.next();
+                for (PullRequest pr : page) {
+                    if (checkpointer != null) {
+                        // A resumed listing may deliver some pull requests
+                        // again
+                        if (checkpointer.isCollected(pr.getNumber()))
+                            continue;
+                        checkpointer.collected(pr.getNumber());
+                    }
+                    System.out.println(prefix + pr.getNumber());
+                    collector.collect(client, pr);
+                }
+                if (checkpointer != null && page instanceof PullRequestPage)
+                    checkpointer.pageCollected(collector, ((PullRequestPage) page).getCursor());
+            }
         }
-        if (collector.getOpen() > 0) {
-            outputPercentage(collector.getOpenPercentage(), "Open Pull Requests");
+        if (checkpointer != null)
+            checkpointer.completed(collector);
+        collector.end();
+        return collector;
+    }
+
+    private PullRequestsCollector collectRepositoryParallel(GitHubClient client, PullRequestSource source,
+            String prefix) throws IOException {
+        // Each part is collected on its own thread so merging user lookups
+        // are made inline rather than via a further thread pool
+        CollectorFactory<PullRequest, PullRequestsCollector> factory = new CollectorFactory<PullRequest, PullRequestsCollector>() {
+
+            @Override
+            public PullRequestsCollector create() {
+                return createCollector(0);
+            }
+        };
+
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        PullRequestsCollector collector = createCollector();
+        collector.start();
+        try (PrefetchingIterator<Collection<PullRequest>> pages = new PrefetchingIterator<Collection<PullRequest>>(
+                source.pages())) {
+            // Pages are gathered into batches which are collected in parallel
+            // and then combined into the overall results
+            List<PullRequest> batch = new ArrayList<PullRequest>();
+            while (pages.hasNext()) {
+                batch.addAll(pages.next());
+                if (batch.size() >= PARALLEL_BATCH_SIZE || !pages.hasNext()) {
+                    System.out.println("Processing " + prefix + batch.size() + " PRs in parallel");
+                    collector.combine(ParallelCollection.collect(pool, client, batch, factory,
+                            ParallelCollection.DEFAULT_THRESHOLD));
+                    batch = new ArrayList<PullRequest>();
+                }
+            }
+        } finally {
+            pool.shutdown();
         }
-        if (collector.getClosed() > 0) {
-            outputPercentage(collector.getClosedPercentage(), "Closed Pull Requests");
+        collector.end();
+        return collector;
+    }
+
+    private PullRequestsCollector collectRepositories(final PullRequestStatsClient client, List<RepositoryId> repoIds)
+            throws IOException {
+        // Repositories are fetched in parallel sharing the same client and thus
+        // the same rate limit budget
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.repoThreads, repoIds.size()));
+        List<Future<PullRequestsCollector>> results = new ArrayList<Future<PullRequestsCollector>>();
+        try {
+            for (final RepositoryId repoId : repoIds) {
+                results.add(executor.submit(new Callable<PullRequestsCollector>() {
+
+                    @Override
+                    public PullRequestsCollector call() throws Exception {
+                        return collectRepository(client, repoId, true);
+                    }
+                }));
+            }
+
+            // Combine in the order the repositories were given so output is
+            // deterministic
+            PullRequestsCollector total = createCollector();
+            total.start();
+            List<String> summaries = new ArrayList<String>();
+            for (int i = 0; i < repoIds.size(); i++) {
+                String id = repoIds.get(i).generateId();
+                try {
+                    PullRequestsCollector repoCollector = results.get(i).get();
+                    total.combine(repoCollector);
+                    summaries.add(String.format("%s: %d Total, %d Merged, %d Open, %d Closed", id,
+                            repoCollector.getTotal(), repoCollector.getMerged(), repoCollector.getOpen(),
+                            repoCollector.getClosed()));
+                } catch (ExecutionException e) {
+                    this.failedRepositories = true;
+                    summaries.add(id + ": Failed - " + e.getCause().getMessage());
+                }
+            }
+            total.end();
+
+            System.out.println();
+            System.out.println("Generated PR Statistics for " + repoIds.size() + " repositories");
+            for (String summary : summaries) {
+                System.out.println(summary);
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while collecting repository statistics");
+        } finally {
+            executor.shutdownNow();
         }
     }
 
-    private void outputAgeStats(LongStatsCollector collector, String metric, boolean includeFrequencies) {
-        if (collector.getDescriptiveStats().getN() == 0)
-            return;
+    private PullRequestCache prepareCache(GitHubClient client, RepositoryId repoId) throws IOException {
+        PullRequestCache cache = new PullRequestCache(PullRequestCache.getCacheFile(new File(this.cacheDir), repoId),
+                repoId);
+        cache.setPageSize(this.pageSize);
+        cache.load();
+        System.out.println("Loaded " + cache.size() + " cached pull requests");
 
-        // Present stats
-        System.out.println("Minimum " + metric + ": " + (long) collector.getDescriptiveStats().getMin());
-        System.out.println("Maximum " + metric + ": " + (long) collector.getDescriptiveStats().getMax());
-        System.out.println(
-                "Average (Arithmetic Mean) " + metric + ": " + (long) collector.getDescriptiveStats().getMean());
-        System.out.println("Average (Geometric Mean) " + metric + ": "
-                + (long) collector.getDescriptiveStats().getGeometricMean());
-
-        if (includeFrequencies) {
-            long[] modes = collector.getModes();
-            if (modes != null)
-                System.out.println("Most Popular " + metric + ": " + toPrintableList(modes));
-            System.out.println("Cumulative Frequency:");
-            Frequency freq = collector.getFrequencies();
-            Percentile percentiles = collector.getPercentiles();
-            outputPercentile(freq, percentiles, 25, metric);
-            outputPercentile(freq, percentiles, 50, metric);
-            outputPercentile(freq, percentiles, 75, metric);
-            outputPercentile(freq, percentiles, 100, metric);
-            outputCumulativePrecentage(freq, 7, metric);
-            outputCumulativePrecentage(freq, 30, metric);
-            outputCumulativePrecentage(freq, 90, metric);
-            outputCumulativePrecentage(freq, 180, metric);
-            outputCumulativePrecentage(freq, 365, metric);
+        // Resolve missing merging users as part of the refresh, including any
+        // cached by earlier runs, so that they are cached and never need
+        // looking up again
+        MergeUserResolver resolver = this.mergeSummary || this.mergeDetailedStats || this.all
+                ? new MergeUserResolver(this.mergeFetchThreads) : null;
+        try {
+            int fetched = cache.refresh(client);
+            System.out.println("Fetched " + fetched + " pull requests updated since the last run");
+            if (resolver != null) {
+                int resolved = cache.resolveMergingUsers(client, resolver);
+                if (resolved > 0)
+                    System.out.println("Filled in the merging user of " + resolved + " pull requests");
+            }
+        } finally {
+            if (resolver != null)
+                resolver.close();
         }
+        cache.save();
+        PullRequestStore.of(cache.getPullRequests())
+                .write(PullRequestStore.getSnapshotFile(new File(this.cacheDir), repoId));
+        return cache;
+    }
+
+    private PullRequestsCollector collectOffline(List<RepositoryId> repoIds) throws IOException {
+        PullRequestsCollector total = createCollector(0);
+        total.start();
+        for (RepositoryId repoId : repoIds) {
+            File cacheDir = new File(this.cacheDir);
+            File snapshotFile = PullRequestStore.getSnapshotFile(cacheDir, repoId);
+            File cacheFile = PullRequestCache.getCacheFile(cacheDir, repoId);
+            if (!snapshotFile.exists() || snapshotFile.lastModified() < cacheFile.lastModified()) {
+                // Snapshots are always written alongside the cache but may be
+                // missing if the cache was written by an older version
+                if (!cacheFile.exists())
+                    throw new FileNotFoundException("No cached pull requests found for " + repoId.generateId()
+                            + ", run without --offline first to populate the cache");
+                PullRequestCache cache = new PullRequestCache(cacheFile, repoId);
+                cache.load();
+                PullRequestStore.of(cache.getPullRequests()).write(snapshotFile);
+            }
+
+            PullRequestStore store = PullRequestStore.open(snapshotFile);
+            System.out.println("Opened snapshot of " + store.size() + " pull requests for " + repoId.generateId());
+            PullRequestsCollector collector = createCollector(0);
+            collector.start();
+            store.collect(collector, store.select(this.filter));
+            collector.end();
+            total.combine(collector);
+        }
+        total.end();
+        System.out.println();
+        return total;
     }
 
-    private <T extends AbstractUserPullRequestCollector> void outputUserStats(T collector) {
-        System.out.println(collector.getUser().getLogin());
-        outputBasicStatus(collector);
-        outputPercentage(collector.getSelfMergedPercentage(), "Self Merged Pull Requests");
-        outputAgeStats(collector.getDaysToMergeStats(), "Days to Merge", false);
-        outputAgeStats(collector.getDaysOpenStats(), "Days Open", false);
-        outputAgeStats(collector.getDaysToCloseStats(), "Days to Close", false);
+    private PullRequestStatsClient createClient() throws MalformedURLException {
+        if (this.apiUrl == null)
+            return new PullRequestStatsClient();
+        URL url = new URL(this.apiUrl);
+        if (IGitHubConstants.HOST_DEFAULT.equalsIgnoreCase(url.getHost())
+                || IGitHubConstants.HOST_API.equalsIgnoreCase(url.getHost()))
+            return new PullRequestStatsClient();
+        System.out.println("Using the GitHub server at " + url.getProtocol() + "://" + url.getAuthority());
+        return new PullRequestStatsClient(url.getHost(), url.getPort(), url.getProtocol());
     }
 
-    private RepositoryId prepareRepositoryId() {
-        if (this.repo.size() < 2) {
+    private List<RepositoryId> prepareRepositoryIds(GitHubClient client) throws IOException {
+        // Repositories may be given more than once e.g. explicitly and as part
+        // of an organisation, keyed case insensitively as GitHub treats names
+        // so each is only collected once
+        Map<String, RepositoryId> unique = new LinkedHashMap<String, RepositoryId>();
+        if (this.repo.size() > 0) {
+            if (this.repo.size() < 2) {
+                System.err.println(
+                        "Insufficient repository information provided, you must provide both the owner and repository name");
+                System.exit(1);
+            }
+            addRepositoryId(unique, new RepositoryId(this.repo.get(0), this.repo.get(1)));
+        }
+        for (String id : this.repositories) {
+            RepositoryId repoId = RepositoryId.createFromId(id);
+            if (repoId == null) {
+                System.err.println("Repository " + id + " is not in the form Owner/Repository");
+                System.exit(1);
+            }
+            addRepositoryId(unique, repoId);
+        }
+        if (this.org != null) {
+            System.out.println("Finding repositories for organisation " + this.org);
+            for (Repository orgRepo : new RepositoryService(client).getOrgRepositories(this.org)) {
+                addRepositoryId(unique, new RepositoryId(orgRepo.getOwner().getLogin(), orgRepo.getName()));
+            }
+        }
+        List<RepositoryId> repoIds = new ArrayList<RepositoryId>(unique.values());
+        if (repoIds.isEmpty()) {
             System.err.println(
-                    "Insufficient repository information provided, you must provide both the owner and repository name");
+                    "No repositories specified, you must provide an owner and repository name, the --repository option or the --org option");
             System.exit(1);
         }
-        System.out.println("Generating PR Statistics for repository " + this.repo.get(0) + "/" + this.repo.get(1));
-        return new RepositoryId(this.repo.get(0), this.repo.get(1));
+
+        if (repoIds.size() == 1) {
+            System.out.println("Generating PR Statistics for repository " + repoIds.get(0).generateId());
+        } else {
+            System.out.println("Generating PR Statistics for " + repoIds.size() + " repositories");
+        }
+        return repoIds;
+    }
+
+    private static void addRepositoryId(Map<String, RepositoryId> repoIds, RepositoryId repoId) {
+        String key = repoId.generateId().toLowerCase(Locale.ROOT);
+        if (!repoIds.containsKey(key))
+            repoIds.put(key, repoId);
     }
 
     private void prepareCredentials(GitHubClient client) {
@@ -360,38 +1026,4 @@ public class PullRequestStats {
             client.setCredentials(this.user, this.pwd);
         }
     }
-
-    private void outputPercentage(double percentage, String metric) {
-        System.out.println("Percentage " + metric + ": " + (int) (percentage * 100) + "%");
-    }
-
-    private void outputPercentile(Frequency freq, Percentile percentiles, int p, String metric) {
-        long value = (long) percentiles.evaluate((double) p);
-        System.out.println("  " + p + "% (" + value + " " + metric + "): " + (long) freq.getCumFreq(value));
-    }
-
-    private void outputCumulativePrecentage(Frequency freq, long value, String metric) {
-        System.out.println("Under " + value + " " + metric + ": " + (long) (freq.getCumPct(value) * 100) + "%");
-    }
-
-    private String toPrintableList(long[] values) {
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < values.length; i++) {
-            if (i > 0)
-                builder.append(',');
-            builder.append(values[i]);
-        }
-        return builder.toString();
-    }
-
-    private <T extends AbstractUserPullRequestCollector> List<T> findEquivalent(List<T> users, T user,
-            UserComparator<T> comparator) {
-        List<T> equivUsers = new ArrayList<T>();
-
-        for (T possUser : users) {
-            if (comparator.compare(user, possUser) == 0)
-                equivUsers.add(possUser);
-        }
-        return equivUsers;
-    }
 }
@@ -0,0 +1,390 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.PullRequestMarker;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GsonUtils;
+
+import com.github.rvesse.github.pr.stats.collectors.MergeUserResolver;
+import com.github.rvesse.github.pr.stats.sources.PullRequestListingService;
+import com.github.rvesse.github.pr.stats.sources.PullRequestPage;
+import com.github.rvesse.github.pr.stats.sources.PullRequestSource;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * An on-disk cache of the pull request fields used by the collectors
+ * <p>
+ * The cache records a watermark which is the most recent update time of any
+ * pull request it contains, refreshing the cache only fetches pull requests
+ * updated since that watermark. Pull requests held in the cache are trimmed
+ * copies of the original pull requests so are indistinguishable from live
+ * pull requests as far as the collectors are concerned.
+ * </p>
+ */
+public class PullRequestCache implements PullRequestSource {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final File file;
+    private final RepositoryId repo;
+    private final TreeMap<Integer, PullRequest> prs = new TreeMap<Integer, PullRequest>();
+    private final Gson gson = GsonUtils.getGson(false);
+    private Date watermark;
+    private int pageSize = 100;
+
+    public PullRequestCache(File file, RepositoryId repo) {
+        this.file = file;
+        this.repo = repo;
+    }
+
+    /**
+     * Gets the cache file for a repository within a cache directory
+     *
+     * @param dir
+     *            Cache directory
+     * @param repo
+     *            Repository
+     * @return Cache file
+     */
+    public static File getCacheFile(File dir, RepositoryId repo) {
+        return new File(new File(dir, repo.getOwner()), repo.getName() + ".json");
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    public RepositoryId getRepository() {
+        return this.repo;
+    }
+
+    public Date getWatermark() {
+        return this.watermark;
+    }
+
+    public int size() {
+        return this.prs.size();
+    }
+
+    public Collection<PullRequest> getPullRequests() {
+        return Collections.unmodifiableCollection(this.prs.values());
+    }
+
+    /**
+     * Sets the page size used both when refreshing the cache and when
+     * delivering cached pull requests via {@link #pages()}
+     *
+     * @param pageSize
+     *            Page size
+     */
+    public void setPageSize(int pageSize) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("pageSize must be greater than zero");
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Loads the cache from disk, if the cache file does not exist the cache is
+     * left empty
+     *
+     * @throws IOException
+     *             Thrown if the cache file cannot be read
+     */
+    public void load() throws IOException {
+        this.prs.clear();
+        this.watermark = null;
+        if (!this.file.exists())
+            return;
+
+        try (JsonReader reader = new JsonReader(
+                new InputStreamReader(new FileInputStream(this.file), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("version".equals(name)) {
+                    int version = reader.nextInt();
+                    if (version != FORMAT_VERSION)
+                        throw new IOException(String.format("Cache file %s has unsupported format version %d",
+                                this.file, version));
+                } else if ("repository".equals(name)) {
+                    String id = reader.nextString();
+                    if (!id.equals(this.repo.generateId()))
+                        throw new IOException(String.format("Cache file %s is for repository %s not %s", this.file,
+                                id, this.repo.generateId()));
+                } else if ("watermark".equals(name)) {
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else {
+                        this.watermark = new Date(reader.nextLong());
+                    }
+                } else if ("pull_requests".equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        PullRequest pr = this.gson.fromJson(reader, PullRequest.class);
+                        this.prs.put(pr.getNumber(), pr);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (RuntimeException e) {
+            throw new IOException(String.format("Cache file %s is corrupt", this.file), e);
+        }
+    }
+
+    /**
+     * Saves the cache to disk
+     *
+     * @throws IOException
+     *             Thrown if the cache cannot be written
+     */
+    public void save() throws IOException {
+        File dir = this.file.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Unable to create cache directory " + dir);
+
+        // Write to a temporary file and then move into place so an interrupted
+        // save never leaves a truncated cache behind
+        File temp = new File(dir, this.file.getName() + ".tmp");
+        try (JsonWriter writer = new JsonWriter(
+                new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            writer.beginObject();
+            writer.name("version").value(FORMAT_VERSION);
+            writer.name("repository").value(this.repo.generateId());
+            writer.name("watermark");
+            if (this.watermark != null) {
+                writer.value(this.watermark.getTime());
+            } else {
+                writer.nullValue();
+            }
+            writer.name("pull_requests");
+            writer.beginArray();
+            for (PullRequest pr : this.prs.values()) {
+                this.gson.toJson(pr, PullRequest.class, writer);
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+        Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Refreshes the cache by fetching only those pull requests which have been
+     * updated since the cache watermark
+     * <p>
+     * The watermark only advances once the listing completes, so if a refresh
+     * fails partway the next refresh fetches everything updated since the
+     * last complete refresh again rather than missing the pull requests on
+     * the pages that were not read.
+     * </p>
+     *
+     * @param client
+     *            GitHub Client
+     * @return Number of pull requests fetched
+     * @throws IOException
+     *             Thrown if the pull requests cannot be fetched
+     */
+    public int refresh(GitHubClient client) throws IOException {
+        PullRequestListingService service = new PullRequestListingService(client,
+                PullRequestListingService.SORT_UPDATED, PullRequestListingService.DIRECTION_DESC);
+        Iterator<Collection<PullRequest>> pages = service.pagePullRequests(this.repo, "all", this.pageSize);
+
+        Date previous = this.watermark, latest = this.watermark;
+        int fetched = 0;
+        boolean done = false;
+        while (!done && pages.hasNext()) {
+            for (PullRequest pr : pages.next()) {
+                // Listing is ordered most recently updated first so we can stop
+                // as soon as we see something older than our watermark
+                if (previous != null && pr.getUpdatedAt() != null && pr.getUpdatedAt().before(previous)) {
+                    done = true;
+                    break;
+                }
+                PullRequest trimmed = trim(pr);
+                this.prs.put(trimmed.getNumber(), trimmed);
+                if (pr.getUpdatedAt() != null && (latest == null || pr.getUpdatedAt().after(latest)))
+                    latest = pr.getUpdatedAt();
+                fetched++;
+            }
+        }
+        this.watermark = latest;
+        return fetched;
+    }
+
+    /**
+     * Fills in the merging user of cached merged pull requests that lack one,
+     * whether they were fetched by the latest refresh or cached by an earlier
+     * run that did not look merging users up, so that they need not be looked
+     * up again on later runs
+     * <p>
+     * Lookups that fail leave the pull request as it was so they are retried
+     * next time.
+     * </p>
+     *
+     * @param client
+     *            GitHub Client
+     * @param resolver
+     *            Resolver used to look up merging users
+     * @return Number of pull requests whose merging user was filled in
+     */
+    public int resolveMergingUsers(GitHubClient client, MergeUserResolver resolver) {
+        List<PullRequest> missing = new ArrayList<PullRequest>();
+        for (PullRequest pr : this.prs.values()) {
+            if (pr.getMergedAt() != null && pr.getMergedBy() == null)
+                missing.add(pr);
+        }
+
+        // Look up a page at a time so only a bounded number of lookups are
+        // outstanding
+        int resolved = 0;
+        for (int start = 0; start < missing.size(); start += this.pageSize) {
+            List<PullRequest> page = missing.subList(start, Math.min(start + this.pageSize, missing.size()));
+            List<Future<PullRequest>> lookups = new ArrayList<Future<PullRequest>>(page.size());
+            for (PullRequest pr : page) {
+                lookups.add(resolver.resolve(client, pr));
+            }
+            for (int i = 0; i < page.size(); i++) {
+                PullRequest pr = page.get(i);
+                try {
+                    User mergedBy = lookups.get(i).get().getMergedBy();
+                    if (mergedBy != null) {
+                        pr.setMergedBy(trim(mergedBy));
+                        resolved++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return resolved;
+                } catch (ExecutionException e) {
+                    System.out.println("Failed to obtain detailed information for PR #" + pr.getNumber());
+                }
+            }
+        }
+        return resolved;
+    }
+
+    @Override
+    public Iterator<Collection<PullRequest>> pages() {
+        return pages(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Cached pull requests are delivered in number order and cursors are the
+     * number of the last pull request in a page.
+     * </p>
+     */
+    @Override
+    public Iterator<Collection<PullRequest>> pages(String cursor) {
+        final Iterator<PullRequest> iter;
+        try {
+            iter = cursor != null ? this.prs.tailMap(Integer.parseInt(cursor), false).values().iterator()
+                    : this.prs.values().iterator();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+        return new Iterator<Collection<PullRequest>>() {
+
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public Collection<PullRequest> next() {
+                List<PullRequest> page = new ArrayList<PullRequest>(pageSize);
+                while (iter.hasNext() && page.size() < pageSize) {
+                    page.add(iter.next());
+                }
+                return new PullRequestPage(page, Integer.toString(page.get(page.size() - 1).getNumber()));
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Creates a copy of a pull request that contains only the fields used by
+     * the collectors
+     *
+     * @param pr
+     *            Pull Request
+     * @return Trimmed pull request
+     */
+    public static PullRequest trim(PullRequest pr) {
+        PullRequest trimmed = new PullRequest();
+        trimmed.setId(pr.getId());
+        trimmed.setNumber(pr.getNumber());
+        trimmed.setState(pr.getState());
+        trimmed.setCreatedAt(pr.getCreatedAt());
+        trimmed.setUpdatedAt(pr.getUpdatedAt());
+        trimmed.setMergedAt(pr.getMergedAt());
+        trimmed.setClosedAt(pr.getClosedAt());
+        trimmed.setMerged(pr.isMerged());
+        trimmed.setMergeable(pr.isMergeable());
+        trimmed.setUser(trim(pr.getUser()));
+        trimmed.setMergedBy(trim(pr.getMergedBy()));
+        if (pr.getBase() != null) {
+            PullRequestMarker base = new PullRequestMarker();
+            base.setRef(pr.getBase().getRef());
+            Repository baseRepo = pr.getBase().getRepo();
+            if (baseRepo != null) {
+                base.setRepo(new Repository().setName(baseRepo.getName()).setOwner(trim(baseRepo.getOwner())));
+            }
+            trimmed.setBase(base);
+        }
+        return trimmed;
+    }
+
+    private static User trim(User user) {
+        if (user == null)
+            return null;
+        return new User().setId(user.getId()).setLogin(user.getLogin());
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.client.GsonUtils;
+
+import com.github.rvesse.github.pr.stats.sources.PullRequestReview;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * An on-disk cache of the reviews of the pull requests of a repository
+ * <p>
+ * Reviews are cached along with the update time of the pull request when they
+ * were fetched. Submitting a review updates a pull request so cached reviews
+ * are used only while the pull request has not been updated since.
+ * </p>
+ */
+public class ReviewCache {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final File file;
+    private final RepositoryId repo;
+    private final Map<Integer, CachedReviews> reviews = new TreeMap<Integer, CachedReviews>();
+    private final Gson gson = GsonUtils.getGson(false);
+    private boolean modified = false;
+
+    public ReviewCache(File file, RepositoryId repo) {
+        this.file = file;
+        this.repo = repo;
+    }
+
+    /**
+     * Gets the review cache file for a repository within a cache directory
+     *
+     * @param dir
+     *            Cache directory
+     * @param repo
+     *            Repository
+     * @return Cache file
+     */
+    public static File getCacheFile(File dir, RepositoryId repo) {
+        return new File(new File(dir, repo.getOwner()), repo.getName() + ".reviews.json");
+    }
+
+    public RepositoryId getRepository() {
+        return this.repo;
+    }
+
+    public synchronized int size() {
+        return this.reviews.size();
+    }
+
+    /**
+     * Gets the cached reviews of a pull request
+     * 
+     * @param pr
+     *            Pull request
+     * @return Reviews, {@code null} if not cached or the pull request has been
+     *         updated since they were cached
+     */
+    public synchronized List<PullRequestReview> get(PullRequest pr) {
+        CachedReviews cached = this.reviews.get(pr.getNumber());
+        if (cached == null || pr.getUpdatedAt() == null || cached.updatedAt != pr.getUpdatedAt().getTime())
+            return null;
+        return cached.reviews;
+    }
+
+    /**
+     * Caches the reviews of a pull request, pull requests with no known update
+     * time are not cached
+     * 
+     * @param pr
+     *            Pull request
+     * @param reviews
+     *            Reviews
+     */
+    public synchronized void put(PullRequest pr, List<PullRequestReview> reviews) {
+        if (pr.getUpdatedAt() == null)
+            return;
+        List<PullRequestReview> trimmed = new ArrayList<PullRequestReview>(reviews.size());
+        for (PullRequestReview review : reviews) {
+            trimmed.add(trim(review));
+        }
+        this.reviews.put(pr.getNumber(),
+                new CachedReviews(pr.getUpdatedAt().getTime(), Collections.unmodifiableList(trimmed)));
+        this.modified = true;
+    }
+
+    /**
+     * Loads the cache from disk, if the cache file does not exist the cache is
+     * left empty
+     *
+     * @throws IOException
+     *             Thrown if the cache file cannot be read
+     */
+    public synchronized void load() throws IOException {
+        this.reviews.clear();
+        this.modified = false;
+        if (!this.file.exists())
+            return;
+
+        try (JsonReader reader = new JsonReader(
+                new InputStreamReader(new FileInputStream(this.file), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("version".equals(name)) {
+                    int version = reader.nextInt();
+                    if (version != FORMAT_VERSION)
+                        throw new IOException(String.format("Review cache file %s has unsupported format version %d",
+                                this.file, version));
+                } else if ("repository".equals(name)) {
+                    String id = reader.nextString();
+                    if (!id.equals(this.repo.generateId()))
+                        throw new IOException(String.format("Review cache file %s is for repository %s not %s",
+                                this.file, id, this.repo.generateId()));
+                } else if ("pull_requests".equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readPullRequest(reader);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (RuntimeException e) {
+            throw new IOException(String.format("Review cache file %s is corrupt", this.file), e);
+        }
+    }
+
+    private void readPullRequest(JsonReader reader) throws IOException {
+        int number = -1;
+        long updatedAt = -1;
+        List<PullRequestReview> prReviews = new ArrayList<PullRequestReview>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("number".equals(name)) {
+                number = reader.nextInt();
+            } else if ("updated_at".equals(name)) {
+                updatedAt = reader.nextLong();
+            } else if ("reviews".equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    prReviews.add(this.gson.<PullRequestReview> fromJson(reader, PullRequestReview.class));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (number < 0 || updatedAt < 0)
+            throw new IOException(String.format("Review cache file %s is corrupt", this.file));
+        this.reviews.put(number, new CachedReviews(updatedAt, Collections.unmodifiableList(prReviews)));
+    }
+
+    /**
+     * Saves the cache to disk if it has been modified since it was loaded
+     *
+     * @throws IOException
+     *             Thrown if the cache cannot be written
+     */
+    public synchronized void save() throws IOException {
+        if (!this.modified)
+            return;
+        File dir = this.file.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Unable to create cache directory " + dir);
+
+        File temp = new File(dir, this.file.getName() + ".tmp");
+        try (JsonWriter writer = new JsonWriter(
+                new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            writer.beginObject();
+            writer.name("version").value(FORMAT_VERSION);
+            writer.name("repository").value(this.repo.generateId());
+            writer.name("pull_requests");
+            writer.beginArray();
+            for (Map.Entry<Integer, CachedReviews> e : this.reviews.entrySet()) {
+                writer.beginObject();
+                writer.name("number").value(e.getKey());
+                writer.name("updated_at").value(e.getValue().updatedAt);
+                writer.name("reviews");
+                writer.beginArray();
+                for (PullRequestReview review : e.getValue().reviews) {
+                    this.gson.toJson(review, PullRequestReview.class, writer);
+                }
+                writer.endArray();
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+        Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        this.modified = false;
+    }
+
+    /**
+     * Creates a copy of a review that contains only the fields used by the
+     * collectors
+     * 
+     * @param review
+     *            Review
+     * @return Trimmed review
+     */
+    public static PullRequestReview trim(PullRequestReview review) {
+        User user = review.getUser();
+        return new PullRequestReview().setId(review.getId()).setState(review.getState())
+                .setSubmittedAt(review.getSubmittedAt())
+                .setUser(user != null ? new User().setId(user.getId()).setLogin(user.getLogin()) : null);
+    }
+
+    private static final class CachedReviews {
+        private final long updatedAt;
+        private final List<PullRequestReview> reviews;
+
+        private CachedReviews(long updatedAt, List<PullRequestReview> reviews) {
+            this.updatedAt = updatedAt;
+            this.reviews = reviews;
+        }
+    }
+}
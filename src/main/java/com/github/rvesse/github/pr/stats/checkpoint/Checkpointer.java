@@ -0,0 +1,356 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.checkpoint;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.egit.github.core.RepositoryId;
+import org.joda.time.Instant;
+
+import com.github.rvesse.github.pr.stats.collectors.PullRequestsCollector;
+
+/**
+ * Periodically checkpoints the state of a collection so that an interrupted
+ * run may later be resumed
+ * <p>
+ * A checkpoint holds the collector state, the cursor of the last page of pull
+ * requests collected and the numbers of the pull requests collected so far,
+ * the latter is used to skip pull requests a resumed listing delivers again.
+ * Checkpoints are written in a compact binary format, a small uncompressed
+ * header describing the run followed by the deflated state. The state is
+ * serialised on the collecting thread, which is fast, while writing it to
+ * disk happens in the background so checkpointing does not stall collection.
+ * </p>
+ */
+public class Checkpointer implements Closeable {
+
+    private static final int MAGIC = 0x50525343;
+    private static final int FORMAT_VERSION = 3;
+
+    private final File file;
+    private final String configuration;
+    private final long intervalMillis;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "checkpoint-writer");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private Future<?> writing;
+    private long lastCheckpoint = System.currentTimeMillis();
+
+    private BitSet collected = new BitSet();
+    private Instant now;
+    private String cursor;
+    private boolean complete;
+    private byte[] state;
+
+    /**
+     * Creates a new checkpointer
+     * 
+     * @param file
+     *            Checkpoint file
+     * @param configuration
+     *            Description of the options that affect the collected state, a
+     *            checkpoint is only resumed by a run with the same
+     *            configuration
+     * @param intervalMillis
+     *            Minimum interval between checkpoints
+     */
+    public Checkpointer(File file, String configuration, long intervalMillis) {
+        this.file = file;
+        this.configuration = configuration;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Gets the checkpoint file for a repository within a checkpoint directory
+     * 
+     * @param dir
+     *            Checkpoint directory
+     * @param repo
+     *            Repository
+     * @return Checkpoint file
+     */
+    public static File getCheckpointFile(File dir, RepositoryId repo) {
+        return new File(new File(dir, repo.getOwner()), repo.getName() + ".checkpoint");
+    }
+
+    /**
+     * Reads the time as of which the statistics in a checkpoint were collected
+     * without reading the rest of the checkpoint
+     * 
+     * @param file
+     *            Checkpoint file
+     * @return Time, {@code null} if there is no checkpoint
+     * @throws IOException
+     *             Thrown if the checkpoint cannot be read
+     */
+    public static Instant readNow(File file) throws IOException {
+        if (!file.exists())
+            return null;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            readHeader(file, input);
+            return new Instant(input.readLong());
+        }
+    }
+
+    private static String readHeader(File file, DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC)
+            throw new IOException(String.format("%s is not a checkpoint file", file));
+        int version = input.readByte();
+        if (version != FORMAT_VERSION)
+            throw new IOException(
+                    String.format("Checkpoint file %s has unsupported format version %d", file, version));
+        return input.readUTF();
+    }
+
+    /**
+     * Loads the checkpoint, if any
+     * 
+     * @return True if a checkpoint was loaded, false if there is no checkpoint
+     * @throws IOException
+     *             Thrown if the checkpoint cannot be read or was made by a run
+     *             with a different configuration
+     */
+    public boolean load() throws IOException {
+        if (!this.file.exists())
+            return false;
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(this.file)))) {
+            String configuration = readHeader(this.file, input);
+            if (!configuration.equals(this.configuration))
+                throw new IOException(String.format(
+                        "Checkpoint file %s was made by a run with different options (%s) so cannot be resumed",
+                        this.file, configuration));
+            this.now = new Instant(input.readLong());
+            this.complete = input.readBoolean();
+            this.cursor = input.readBoolean() ? input.readUTF() : null;
+            long[] words = new long[input.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = input.readLong();
+            }
+            this.collected = BitSet.valueOf(words);
+            this.state = inflate(input);
+        } catch (RuntimeException e) {
+            throw new IOException(String.format("Checkpoint file %s is corrupt", this.file), e);
+        }
+        return true;
+    }
+
+    public Instant getNow() {
+        return this.now;
+    }
+
+    /**
+     * Gets the cursor of the last page collected before the checkpoint
+     * 
+     * @return Cursor, {@code null} if no pages were collected
+     */
+    public String getCursor() {
+        return this.cursor;
+    }
+
+    /**
+     * Gets whether the checkpoint was made once collection had completed
+     * 
+     * @return True if complete
+     */
+    public boolean isComplete() {
+        return this.complete;
+    }
+
+    /**
+     * Restores the loaded collector state into a collector
+     * 
+     * @param collector
+     *            Collector, must have been started
+     * @throws IOException
+     *             Thrown if the state cannot be restored
+     */
+    public void restore(PullRequestsCollector collector) throws IOException {
+        if (this.state == null)
+            throw new IllegalStateException("No checkpoint has been loaded");
+        collector.readState(new DataInputStream(new ByteArrayInputStream(this.state)));
+        this.state = null;
+    }
+
+    /**
+     * Gets whether a pull request was collected before the checkpoint
+     * 
+     * @param number
+     *            Pull request number
+     * @return True if already collected
+     */
+    public boolean isCollected(int number) {
+        return number >= 0 && this.collected.get(number);
+    }
+
+    /**
+     * Records that a pull request has been collected
+     * 
+     * @param number
+     *            Pull request number
+     */
+    public void collected(int number) {
+        if (number >= 0)
+            this.collected.set(number);
+    }
+
+    /**
+     * Called after each page of pull requests has been collected, makes a
+     * checkpoint if the checkpoint interval has passed and the previous
+     * checkpoint has finished being written
+     * 
+     * @param collector
+     *            Collector
+     * @param cursor
+     *            Cursor of the page just collected
+     * @throws IOException
+     *             Thrown if the collector state cannot be serialised
+     */
+    public void pageCollected(PullRequestsCollector collector, String cursor) throws IOException {
+        this.cursor = cursor;
+        if (System.currentTimeMillis() - this.lastCheckpoint < this.intervalMillis)
+            return;
+        if (this.writing != null && !this.writing.isDone())
+            return;
+        this.writing = this.writer.submit(new Write(serialise(collector, false)));
+        this.lastCheckpoint = System.currentTimeMillis();
+    }
+
+    /**
+     * Makes a final checkpoint once collection has completed, this is written
+     * immediately
+     * 
+     * @param collector
+     *            Collector, must not yet have been ended
+     * @throws IOException
+     *             Thrown if the checkpoint cannot be written
+     */
+    public void completed(PullRequestsCollector collector) throws IOException {
+        byte[] data = serialise(collector, true);
+        waitForWrite();
+        write(data);
+    }
+
+    @Override
+    public void close() {
+        this.writer.shutdown();
+    }
+
+    private void waitForWrite() throws IOException {
+        if (this.writing == null)
+            return;
+        try {
+            this.writing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Already reported by the writer
+        }
+        this.writing = null;
+    }
+
+    private byte[] serialise(PullRequestsCollector collector, boolean complete) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeByte(FORMAT_VERSION);
+        output.writeUTF(this.configuration);
+        output.writeLong(collector.getNow().getMillis());
+        output.writeBoolean(complete);
+        output.writeBoolean(this.cursor != null);
+        if (this.cursor != null)
+            output.writeUTF(this.cursor);
+        long[] words = this.collected.toLongArray();
+        output.writeInt(words.length);
+        for (long word : words) {
+            output.writeLong(word);
+        }
+        output.flush();
+
+        // Favour speed over size since this runs on the collecting thread
+        DeflaterOutputStream deflater = new DeflaterOutputStream(bytes, new Deflater(Deflater.BEST_SPEED), 65536);
+        DataOutputStream stateOutput = new DataOutputStream(deflater);
+        collector.writeState(stateOutput);
+        stateOutput.flush();
+        deflater.finish();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] inflate(DataInputStream input) throws IOException {
+        InflaterInputStream inflater = new InflaterInputStream(input);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[65536];
+        int read;
+        while ((read = inflater.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    private void write(byte[] data) throws IOException {
+        File dir = this.file.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Unable to create checkpoint directory " + dir);
+
+        // Write to a temporary file and then move into place so an interrupted
+        // write never leaves a truncated checkpoint behind
+        File temp = new File(dir, this.file.getName() + ".tmp");
+        Files.write(temp.toPath(), data);
+        Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private class Write implements Runnable {
+        private final byte[] data;
+
+        public Write(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public void run() {
+            try {
+                write(this.data);
+            } catch (IOException e) {
+                System.out.println("Failed to write checkpoint " + file + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.client;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * An on-disk store of response bodies keyed by request URI along with the
+ * validators needed to make conditional requests for them
+ */
+public class ConditionalRequestCache {
+
+    private static final String KEY_URI = "uri", KEY_ETAG = "etag", KEY_LINK = "link";
+
+    private final File dir;
+
+    public ConditionalRequestCache(File dir) throws IOException {
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Unable to create HTTP cache directory " + dir);
+        if (!dir.isDirectory())
+            throw new IOException("HTTP cache location " + dir + " is not a directory");
+        this.dir = dir;
+    }
+
+    /**
+     * Gets the cached response for a request
+     *
+     * @param uri
+     *            Request URI
+     * @return Cached response, or {@code null} if there is no usable cached
+     *         response
+     */
+    public synchronized CachedResponse get(String uri) {
+        String key = toKey(uri);
+        File headersFile = new File(this.dir, key + ".headers");
+        File bodyFile = new File(this.dir, key + ".body");
+        if (!headersFile.exists() || !bodyFile.exists())
+            return null;
+
+        try {
+            Properties headers = new Properties();
+            try (InputStream input = new FileInputStream(headersFile)) {
+                headers.load(input);
+            }
+            // Guard against the unlikely event of a hash collision
+            if (!uri.equals(headers.getProperty(KEY_URI)) || headers.getProperty(KEY_ETAG) == null)
+                return null;
+            return new CachedResponse(headers.getProperty(KEY_ETAG), headers.getProperty(KEY_LINK),
+                    Files.readAllBytes(bodyFile.toPath()));
+        } catch (IOException e) {
+            // Treat an unreadable entry as a cache miss
+            return null;
+        }
+    }
+
+    /**
+     * Stores a response in the cache
+     *
+     * @param uri
+     *            Request URI
+     * @param response
+     *            Response
+     * @throws IOException
+     *             Thrown if the response cannot be stored
+     */
+    public synchronized void put(String uri, CachedResponse response) throws IOException {
+        String key = toKey(uri);
+        Properties headers = new Properties();
+        headers.setProperty(KEY_URI, uri);
+        headers.setProperty(KEY_ETAG, response.getETag());
+        if (response.getLink() != null)
+            headers.setProperty(KEY_LINK, response.getLink());
+
+        // Body is written first so a partially written entry never has
+        // validators that claim a body we don't have
+        File bodyTemp = new File(this.dir, key + ".body.tmp");
+        Files.write(bodyTemp.toPath(), response.getBody());
+        Files.move(bodyTemp.toPath(), new File(this.dir, key + ".body").toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        File headersTemp = new File(this.dir, key + ".headers.tmp");
+        try (OutputStream output = new FileOutputStream(headersTemp)) {
+            headers.store(output, null);
+        }
+        Files.move(headersTemp.toPath(), new File(this.dir, key + ".headers").toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static String toKey(String uri) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(uri.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest) {
+                builder.append(String.format("%02x", b & 0xff));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported by this JVM", e);
+        }
+    }
+
+    /**
+     * A cached response
+     */
+    public static final class CachedResponse {
+        private final String etag, link;
+        private final byte[] body;
+
+        public CachedResponse(String etag, String link, byte[] body) {
+            this.etag = etag;
+            this.link = link;
+            this.body = body;
+        }
+
+        public String getETag() {
+            return this.etag;
+        }
+
+        public String getLink() {
+            return this.link;
+        }
+
+        public byte[] getBody() {
+            return this.body;
+        }
+    }
+}
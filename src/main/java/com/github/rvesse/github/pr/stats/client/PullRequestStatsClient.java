@@ -0,0 +1,322 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.client;
+
+import static org.eclipse.egit.github.core.client.IGitHubConstants.CONTENT_TYPE_JSON;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+
+import com.github.rvesse.github.pr.stats.client.ConditionalRequestCache.CachedResponse;
+import com.github.rvesse.github.pr.stats.client.ResponseArchive.RecordedResponse;
+
+/**
+ * GitHub client used by the application
+ * <p>
+ * When configured with a {@link ConditionalRequestCache} each successful
+ * response is stored along with its {@code ETag} and later requests for the
+ * same URI send {@code If-None-Match}, a {@code 304 Not Modified} response is
+ * then answered from the local copy. GitHub does not count {@code 304}
+ * responses against the rate limit.
+ * </p>
+ * <p>
+ * When configured with a {@link RateLimitScheduler} every request is first
+ * cleared with the scheduler and requests rejected by the rate limit are
+ * retried rather than failing.
+ * </p>
+ * <p>
+ * When configured to record to a {@link ResponseArchive} every response the
+ * client uses is written to the archive, when configured to replay from an
+ * archive responses are served from the archive and no network requests are
+ * made at all.
+ * </p>
+ * <p>
+ * GraphQL API requests made via {@link #graphql(Object, Type)} are scheduled,
+ * recorded and replayed in the same way.
+ * </p>
+ */
+public class PullRequestStatsClient extends GitHubClient {
+
+    protected static final String HEADER_ETAG = "ETag";
+    protected static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    protected static final String HEADER_LINK = "Link";
+    protected static final String SEGMENT_GRAPHQL = "/graphql";
+    protected static final String SEGMENT_ENTERPRISE_GRAPHQL = "/api/graphql";
+
+    private ConditionalRequestCache conditionalCache;
+    private RateLimitScheduler scheduler;
+    private ResponseArchive recordTo, replayFrom;
+    private final AtomicLong notModified = new AtomicLong();
+
+    public PullRequestStatsClient() {
+        super();
+    }
+
+    public PullRequestStatsClient(String hostname) {
+        super(hostname);
+    }
+
+    public PullRequestStatsClient(String hostname, int port, String scheme) {
+        super(hostname, port, scheme);
+    }
+
+    /**
+     * Sets the cache used to make conditional requests
+     *
+     * @param cache
+     *            Cache, may be {@code null} to disable conditional requests
+     * @return Client
+     */
+    public PullRequestStatsClient setConditionalCache(ConditionalRequestCache cache) {
+        this.conditionalCache = cache;
+        return this;
+    }
+
+    /**
+     * Sets the scheduler used to keep requests within the rate limit
+     *
+     * @param scheduler
+     *            Scheduler, may be {@code null} to make requests unscheduled
+     * @return Client
+     */
+    public PullRequestStatsClient setScheduler(RateLimitScheduler scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    public RateLimitScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    /**
+     * Sets an archive to which every response used is recorded
+     *
+     * @param archive
+     *            Archive, may be {@code null} to stop recording
+     * @return Client
+     */
+    public PullRequestStatsClient setRecordTo(ResponseArchive archive) {
+        this.recordTo = archive;
+        return this;
+    }
+
+    /**
+     * Sets an archive from which all responses are replayed, while set no
+     * network requests are made and any request for which no response was
+     * recorded fails
+     *
+     * @param archive
+     *            Archive, may be {@code null} to make live requests
+     * @return Client
+     */
+    public PullRequestStatsClient setReplayFrom(ResponseArchive archive) {
+        this.replayFrom = archive;
+        return this;
+    }
+
+    public boolean isReplaying() {
+        return this.replayFrom != null;
+    }
+
+    /**
+     * Gets the number of requests that were answered with
+     * {@code 304 Not Modified} and served from the local cache
+     *
+     * @return Number of requests
+     */
+    public long getNotModifiedRequests() {
+        return this.notModified.get();
+    }
+
+    @Override
+    protected HttpURLConnection createConnection(String uri, String method) throws IOException {
+        if (this.replayFrom != null)
+            return configureRequest(
+                    new ReplayConnection(new URL(createUri(uri)), method, this.replayFrom.get(method, uri)));
+        if (this.scheduler != null)
+            this.scheduler.beforeRequest();
+        return super.createConnection(uri, method);
+    }
+
+    @Override
+    protected GitHubClient updateRateLimits(HttpURLConnection request) {
+        super.updateRateLimits(request);
+        if (this.scheduler != null)
+            this.scheduler.update(request);
+        return this;
+    }
+
+    @Override
+    public GitHubResponse get(GitHubRequest request) throws IOException {
+        if (this.conditionalCache == null && this.scheduler == null && this.recordTo == null)
+            return super.get(request);
+
+        String uri = request.generateUri();
+        for (int attempt = 0;; attempt++) {
+            HttpURLConnection httpRequest = createGet(uri);
+            String accept = request.getResponseContentType();
+            if (accept != null && accept.length() > 0)
+                httpRequest.setRequestProperty(HEADER_ACCEPT, accept);
+            CachedResponse cached = this.conditionalCache != null ? this.conditionalCache.get(uri) : null;
+            if (cached != null)
+                httpRequest.setRequestProperty(HEADER_IF_NONE_MATCH, cached.getETag());
+
+            final int code = httpRequest.getResponseCode();
+            updateRateLimits(httpRequest);
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                this.notModified.incrementAndGet();
+                Map<String, String> headers = cached.getLink() != null
+                        ? Collections.singletonMap(HEADER_LINK, cached.getLink())
+                        : Collections.<String, String> emptyMap();
+                if (this.recordTo != null) {
+                    // Record what the response would have been had it been
+                    // made unconditionally so the archive stands alone
+                    Map<String, String> recorded = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+                    recorded.putAll(RecordedResponse.create(code, null, httpRequest.getHeaderFields(), null)
+                            .getHeaders());
+                    recorded.putAll(headers);
+                    this.recordTo.record(METHOD_GET, uri,
+                            new RecordedResponse(HttpURLConnection.HTTP_OK, "OK", recorded, cached.getBody()));
+                }
+                Object body = getBody(request, new ByteArrayInputStream(cached.getBody()));
+                return new StoredGitHubResponse(body, headers);
+            }
+
+            // Read the body up front if we need to keep a copy of it
+            byte[] data = null;
+            if (this.recordTo != null || (this.conditionalCache != null && isOk(code))) {
+                data = readBody(httpRequest);
+                if (this.recordTo != null)
+                    this.recordTo.record(METHOD_GET, uri, RecordedResponse.create(code,
+                            httpRequest.getResponseMessage(), httpRequest.getHeaderFields(), data));
+            }
+
+            if (isOk(code)) {
+                if (data == null)
+                    return new GitHubResponse(httpRequest, getBody(request, getStream(httpRequest)));
+
+                String etag = httpRequest.getHeaderField(HEADER_ETAG);
+                if (etag != null && this.conditionalCache != null)
+                    this.conditionalCache.put(uri,
+                            new CachedResponse(etag, httpRequest.getHeaderField(HEADER_LINK), data));
+                return new GitHubResponse(httpRequest, getBody(request, new ByteArrayInputStream(data)));
+            }
+            if (isEmpty(code))
+                return new GitHubResponse(httpRequest, null);
+
+            byte[] error = data != null ? data : readBody(httpRequest);
+            if (this.scheduler != null && this.scheduler.shouldRetry(httpRequest, code, error, attempt))
+                continue;
+            throw createException(new ByteArrayInputStream(error), code, httpRequest.getResponseMessage());
+        }
+    }
+
+    /**
+     * Makes a GraphQL API request
+     * <p>
+     * Every GraphQL request is a {@code POST} to the same URI so when
+     * recording or replaying responses are keyed by a hash of the request
+     * body as well as the URI.
+     * </p>
+     *
+     * @param request
+     *            Request, serialised to JSON as the request body
+     * @param type
+     *            Type to parse the response body as
+     * @return Parsed response body
+     * @throws IOException
+     *             Thrown if the request fails
+     */
+    public <V> V graphql(Object request, Type type) throws IOException {
+        byte[] body = toJson(request).getBytes(StandardCharsets.UTF_8);
+        // GitHub Enterprise serves GraphQL alongside rather than beneath the
+        // REST API prefix
+        String path = this.prefix != null ? SEGMENT_ENTERPRISE_GRAPHQL : SEGMENT_GRAPHQL;
+        URL url = new URL(this.baseUri + path);
+        String recordedUri = path + "#" + ConditionalRequestCache.toKey(new String(body, StandardCharsets.UTF_8));
+        for (int attempt = 0;; attempt++) {
+            HttpURLConnection httpRequest;
+            if (this.replayFrom != null) {
+                httpRequest = configureRequest(
+                        new ReplayConnection(url, METHOD_POST, this.replayFrom.get(METHOD_POST, recordedUri)));
+            } else {
+                if (this.scheduler != null)
+                    this.scheduler.beforeRequest();
+                httpRequest = configureRequest((HttpURLConnection) url.openConnection());
+                httpRequest.setRequestMethod(METHOD_POST);
+                httpRequest.setDoOutput(true);
+                httpRequest.setRequestProperty(HEADER_CONTENT_TYPE, CONTENT_TYPE_JSON);
+                httpRequest.setFixedLengthStreamingMode(body.length);
+                try (OutputStream output = httpRequest.getOutputStream()) {
+                    output.write(body);
+                }
+            }
+
+            final int code = httpRequest.getResponseCode();
+            updateRateLimits(httpRequest);
+            byte[] data = readBody(httpRequest);
+            if (this.recordTo != null)
+                this.recordTo.record(METHOD_POST, recordedUri,
+                        RecordedResponse.create(code, httpRequest.getResponseMessage(), httpRequest.getHeaderFields(),
+                                data));
+            if (isOk(code))
+                return parseJson(new ByteArrayInputStream(data), type);
+            if (this.scheduler != null && this.scheduler.shouldRetry(httpRequest, code, data, attempt))
+                continue;
+            throw createException(new ByteArrayInputStream(data), code, httpRequest.getResponseMessage());
+        }
+    }
+
+    private byte[] readBody(HttpURLConnection httpRequest) throws IOException {
+        InputStream stream;
+        try {
+            stream = getStream(httpRequest);
+        } catch (FileNotFoundException e) {
+            // Error responses without a body
+            stream = null;
+        }
+        return stream != null ? readFully(stream) : new byte[0];
+    }
+
+    protected static byte[] readFully(InputStream input) throws IOException {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+}
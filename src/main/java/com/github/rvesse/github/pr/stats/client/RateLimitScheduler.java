@@ -0,0 +1,232 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.client;
+
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules GitHub API requests so that a run stays within the rate limit
+ * <p>
+ * The scheduler tracks the remaining requests and reset time reported by
+ * GitHub on every response. While plenty of quota remains requests are made
+ * at full speed, once the remaining quota drops below the configured reserve
+ * requests are spread evenly over the time left until the limit resets. If
+ * the quota is exhausted the scheduler pauses until the reset time rather
+ * than letting the run fail, and secondary rate limit responses are retried
+ * with backoff.
+ * </p>
+ */
+public class RateLimitScheduler {
+
+    private static final String HEADER_REMAINING = "X-RateLimit-Remaining";
+    private static final String HEADER_LIMIT = "X-RateLimit-Limit";
+    private static final String HEADER_RESET = "X-RateLimit-Reset";
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final long SECONDARY_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final long RESET_SLACK_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    private final double reserve;
+    private final int maxRetries;
+
+    private int remaining = -1, limit = -1;
+    private long resetAt = -1, nextAllowedAt = 0, backoffUntil = 0;
+
+    private final long startedAt = System.currentTimeMillis();
+    private final AtomicLong requests = new AtomicLong(), throttledMillis = new AtomicLong(),
+            retries = new AtomicLong();
+
+    /**
+     * Creates a new scheduler
+     *
+     * @param reserve
+     *            Fraction of the rate limit, between 0 and 1, below which
+     *            requests are paced
+     * @param maxRetries
+     *            Maximum number of times a request rejected by a secondary
+     *            rate limit is retried
+     */
+    public RateLimitScheduler(double reserve, int maxRetries) {
+        if (reserve < 0 || reserve > 1)
+            throw new IllegalArgumentException("reserve must be between 0 and 1");
+        if (maxRetries < 0)
+            throw new IllegalArgumentException("maxRetries cannot be negative");
+        this.reserve = reserve;
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Called before each request is made, blocks until the request may
+     * proceed
+     *
+     * @throws InterruptedIOException
+     *             Thrown if interrupted while waiting
+     */
+    public void beforeRequest() throws InterruptedIOException {
+        long waitUntil;
+        String reason = null;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            waitUntil = now;
+            if (this.backoffUntil > now) {
+                waitUntil = this.backoffUntil;
+                reason = "Secondary rate limit hit";
+            } else if (this.remaining == 0 && this.resetAt > now) {
+                waitUntil = this.resetAt + RESET_SLACK_MILLIS;
+                reason = "Rate limit exhausted";
+            } else if (this.remaining > 0 && this.limit > 0 && this.resetAt > now
+                    && this.remaining < this.limit * this.reserve) {
+                // Spread the remaining requests evenly over the reset window
+                long interval = (this.resetAt - now) / this.remaining;
+                waitUntil = Math.max(this.nextAllowedAt, now);
+                this.nextAllowedAt = waitUntil + interval;
+            }
+            if (this.remaining > 0)
+                this.remaining--;
+        }
+        this.requests.incrementAndGet();
+
+        long delay = waitUntil - System.currentTimeMillis();
+        if (delay <= 0)
+            return;
+        if (reason != null)
+            System.out.println(reason + ", pausing for " + TimeUnit.MILLISECONDS.toSeconds(delay)
+                    + " seconds until " + new Date(waitUntil));
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for GitHub API rate limit");
+        } finally {
+            this.throttledMillis.addAndGet(delay);
+        }
+    }
+
+    /**
+     * Updates the known rate limit state from a response
+     *
+     * @param response
+     *            Response
+     */
+    public void update(HttpURLConnection response) {
+        long remaining = parseLong(response.getHeaderField(HEADER_REMAINING));
+        long limit = parseLong(response.getHeaderField(HEADER_LIMIT));
+        long reset = parseLong(response.getHeaderField(HEADER_RESET));
+        synchronized (this) {
+            if (remaining >= 0)
+                this.remaining = (int) remaining;
+            if (limit >= 0)
+                this.limit = (int) limit;
+            if (reset >= 0)
+                this.resetAt = TimeUnit.SECONDS.toMillis(reset);
+        }
+    }
+
+    /**
+     * Determines whether a failed request should be retried, if so any
+     * necessary pause is applied by the next call to {@link #beforeRequest()}
+     *
+     * @param response
+     *            Response
+     * @param code
+     *            Status code
+     * @param body
+     *            Error body
+     * @param attempt
+     *            Number of retries already made for this request
+     * @return True if the request should be retried
+     */
+    public boolean shouldRetry(HttpURLConnection response, int code, byte[] body, int attempt) {
+        if (code != HttpURLConnection.HTTP_FORBIDDEN && code != HTTP_TOO_MANY_REQUESTS)
+            return false;
+
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            long retryAfter = parseLong(response.getHeaderField(HEADER_RETRY_AFTER));
+            if (retryAfter < 0 && this.remaining == 0 && this.resetAt > now) {
+                // Primary rate limit exhausted, always wait for the reset
+                this.retries.incrementAndGet();
+                return true;
+            }
+
+            String message = body != null ? new String(body, StandardCharsets.UTF_8).toLowerCase() : "";
+            boolean secondary = retryAfter >= 0 || message.contains("secondary rate limit")
+                    || message.contains("abuse");
+            if (!secondary || attempt >= this.maxRetries)
+                return false;
+
+            long backoff = retryAfter >= 0 ? TimeUnit.SECONDS.toMillis(retryAfter)
+                    : Math.min(SECONDARY_BACKOFF_MILLIS << attempt, MAX_BACKOFF_MILLIS);
+            this.backoffUntil = Math.max(this.backoffUntil, now + backoff);
+            this.retries.incrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * Gets the number of requests scheduled so far
+     *
+     * @return Number of requests
+     */
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    /**
+     * Gets the number of requests that were retried
+     *
+     * @return Number of retries
+     */
+    public long getRetries() {
+        return this.retries.get();
+    }
+
+    /**
+     * Gets the average request rate since the scheduler was created
+     *
+     * @return Requests per second
+     */
+    public double getRequestsPerSecond() {
+        long elapsed = System.currentTimeMillis() - this.startedAt;
+        if (elapsed <= 0)
+            return 0;
+        return this.requests.get() / (elapsed / 1000d);
+    }
+
+    /**
+     * Gets the total time spent waiting on the rate limit
+     *
+     * @return Time throttled in milliseconds
+     */
+    public long getThrottledMillis() {
+        return this.throttledMillis.get();
+    }
+
+    private static long parseLong(String value) {
+        if (value == null)
+            return -1;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
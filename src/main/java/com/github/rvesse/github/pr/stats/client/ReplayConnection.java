@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.github.rvesse.github.pr.stats.client.ResponseArchive.RecordedResponse;
+
+/**
+ * A HTTP connection that answers with a previously recorded response and never
+ * touches the network
+ */
+class ReplayConnection extends HttpURLConnection {
+
+    private final RecordedResponse response;
+    private final List<String> headerNames;
+
+    ReplayConnection(URL url, String method, RecordedResponse response) throws IOException {
+        super(url);
+        setRequestMethod(method);
+        this.response = response;
+        this.responseCode = response.getStatus();
+        this.responseMessage = response.getMessage();
+        this.headerNames = new ArrayList<String>(response.getHeaders().keySet());
+    }
+
+    @Override
+    public void connect() {
+        this.connected = true;
+    }
+
+    @Override
+    public void disconnect() {
+        this.connected = false;
+    }
+
+    @Override
+    public boolean usingProxy() {
+        return false;
+    }
+
+    @Override
+    public int getResponseCode() {
+        return this.response.getStatus();
+    }
+
+    @Override
+    public String getResponseMessage() {
+        return this.response.getMessage();
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        return name != null ? this.response.getHeader(name) : null;
+    }
+
+    @Override
+    public String getHeaderFieldKey(int n) {
+        return n >= 0 && n < this.headerNames.size() ? this.headerNames.get(n) : null;
+    }
+
+    @Override
+    public String getHeaderField(int n) {
+        String name = getHeaderFieldKey(n);
+        return name != null ? this.response.getHeader(name) : null;
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        Map<String, List<String>> fields = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, String> header : this.response.getHeaders().entrySet()) {
+            fields.put(header.getKey(), Collections.singletonList(header.getValue()));
+        }
+        return Collections.unmodifiableMap(fields);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        connect();
+        if (this.response.getStatus() >= HTTP_BAD_REQUEST)
+            throw new FileNotFoundException(this.url.toString());
+        return new ByteArrayInputStream(this.response.getBody());
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        if (this.response.getStatus() < HTTP_BAD_REQUEST)
+            return null;
+        return new ByteArrayInputStream(this.response.getBody());
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        // Request bodies are discarded since the response is already known
+        return new ByteArrayOutputStream();
+    }
+}
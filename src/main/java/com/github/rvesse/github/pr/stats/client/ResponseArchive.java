@@ -0,0 +1,203 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.client;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * An on-disk archive of GitHub API responses which may be recorded during a
+ * live run and later replayed without network access
+ * <p>
+ * Each response is stored as a pair of files named for a hash of the request
+ * method and URI, a {@code .headers} properties file holding the status line
+ * and response headers and a {@code .body} file holding the response body
+ * exactly as received.
+ * </p>
+ */
+public class ResponseArchive {
+
+    private static final String KEY_METHOD = "method", KEY_URI = "uri", KEY_STATUS = "status",
+            KEY_MESSAGE = "message", HEADER_PREFIX = "header.";
+
+    private final File dir;
+
+    public ResponseArchive(File dir) throws IOException {
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Unable to create response archive directory " + dir);
+        if (!dir.isDirectory())
+            throw new IOException("Response archive location " + dir + " is not a directory");
+        this.dir = dir;
+    }
+
+    public File getDirectory() {
+        return this.dir;
+    }
+
+    /**
+     * Records a response, replacing any previously recorded response for the
+     * same request
+     *
+     * @param method
+     *            Request method
+     * @param uri
+     *            Request URI
+     * @param response
+     *            Response
+     * @throws IOException
+     *             Thrown if the response cannot be recorded
+     */
+    public synchronized void record(String method, String uri, RecordedResponse response) throws IOException {
+        String key = ConditionalRequestCache.toKey(method + " " + uri);
+        Properties headers = new Properties();
+        headers.setProperty(KEY_METHOD, method);
+        headers.setProperty(KEY_URI, uri);
+        headers.setProperty(KEY_STATUS, Integer.toString(response.getStatus()));
+        if (response.getMessage() != null)
+            headers.setProperty(KEY_MESSAGE, response.getMessage());
+        for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+            headers.setProperty(HEADER_PREFIX + header.getKey(), header.getValue());
+        }
+
+        File bodyTemp = new File(this.dir, key + ".body.tmp");
+        Files.write(bodyTemp.toPath(), response.getBody());
+        Files.move(bodyTemp.toPath(), new File(this.dir, key + ".body").toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        File headersTemp = new File(this.dir, key + ".headers.tmp");
+        try (OutputStream output = new FileOutputStream(headersTemp)) {
+            headers.store(output, null);
+        }
+        Files.move(headersTemp.toPath(), new File(this.dir, key + ".headers").toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Gets the recorded response for a request
+     *
+     * @param method
+     *            Request method
+     * @param uri
+     *            Request URI
+     * @return Recorded response
+     * @throws FileNotFoundException
+     *             Thrown if no response was recorded for the request
+     * @throws IOException
+     *             Thrown if the recorded response cannot be read
+     */
+    public synchronized RecordedResponse get(String method, String uri) throws IOException {
+        String key = ConditionalRequestCache.toKey(method + " " + uri);
+        File headersFile = new File(this.dir, key + ".headers");
+        File bodyFile = new File(this.dir, key + ".body");
+        Properties headers = new Properties();
+        if (headersFile.exists() && bodyFile.exists()) {
+            try (InputStream input = new FileInputStream(headersFile)) {
+                headers.load(input);
+            }
+        }
+        if (!method.equals(headers.getProperty(KEY_METHOD)) || !uri.equals(headers.getProperty(KEY_URI)))
+            throw new FileNotFoundException(
+                    String.format("No response recorded for %s %s in archive %s", method, uri, this.dir));
+
+        Map<String, String> responseHeaders = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        for (String name : headers.stringPropertyNames()) {
+            if (name.startsWith(HEADER_PREFIX))
+                responseHeaders.put(name.substring(HEADER_PREFIX.length()), headers.getProperty(name));
+        }
+        try {
+            return new RecordedResponse(Integer.parseInt(headers.getProperty(KEY_STATUS)),
+                    headers.getProperty(KEY_MESSAGE), responseHeaders, Files.readAllBytes(bodyFile.toPath()));
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("Recorded response for %s %s in archive %s is corrupt", method,
+                    uri, this.dir), e);
+        }
+    }
+
+    /**
+     * A recorded response
+     */
+    public static final class RecordedResponse {
+        private final int status;
+        private final String message;
+        private final Map<String, String> headers;
+        private final byte[] body;
+
+        public RecordedResponse(int status, String message, Map<String, String> headers, byte[] body) {
+            this.status = status;
+            this.message = message;
+            this.headers = Collections.unmodifiableMap(headers);
+            this.body = body;
+        }
+
+        /**
+         * Creates a recorded response from the headers of a live response
+         *
+         * @param status
+         *            Status code
+         * @param message
+         *            Status message
+         * @param headers
+         *            Response headers as returned by
+         *            {@link java.net.URLConnection#getHeaderFields()}
+         * @param body
+         *            Response body
+         * @return Recorded response
+         */
+        public static RecordedResponse create(int status, String message, Map<String, List<String>> headers,
+                byte[] body) {
+            Map<String, String> single = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+            if (headers != null) {
+                for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                    // The status line is reported under a null key
+                    if (header.getKey() == null || header.getValue() == null || header.getValue().isEmpty())
+                        continue;
+                    single.put(header.getKey(), header.getValue().get(0));
+                }
+            }
+            return new RecordedResponse(status, message, single, body);
+        }
+
+        public int getStatus() {
+            return this.status;
+        }
+
+        public String getMessage() {
+            return this.message;
+        }
+
+        public Map<String, String> getHeaders() {
+            return this.headers;
+        }
+
+        public String getHeader(String name) {
+            return this.headers.get(name);
+        }
+
+        public byte[] getBody() {
+            return this.body;
+        }
+    }
+}
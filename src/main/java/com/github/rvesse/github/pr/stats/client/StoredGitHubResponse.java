@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.egit.github.core.client.GitHubResponse;
+
+/**
+ * A response whose body and headers come from local storage rather than from
+ * a live HTTP connection
+ */
+public class StoredGitHubResponse extends GitHubResponse {
+
+    private final Map<String, String> headers = new HashMap<String, String>();
+
+    public StoredGitHubResponse(Object body, Map<String, String> headers) {
+        super(null, body);
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                this.headers.put(header.getKey().toLowerCase(), header.getValue());
+            }
+        }
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return this.headers.get(name.toLowerCase());
+    }
+}
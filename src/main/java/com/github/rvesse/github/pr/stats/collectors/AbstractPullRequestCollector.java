@@ -1,19 +1,107 @@
 package com.github.rvesse.github.pr.stats.collectors;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.egit.github.core.PullRequest;
 import org.eclipse.egit.github.core.client.GitHubClient;
-import org.joda.time.Duration;
 import org.joda.time.Instant;
 
-public class AbstractPullRequestCollector implements Collector<PullRequest> {
+public class AbstractPullRequestCollector implements Collector<PullRequest, AbstractPullRequestCollector> {
+
+    private static final long DAY = TimeUnit.DAYS.toSeconds(1);
+
+    /**
+     * Number of significant digits to which ages are recorded when exact
+     * statistics are requested in a unit finer than days
+     */
+    public static final int FINE_UNIT_PRECISION = 3;
 
     private long count, open, merged, mergeable, closed;
-    protected LongStatsCollector daysOpen = new LongStatsCollector();
-    protected LongStatsCollector daysToMerge = new LongStatsCollector();
-    private LongStatsCollector daysToClose = new LongStatsCollector();
-    private static final Instant NOW = Instant.now();
+    protected LongStatsCollector daysOpen = new LongStatsCollector(0, DAY);
+    protected LongStatsCollector daysToMerge = new LongStatsCollector(0, DAY);
+    private LongStatsCollector daysToClose = new LongStatsCollector(0, DAY);
+    private int precision = 0;
+    private TimeUnit unit = TimeUnit.DAYS;
+    private static final Instant DEFAULT_NOW = Instant.now();
+    private Instant now = DEFAULT_NOW;
+
+    /**
+     * Sets the precision used for age statistics, takes effect when
+     * {@link #start()} is next called
+     * 
+     * @param precision
+     *            Number of significant digits to which ages are recorded using
+     *            a fixed memory sketch, zero to record ages exactly
+     */
+    public void setPrecision(int precision) {
+        if (precision < 0 || precision > LogLinearLongHistogram.MAX_DIGITS)
+            throw new IllegalArgumentException(
+                    String.format("precision must be in the range 0 to %d", LogLinearLongHistogram.MAX_DIGITS));
+        this.precision = precision;
+    }
+
+    /**
+     * Gets the precision used for age statistics
+     * <p>
+     * Exact statistics in a unit finer than days would need a dense histogram
+     * spanning every age in that unit, e.g. over a million slots for minutes
+     * over a few years, for every collector. So when exact statistics are
+     * requested in such a unit ages are instead recorded to the second in
+     * sketches accurate to {@link #FINE_UNIT_PRECISION} significant digits.
+     * </p>
+     * 
+     * @return Precision, zero if ages are recorded exactly
+     */
+    public int getPrecision() {
+        if (this.precision == 0 && this.unit.compareTo(TimeUnit.DAYS) < 0)
+            return FINE_UNIT_PRECISION;
+        return this.precision;
+    }
+
+    /**
+     * Sets the unit in which age statistics are reported, takes effect when
+     * {@link #start()} is next called
+     * <p>
+     * Ages are always measured in seconds, when recorded exactly they are
+     * truncated to this unit and when recorded in sketches they are recorded
+     * to the second and only converted to this unit when reported. Only days
+     * are recorded exactly, see {@link #getPrecision()}.
+     * </p>
+     * 
+     * @param unit
+     *            Unit, defaults to days
+     */
+    public void setTimeUnit(TimeUnit unit) {
+        if (unit == null || unit.compareTo(TimeUnit.SECONDS) < 0)
+            throw new IllegalArgumentException("unit must be seconds or coarser");
+        this.unit = unit;
+    }
+
+    public TimeUnit getTimeUnit() {
+        return this.unit;
+    }
+
+    /**
+     * Sets the instant as of which statistics are collected, pull requests are
+     * classified as they were at that instant and the age of open pull
+     * requests is calculated relative to it
+     * 
+     * @param now
+     *            Instant, defaults to when the application started
+     */
+    public void setNow(Instant now) {
+        if (now == null)
+            throw new IllegalArgumentException("now cannot be null");
+        this.now = now;
+    }
+
+    public Instant getNow() {
+        return this.now;
+    }
 
     @Override
     public void start() {
@@ -23,6 +111,11 @@ public class AbstractPullRequestCollector implements Collector<PullRequest> {
         this.merged = 0;
         this.mergeable = 0;
         this.closed = 0;
+        int precision = getPrecision();
+        long scale = this.unit.toSeconds(1);
+        this.daysOpen = new LongStatsCollector(precision, scale);
+        this.daysToMerge = new LongStatsCollector(precision, scale);
+        this.daysToClose = new LongStatsCollector(precision, scale);
         this.daysOpen.start();
         this.daysToMerge.start();
         this.daysToClose.start();
@@ -37,26 +130,111 @@ public class AbstractPullRequestCollector implements Collector<PullRequest> {
 
     @Override
     public void collect(GitHubClient client, PullRequest pr) {
+        PullRequestFacts facts = classify(pr);
+        if (facts != null)
+            collect(facts);
+    }
+
+    /**
+     * Collects a pull request that has already been classified
+     * 
+     * @param facts
+     *            Pull request facts
+     */
+    public void collect(PullRequestFacts facts) {
         this.count++;
 
-        if (pr.getMergedAt() != null) {
+        switch (facts.getState()) {
+        case PullRequestFacts.MERGED:
             this.merged++;
-            long daysToMerge = calculateDays(toInstant(pr.getCreatedAt()), toInstant(pr.getMergedAt()));
-            this.daysToMerge.collect(client, daysToMerge);
-        } else if (pr.getClosedAt() != null) {
+            this.daysToMerge.add(facts.getSeconds());
+            break;
+        case PullRequestFacts.CLOSED:
             this.closed++;
-            long daysToClose = calculateDays(toInstant(pr.getCreatedAt()), toInstant(pr.getClosedAt()));
-            this.daysToClose.collect(client, daysToClose);
-        } else {
+            this.daysToClose.add(facts.getSeconds());
+            break;
+        default:
             this.open++;
-            long daysOpen = calculateDays(toInstant(pr.getCreatedAt()), NOW);
-            this.daysOpen.collect(client, daysOpen);
-            
-            if (pr.isMergeable()) {
+            this.daysOpen.add(facts.getSeconds());
+
+            if (facts.isMergeable()) {
                 this.mergeable++;
             }
         }
+    }
 
+    /**
+     * Writes the statistics collected so far so that they may later be
+     * restored by {@link #readState(DataInput)}
+     * 
+     * @param output
+     *            Output
+     * @throws IOException
+     *             Thrown if the state cannot be written
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeLong(this.count);
+        output.writeLong(this.open);
+        output.writeLong(this.merged);
+        output.writeLong(this.mergeable);
+        output.writeLong(this.closed);
+        this.daysOpen.writeState(output);
+        this.daysToMerge.writeState(output);
+        this.daysToClose.writeState(output);
+    }
+
+    /**
+     * Replaces the statistics collected so far with those previously written
+     * by {@link #writeState(DataOutput)}, the collector must have been
+     * started
+     * 
+     * @param input
+     *            Input
+     * @throws IOException
+     *             Thrown if the state cannot be read
+     */
+    public void readState(DataInput input) throws IOException {
+        this.count = input.readLong();
+        this.open = input.readLong();
+        this.merged = input.readLong();
+        this.mergeable = input.readLong();
+        this.closed = input.readLong();
+        this.daysOpen.readState(input);
+        this.daysToMerge.readState(input);
+        this.daysToClose.readState(input);
+    }
+
+    /**
+     * Classifies a pull request as of the instant set via
+     * {@link #setNow(Instant)}
+     * 
+     * @param pr
+     *            Pull request
+     * @return Facts, or {@code null} if the pull request did not yet exist
+     */
+    protected final PullRequestFacts classify(PullRequest pr) {
+        return PullRequestFacts.of(pr, this.now);
+    }
+
+    /**
+     * Combines the statistics gathered by another collector into this
+     * collector, combining is associative so partial results gathered
+     * separately may be combined in any grouping
+     * 
+     * @param other
+     *            Other collector, must use the same precision and time unit as
+     *            this collector
+     */
+    @Override
+    public void combine(AbstractPullRequestCollector other) {
+        this.count += other.count;
+        this.open += other.open;
+        this.merged += other.merged;
+        this.mergeable += other.mergeable;
+        this.closed += other.closed;
+        this.daysOpen.combine(other.daysOpen);
+        this.daysToMerge.combine(other.daysToMerge);
+        this.daysToClose.combine(other.daysToClose);
     }
 
     public long getTotal() {
@@ -91,14 +269,32 @@ public class AbstractPullRequestCollector implements Collector<PullRequest> {
         return calcPercentage(this.closed);
     }
     
+    /**
+     * Gets the statistics for the age of open pull requests, reported in the
+     * unit set via {@link #setTimeUnit(TimeUnit)}
+     * 
+     * @return Age statistics
+     */
     public LongStatsCollector getDaysOpenStats() {
         return this.daysOpen;
     }
     
+    /**
+     * Gets the statistics for the time taken to merge pull requests, reported
+     * in the unit set via {@link #setTimeUnit(TimeUnit)}
+     * 
+     * @return Time to merge statistics
+     */
     public LongStatsCollector getDaysToMergeStats() {
         return this.daysToMerge;
     }
     
+    /**
+     * Gets the statistics for the time taken to close pull requests without
+     * merging them, reported in the unit set via {@link #setTimeUnit(TimeUnit)}
+     * 
+     * @return Time to close statistics
+     */
     public LongStatsCollector getDaysToCloseStats() {
         return this.daysToClose;
     }
@@ -107,11 +303,6 @@ public class AbstractPullRequestCollector implements Collector<PullRequest> {
         return new Instant(date);
     }
 
-    protected final long calculateDays(Instant start, Instant end) {
-        Duration duration = new Duration(start, end);
-        return duration.getStandardDays();
-    }
-
     protected final double calcPercentage(long num) {
         return ((double) num / (double) this.count);
     }
@@ -1,5 +1,9 @@
 package com.github.rvesse.github.pr.stats.collectors;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import org.eclipse.egit.github.core.PullRequest;
 import org.eclipse.egit.github.core.User;
 import org.eclipse.egit.github.core.client.GitHubClient;
@@ -26,16 +30,44 @@ public class AbstractUserPullRequestCollector extends AbstractPullRequestCollect
 
         // Collect standard stats
         super.collect(client, pr);
+    }
+
+    /**
+     * Collects a pull request that has already been classified, unlike
+     * {@link #collect(GitHubClient, PullRequest)} this does not check whether
+     * the pull request belongs to this user, callers are expected to have
+     * dispatched it to the correct user
+     */
+    @Override
+    public void collect(PullRequestFacts facts) {
+        super.collect(facts);
+
+        if (facts.isSelfMerged()) {
+            this.selfMerged++;
+        }
+    }
 
-        if (pr.getMergedAt() != null) {
-            User u = pr.getUser();
-            User m = pr.getMergedBy();
-            if (pr.getMergedBy() != null) {
-                if (u.getId() == m.getId()) {
-                    this.selfMerged++;
-                }
-            }
+    @Override
+    public void combine(AbstractPullRequestCollector other) {
+        if (other instanceof AbstractUserPullRequestCollector) {
+            AbstractUserPullRequestCollector otherUser = (AbstractUserPullRequestCollector) other;
+            if (otherUser.getUser().getId() != this.user.getId())
+                throw new IllegalArgumentException("Cannot combine statistics for different users");
+            this.selfMerged += otherUser.selfMerged;
         }
+        super.combine(other);
+    }
+
+    @Override
+    public void writeState(DataOutput output) throws IOException {
+        super.writeState(output);
+        output.writeLong(this.selfMerged);
+    }
+
+    @Override
+    public void readState(DataInput input) throws IOException {
+        super.readState(input);
+        this.selfMerged = input.readLong();
     }
 
     public User getUser() {
@@ -16,7 +16,22 @@ package com.github.rvesse.github.pr.stats.collectors;
 
 import org.eclipse.egit.github.core.client.GitHubClient;
 
-public interface Collector<T> {
+/**
+ * A collector of items
+ * <p>
+ * Collectors may be combined, in the style of the combiner of a
+ * {@code java.util.stream.Collector}, so a large set of items can be split
+ * into parts that are collected separately, for example on different threads,
+ * and the partial results then combined. Combining is associative and yields
+ * the same results as collecting all the items with a single collector.
+ * </p>
+ *
+ * @param <T>
+ *            Item type
+ * @param <C>
+ *            Collector type
+ */
+public interface Collector<T, C extends Collector<T, C>> {
 
     /**
      * Collects an item
@@ -37,4 +52,12 @@ public interface Collector<T> {
      * Ends collection
      */
     public abstract void end();
+
+    /**
+     * Combines the items collected by another collector into this collector
+     * 
+     * @param other
+     *            Other collector
+     */
+    public abstract void combine(C other);
 }
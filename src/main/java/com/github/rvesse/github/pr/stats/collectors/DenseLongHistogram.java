@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+/**
+ * An exact histogram held as a dense growable array of counts indexed by value
+ * <p>
+ * This is well suited to values such as ages in days which fall within a
+ * modest range and often repeat, memory usage is proportional to the range of
+ * the values.
+ * </p>
+ */
+public class DenseLongHistogram extends LongHistogram {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private long offset, min, max;
+    private boolean empty = true;
+
+    @Override
+    public void add(long value, long count) {
+        if (count <= 0)
+            return;
+        if (this.empty) {
+            this.offset = value;
+            this.min = value;
+            this.max = value;
+            this.empty = false;
+        } else {
+            ensureRange(value);
+            if (value < this.min)
+                this.min = value;
+            if (value > this.max)
+                this.max = value;
+        }
+        this.counts[(int) (value - this.offset)] += count;
+    }
+
+    private void ensureRange(long value) {
+        if (value >= this.offset && value - this.offset < this.counts.length)
+            return;
+
+        long low = Math.min(value, this.offset);
+        long high = Math.max(value, this.offset + this.counts.length - 1);
+        if (high - low >= MAX_CAPACITY)
+            throw new IllegalArgumentException("Range of values is too large to collect");
+        int capacity = (int) Math.min(MAX_CAPACITY, Math.max(high - low + 1, (long) this.counts.length * 2));
+
+        long[] grown = new long[capacity];
+        if (value < this.offset) {
+            // Growing downwards so leave headroom below the new value
+            long newOffset = high - capacity + 1;
+            System.arraycopy(this.counts, 0, grown, (int) (this.offset - newOffset), this.counts.length);
+            this.offset = newOffset;
+        } else {
+            System.arraycopy(this.counts, 0, grown, 0, this.counts.length);
+        }
+        this.counts = grown;
+    }
+
+    @Override
+    public long getCumulativeFrequency(long value) {
+        if (this.empty || value < this.min)
+            return 0;
+        int last = (int) (Math.min(value, this.max) - this.offset);
+        long cumulative = 0;
+        for (int i = (int) (this.min - this.offset); i <= last; i++) {
+            cumulative += this.counts[i];
+        }
+        return cumulative;
+    }
+
+    @Override
+    public long getValueAtRank(long rank) {
+        if (this.empty)
+            throw new IllegalStateException("Histogram is empty");
+        long cumulative = 0;
+        int last = (int) (this.max - this.offset);
+        for (int i = (int) (this.min - this.offset); i <= last; i++) {
+            cumulative += this.counts[i];
+            if (cumulative > rank)
+                return this.offset + i;
+        }
+        return this.max;
+    }
+
+    @Override
+    public long[] getModes() {
+        if (this.empty)
+            return new long[0];
+
+        int from = (int) (this.min - this.offset), to = (int) (this.max - this.offset);
+        long best = 0;
+        int modeCount = 0;
+        for (int i = from; i <= to; i++) {
+            if (this.counts[i] > best) {
+                best = this.counts[i];
+                modeCount = 1;
+            } else if (this.counts[i] == best) {
+                modeCount++;
+            }
+        }
+        long[] modes = new long[modeCount];
+        int j = 0;
+        for (int i = from; i <= to; i++) {
+            if (this.counts[i] == best)
+                modes[j++] = this.offset + i;
+        }
+        return modes;
+    }
+
+    @Override
+    public void combine(LongHistogram other) {
+        if (!(other instanceof DenseLongHistogram))
+            throw new IllegalArgumentException("Cannot combine with a " + other.getClass().getSimpleName());
+        DenseLongHistogram dense = (DenseLongHistogram) other;
+        if (dense.empty)
+            return;
+        // Ensure the full range up front so we grow at most twice
+        if (!this.empty) {
+            ensureRange(dense.min);
+            ensureRange(dense.max);
+        }
+        for (long v = dense.min; v <= dense.max; v++) {
+            add(v, dense.counts[(int) (v - dense.offset)]);
+        }
+    }
+
+    @Override
+    public void visit(BucketVisitor visitor) {
+        if (this.empty)
+            return;
+        int last = (int) (this.max - this.offset);
+        for (int i = (int) (this.min - this.offset); i <= last; i++) {
+            if (this.counts[i] > 0)
+                visitor.visit(this.offset + i, this.counts[i]);
+        }
+    }
+
+    @Override
+    public LongHistogram newEmpty() {
+        return new DenseLongHistogram();
+    }
+
+    @Override
+    public boolean isApproximate() {
+        return false;
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Tracks the most frequent of a stream of {@code int} keys using the
+ * Space-Saving algorithm, each tracked key has an associated value
+ * <p>
+ * At most a fixed number of keys are tracked. When an untracked key is seen
+ * and the summary is full the least frequent tracked key is evicted and the new
+ * key takes over its count, so the count of a tracked key never underestimates
+ * how often it was seen and overestimates it by at most its error. Any key seen
+ * more often than the total number of keys seen divided by the capacity is
+ * guaranteed to be tracked.
+ * </p>
+ *
+ * @param <T>
+ *            Value type
+ */
+public class HeavyHitters<T> {
+
+    /**
+     * Combines the values of a key tracked by two summaries
+     *
+     * @param <T>
+     *            Value type
+     */
+    public static interface Combiner<T> {
+
+        /**
+         * Combines two values
+         * 
+         * @param into
+         *            Value of this summary, {@code null} if the key was only
+         *            tracked by the other summary
+         * @param from
+         *            Value of the other summary
+         * @return Combined value
+         */
+        public abstract T combine(T into, T from);
+    }
+
+    /**
+     * A tracked key
+     *
+     * @param <T>
+     *            Value type
+     */
+    public static final class Entry<T> {
+        private int key, position;
+        private long count, error;
+        private T value;
+
+        private Entry(int key, long count, long error, T value) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.value = value;
+        }
+
+        public int getKey() {
+            return this.key;
+        }
+
+        /**
+         * Gets the number of times the key was seen, this may overestimate by
+         * up to the error
+         * 
+         * @return Count
+         */
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * Gets the maximum amount by which the count overestimates
+         * 
+         * @return Error
+         */
+        public long getError() {
+            return this.error;
+        }
+
+        public T getValue() {
+            return this.value;
+        }
+    }
+
+    private static final Comparator<Entry<?>> MOST_FREQUENT = new Comparator<Entry<?>>() {
+
+        @Override
+        public int compare(Entry<?> o1, Entry<?> o2) {
+            int c = Long.compare(o2.count, o1.count);
+            return c != 0 ? c : Integer.compare(o1.key, o2.key);
+        }
+    };
+
+    private final int capacity;
+    private final IntObjectMap<Entry<T>> index = new IntObjectMap<Entry<T>>();
+    // Min heap ordered by count so the least frequent key is at the root
+    private final List<Entry<T>> heap = new ArrayList<Entry<T>>();
+
+    /**
+     * Creates a new summary
+     * 
+     * @param capacity
+     *            Maximum number of keys tracked
+     */
+    public HeavyHitters(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be greater than zero");
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public int size() {
+        return this.heap.size();
+    }
+
+    /**
+     * Counts a further occurrence of a key if it is tracked
+     * 
+     * @param key
+     *            Key
+     * @return Value of the key, {@code null} if the key is not tracked in
+     *         which case it should be added with {@link #add(int, Object)}
+     */
+    public T increment(int key) {
+        Entry<T> entry = this.index.get(key);
+        if (entry == null)
+            return null;
+        entry.count++;
+        siftDown(entry.position);
+        return entry.value;
+    }
+
+    /**
+     * Starts tracking a key on an occurrence of it, evicting the least
+     * frequent key if the summary is full
+     * 
+     * @param key
+     *            Key, must not be tracked
+     * @param value
+     *            Value of the key
+     * @return Value of the evicted key, {@code null} if none was evicted
+     */
+    public T add(int key, T value) {
+        if (this.index.get(key) != null)
+            throw new IllegalStateException("Key " + key + " is already tracked");
+        if (this.heap.size() < this.capacity) {
+            put(key, 1, 0, value);
+            return null;
+        }
+        Entry<T> least = this.heap.get(0);
+        this.index.remove(least.key);
+        T evicted = least.value;
+        least.key = key;
+        least.error = least.count;
+        least.count++;
+        least.value = value;
+        this.index.put(key, least);
+        siftDown(0);
+        return evicted;
+    }
+
+    /**
+     * Tracks a key with a known count, used when restoring a summary
+     * 
+     * @param key
+     *            Key, must not be tracked
+     * @param count
+     *            Count
+     * @param error
+     *            Error
+     * @param value
+     *            Value
+     */
+    public void put(int key, long count, long error, T value) {
+        if (this.heap.size() >= this.capacity)
+            throw new IllegalStateException("Summary is full");
+        Entry<T> entry = new Entry<T>(key, count, error, value);
+        if (this.index.put(key, entry) != null)
+            throw new IllegalStateException("Key " + key + " is already tracked");
+        entry.position = this.heap.size();
+        this.heap.add(entry);
+        siftUp(entry.position);
+    }
+
+    /**
+     * Combines another summary into this summary, the combined summary keeps
+     * the most frequent keys across both summaries
+     * 
+     * @param other
+     *            Other summary, must have the same capacity
+     * @param combiner
+     *            Combines the values of keys
+     */
+    public void combine(HeavyHitters<T> other, Combiner<T> combiner) {
+        if (other.capacity != this.capacity)
+            throw new IllegalArgumentException("Cannot combine summaries with different capacities");
+        // A key missing from a full summary may have been seen as often as
+        // that summary's least frequent key
+        long thisMin = this.heap.size() == this.capacity ? this.heap.get(0).count : 0;
+        long otherMin = other.heap.size() == other.capacity ? other.heap.get(0).count : 0;
+
+        List<Entry<T>> entries = new ArrayList<Entry<T>>(this.heap.size() + other.heap.size());
+        for (Entry<T> entry : this.heap) {
+            Entry<T> otherEntry = other.index.get(entry.key);
+            if (otherEntry != null) {
+                entry.count += otherEntry.count;
+                entry.error += otherEntry.error;
+                entry.value = combiner.combine(entry.value, otherEntry.value);
+            } else {
+                entry.count += otherMin;
+                entry.error += otherMin;
+            }
+            entries.add(entry);
+        }
+        for (Entry<T> otherEntry : other.heap) {
+            if (this.index.get(otherEntry.key) == null)
+                entries.add(new Entry<T>(otherEntry.key, otherEntry.count + thisMin, otherEntry.error + thisMin,
+                        combiner.combine(null, otherEntry.value)));
+        }
+
+        Collections.sort(entries, MOST_FREQUENT);
+        clear();
+        for (Entry<T> entry : entries.subList(0, Math.min(this.capacity, entries.size()))) {
+            put(entry.key, entry.count, entry.error, entry.value);
+        }
+    }
+
+    public void clear() {
+        this.index.clear();
+        this.heap.clear();
+    }
+
+    /**
+     * Gets the tracked keys, most frequent first
+     * 
+     * @return Entries
+     */
+    public List<Entry<T>> entries() {
+        List<Entry<T>> entries = new ArrayList<Entry<T>>(this.heap);
+        Collections.sort(entries, MOST_FREQUENT);
+        return entries;
+    }
+
+    /**
+     * Gets the values of the tracked keys as a new list
+     * 
+     * @return Values
+     */
+    public List<T> values() {
+        List<T> values = new ArrayList<T>(this.heap.size());
+        for (Entry<T> entry : this.heap) {
+            values.add(entry.value);
+        }
+        return values;
+    }
+
+    private boolean less(Entry<T> a, Entry<T> b) {
+        // Least frequent first, ties broken by key so eviction does not
+        // depend on the order keys were added in
+        return MOST_FREQUENT.compare(a, b) > 0;
+    }
+
+    private void siftUp(int i) {
+        Entry<T> entry = this.heap.get(i);
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            Entry<T> p = this.heap.get(parent);
+            if (!less(entry, p))
+                break;
+            place(p, i);
+            i = parent;
+        }
+        place(entry, i);
+    }
+
+    private void siftDown(int i) {
+        Entry<T> entry = this.heap.get(i);
+        int size = this.heap.size();
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && less(this.heap.get(child + 1), this.heap.get(child)))
+                child++;
+            Entry<T> c = this.heap.get(child);
+            if (!less(c, entry))
+                break;
+            place(c, i);
+            i = child;
+        }
+        place(entry, i);
+    }
+
+    private void place(Entry<T> entry, int i) {
+        this.heap.set(i, entry);
+        entry.position = i;
+    }
+}
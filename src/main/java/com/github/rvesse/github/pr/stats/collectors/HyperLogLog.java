@@ -0,0 +1,190 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog sketch which estimates the number of distinct values added to
+ * it using a fixed amount of memory
+ * <p>
+ * With the default precision of 14 the sketch uses 16KB and estimates are
+ * typically within 1% of the true count, small counts are estimated by linear
+ * counting so are very close to exact.
+ * </p>
+ */
+public class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4, MAX_PRECISION = 18, DEFAULT_PRECISION = 14;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates a new sketch
+     * 
+     * @param precision
+     *            Number of bits of each hash used to select a register, the
+     *            sketch has 2<sup>precision</sup> registers
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION)
+            throw new IllegalArgumentException(
+                    String.format("precision must be in the range %d to %d", MIN_PRECISION, MAX_PRECISION));
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int getPrecision() {
+        return this.precision;
+    }
+
+    private static long hash(long value) {
+        // SplitMix64 finalizer, spreads sequential IDs across all the bits
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Adds a value
+     * 
+     * @param value
+     *            Value
+     */
+    public void add(long value) {
+        long h = hash(value);
+        int index = (int) (h >>> (64 - this.precision));
+        // Position of the first set bit of the remaining bits, the guard bit
+        // caps it for hashes whose remaining bits are all zero
+        byte rank = (byte) (Long.numberOfLeadingZeros((h << this.precision) | (1L << (this.precision - 1))) + 1);
+        if (rank > this.registers[index])
+            this.registers[index] = rank;
+    }
+
+    /**
+     * Gets the estimated number of distinct values added
+     * <p>
+     * This uses the improved estimator of Ertl, "New cardinality estimation
+     * algorithms for HyperLogLog sketches", which unlike the original
+     * estimator is unbiased across the whole range of counts without needing
+     * empirical bias corrections.
+     * </p>
+     * 
+     * @return Estimate
+     */
+    public long estimate() {
+        int q = 64 - this.precision;
+        int m = this.registers.length;
+        int[] histogram = new int[q + 2];
+        for (byte register : this.registers) {
+            histogram[register]++;
+        }
+        double z = m * tau(1 - (double) histogram[q + 1] / m);
+        for (int k = q; k >= 1; k--) {
+            z += histogram[k];
+            z *= 0.5;
+        }
+        z += m * sigma((double) histogram[0] / m);
+        return Math.round(m / (2 * Math.log(2)) * m / z);
+    }
+
+    private static double sigma(double x) {
+        if (x == 1)
+            return Double.POSITIVE_INFINITY;
+        double y = 1, z = x, previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0 || x == 1)
+            return 0;
+        double y = 1, z = 1 - x, previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= (1 - x) * (1 - x) * y;
+        } while (z != previous);
+        return z / 3;
+    }
+
+    /**
+     * Combines another sketch into this sketch, afterwards this sketch
+     * estimates the distinct values added to either sketch
+     * 
+     * @param other
+     *            Other sketch, must have the same precision as this sketch
+     */
+    public void combine(HyperLogLog other) {
+        if (other.precision != this.precision)
+            throw new IllegalArgumentException("Cannot combine sketches with different precisions");
+        for (int i = 0; i < this.registers.length; i++) {
+            if (other.registers[i] > this.registers[i])
+                this.registers[i] = other.registers[i];
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(this.registers, (byte) 0);
+    }
+
+    /**
+     * Writes the sketch so that it may later be restored by
+     * {@link #readState(DataInput)}
+     * 
+     * @param output
+     *            Output
+     * @throws IOException
+     *             Thrown if the state cannot be written
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeByte(this.precision);
+        output.write(this.registers);
+    }
+
+    /**
+     * Replaces the sketch with one previously written by
+     * {@link #writeState(DataOutput)}
+     * 
+     * @param input
+     *            Input
+     * @throws IOException
+     *             Thrown if the state cannot be read or was written by a sketch
+     *             with a different precision
+     */
+    public void readState(DataInput input) throws IOException {
+        int precision = input.readByte();
+        if (precision != this.precision)
+            throw new IOException(String.format(
+                    "Cannot restore a sketch with precision %d into a sketch with precision %d", precision,
+                    this.precision));
+        input.readFully(this.registers);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A minimal open addressing hash map from primitive {@code int} keys to
+ * non-null values which avoids boxing keys on every lookup
+ *
+ * @param <V>
+ *            Value type
+ */
+public class IntObjectMap<V> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size;
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int slot(int key, int[] keys, Object[] values) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (values[i] != null && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        return (V) this.values[slot(key, this.keys, this.values)];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null)
+            throw new IllegalArgumentException("value cannot be null");
+        int i = slot(key, this.keys, this.values);
+        V previous = (V) this.values[i];
+        this.keys[i] = key;
+        this.values[i] = value;
+        if (previous == null) {
+            this.size++;
+            // Keep the load factor at or below one half
+            if (this.size * 2 > this.keys.length)
+                resize();
+        }
+        return previous;
+    }
+
+    private void resize() {
+        int[] newKeys = new int[this.keys.length * 2];
+        Object[] newValues = new Object[this.values.length * 2];
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.values[i] != null) {
+                int j = slot(this.keys[i], newKeys, newValues);
+                newKeys[j] = this.keys[i];
+                newValues[j] = this.values[i];
+            }
+        }
+        this.keys = newKeys;
+        this.values = newValues;
+    }
+
+    /**
+     * Removes a key
+     * 
+     * @param key
+     *            Key
+     * @return Value that was removed, {@code null} if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int mask = this.keys.length - 1;
+        int i = slot(key, this.keys, this.values);
+        V previous = (V) this.values[i];
+        if (previous == null)
+            return null;
+
+        // Shift back any following entries that could no longer be found once
+        // the gap is left, an entry may move into the gap unless its home slot
+        // lies cyclically between the gap and its current slot
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (this.values[j] == null)
+                break;
+            int home = mix(this.keys[j]) & mask;
+            if (j > i ? home <= i || home > j : home <= i && home > j) {
+                this.keys[i] = this.keys[j];
+                this.values[i] = this.values[j];
+                i = j;
+            }
+        }
+        this.values[i] = null;
+        this.size--;
+        return previous;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        this.keys = new int[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Gets the values as a new list
+     * 
+     * @return Values
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> vs = new ArrayList<V>(this.size);
+        for (Object value : this.values) {
+            if (value != null)
+                vs.add((V) value);
+        }
+        return vs;
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+import java.util.Arrays;
+
+/**
+ * An approximate histogram with logarithmically sized buckets, each of which
+ * is divided linearly, in the style of an HDR histogram
+ * <p>
+ * Values are recorded to a configurable number of significant decimal digits
+ * i.e. the relative error of any value reported by the histogram is at most
+ * {@code 10^-digits}. Memory usage depends only on the precision and the
+ * range of magnitudes recorded, never on the number of values, and two
+ * histograms with the same precision can be combined exactly by adding their
+ * buckets.
+ * </p>
+ * <p>
+ * Only occupied buckets are held while there are few of them, which keeps
+ * histograms of a handful of widely spread values, e.g. latencies in seconds
+ * ranging from minutes to months, small. Once many buckets are occupied the
+ * counts are held in an array spanning the lowest to the highest occupied
+ * bucket.
+ * </p>
+ * <p>
+ * Values are expected to be non-negative, negative values are recorded as
+ * zero.
+ * </p>
+ */
+public class LogLinearLongHistogram extends LongHistogram {
+
+    public static final int MIN_DIGITS = 1, MAX_DIGITS = 5;
+
+    /**
+     * Number of occupied buckets beyond which counts are held densely
+     */
+    private static final int SPARSE_LIMIT = 256;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final int digits, subBits, subCount;
+    // While sparse the bucket index of each slot in ascending order, null once
+    // dense
+    private int[] indexes = new int[INITIAL_CAPACITY];
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private int size;
+    // While dense the bucket index of the first slot
+    private int offset;
+    private int lowest = Integer.MAX_VALUE, highest = -1;
+
+    /**
+     * Creates a new histogram
+     * 
+     * @param digits
+     *            Number of significant decimal digits to preserve
+     */
+    public LogLinearLongHistogram(int digits) {
+        if (digits < MIN_DIGITS || digits > MAX_DIGITS)
+            throw new IllegalArgumentException(
+                    String.format("digits must be in the range %d to %d", MIN_DIGITS, MAX_DIGITS));
+        this.digits = digits;
+        long required = 1;
+        for (int i = 0; i < digits; i++) {
+            required *= 10;
+        }
+        // Smallest power of two at least as large as 10^digits
+        this.subBits = 64 - Long.numberOfLeadingZeros(required - 1);
+        this.subCount = 1 << this.subBits;
+    }
+
+    public int getDigits() {
+        return this.digits;
+    }
+
+    /**
+     * Gets the bucket index for a value
+     * <p>
+     * Values below {@code 2 * subCount} are recorded exactly, above that each
+     * doubling of magnitude is divided into {@code subCount} equal width
+     * buckets.
+     * </p>
+     */
+    private int indexOf(long value) {
+        if (value < this.subCount)
+            return value < 0 ? 0 : (int) value;
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - this.subBits;
+        long mantissa = value >>> shift;
+        return this.subCount * (shift + 1) + (int) (mantissa - this.subCount);
+    }
+
+    private long lowerBound(int index) {
+        if (index < this.subCount)
+            return index;
+        int shift = index / this.subCount - 1;
+        long mantissa = this.subCount + index % this.subCount;
+        return mantissa << shift;
+    }
+
+    private long representative(int index) {
+        if (index < this.subCount)
+            return index;
+        long width = 1L << (index / this.subCount - 1);
+        return lowerBound(index) + (width - 1) / 2;
+    }
+
+    private int firstSlot() {
+        return this.indexes != null ? 0 : this.lowest - this.offset;
+    }
+
+    private int lastSlot() {
+        return this.indexes != null ? this.size - 1 : this.highest - this.offset;
+    }
+
+    private int indexAt(int slot) {
+        return this.indexes != null ? this.indexes[slot] : this.offset + slot;
+    }
+
+    private void increment(int index, long count) {
+        if (this.indexes != null) {
+            int slot = Arrays.binarySearch(this.indexes, 0, this.size, index);
+            if (slot >= 0) {
+                this.counts[slot] += count;
+                return;
+            }
+            if (this.size < SPARSE_LIMIT) {
+                insert(-slot - 1, index, count);
+            } else {
+                toDense();
+                ensureRange(index);
+                this.counts[index - this.offset] += count;
+            }
+        } else {
+            ensureRange(index);
+            this.counts[index - this.offset] += count;
+        }
+        if (index < this.lowest)
+            this.lowest = index;
+        if (index > this.highest)
+            this.highest = index;
+    }
+
+    private void insert(int slot, int index, long count) {
+        if (this.size == this.indexes.length) {
+            this.indexes = Arrays.copyOf(this.indexes, this.size * 2);
+            this.counts = Arrays.copyOf(this.counts, this.size * 2);
+        }
+        System.arraycopy(this.indexes, slot, this.indexes, slot + 1, this.size - slot);
+        System.arraycopy(this.counts, slot, this.counts, slot + 1, this.size - slot);
+        this.indexes[slot] = index;
+        this.counts[slot] = count;
+        this.size++;
+    }
+
+    private void toDense() {
+        long[] dense = new long[this.highest - this.lowest + 1];
+        for (int i = 0; i < this.size; i++) {
+            dense[this.indexes[i] - this.lowest] = this.counts[i];
+        }
+        this.offset = this.lowest;
+        this.counts = dense;
+        this.indexes = null;
+        this.size = 0;
+    }
+
+    private void ensureRange(int index) {
+        if (index >= this.offset && index - this.offset < this.counts.length)
+            return;
+
+        int low = Math.min(index, this.offset);
+        int high = Math.max(index, this.offset + this.counts.length - 1);
+        int capacity = Math.max(high - low + 1, this.counts.length * 2);
+        long[] grown = new long[capacity];
+        if (index < this.offset) {
+            // Growing downwards so leave headroom below the new index but
+            // never below the first bucket
+            int newOffset = Math.max(0, high - capacity + 1);
+            System.arraycopy(this.counts, 0, grown, this.offset - newOffset, this.counts.length);
+            this.offset = newOffset;
+        } else {
+            System.arraycopy(this.counts, 0, grown, 0, this.counts.length);
+        }
+        this.counts = grown;
+    }
+
+    @Override
+    public void add(long value, long count) {
+        if (count <= 0)
+            return;
+        increment(indexOf(value), count);
+    }
+
+    @Override
+    public long getCumulativeFrequency(long value) {
+        if (this.highest < 0 || value < 0)
+            return 0;
+        int index = indexOf(value);
+        long cumulative = 0;
+        for (int i = firstSlot(), last = lastSlot(); i <= last && indexAt(i) <= index; i++) {
+            cumulative += this.counts[i];
+        }
+        return cumulative;
+    }
+
+    @Override
+    public long getValueAtRank(long rank) {
+        if (this.highest < 0)
+            throw new IllegalStateException("Histogram is empty");
+        long cumulative = 0;
+        for (int i = firstSlot(), last = lastSlot(); i <= last; i++) {
+            cumulative += this.counts[i];
+            if (cumulative > rank)
+                return representative(indexAt(i));
+        }
+        return representative(this.highest);
+    }
+
+    @Override
+    public long[] getModes() {
+        if (this.highest < 0)
+            return new long[0];
+        int first = firstSlot(), last = lastSlot();
+        long best = 0;
+        int modeCount = 0;
+        for (int i = first; i <= last; i++) {
+            if (this.counts[i] > best) {
+                best = this.counts[i];
+                modeCount = 1;
+            } else if (this.counts[i] == best) {
+                modeCount++;
+            }
+        }
+        long[] modes = new long[modeCount];
+        int j = 0;
+        for (int i = first; i <= last; i++) {
+            if (this.counts[i] == best)
+                modes[j++] = representative(indexAt(i));
+        }
+        return modes;
+    }
+
+    @Override
+    public void combine(LongHistogram other) {
+        if (!(other instanceof LogLinearLongHistogram))
+            throw new IllegalArgumentException("Cannot combine with a " + other.getClass().getSimpleName());
+        LogLinearLongHistogram log = (LogLinearLongHistogram) other;
+        if (log.digits != this.digits)
+            throw new IllegalArgumentException("Cannot combine histograms with different precisions");
+        if (log.highest < 0)
+            return;
+        for (int i = log.firstSlot(), last = log.lastSlot(); i <= last; i++) {
+            if (log.counts[i] > 0)
+                increment(log.indexAt(i), log.counts[i]);
+        }
+    }
+
+    @Override
+    public void visit(BucketVisitor visitor) {
+        if (this.highest < 0)
+            return;
+        for (int i = firstSlot(), last = lastSlot(); i <= last; i++) {
+            if (this.counts[i] > 0)
+                visitor.visit(representative(indexAt(i)), this.counts[i]);
+        }
+    }
+
+    @Override
+    public LongHistogram newEmpty() {
+        return new LogLinearLongHistogram(this.digits);
+    }
+
+    @Override
+    public boolean isApproximate() {
+        return true;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+/**
+ * A histogram of long values used by {@link LongStatsCollector} to answer
+ * distribution queries
+ */
+public abstract class LongHistogram {
+
+    /**
+     * Visitor over the non-empty buckets of a histogram
+     */
+    public static interface BucketVisitor {
+
+        /**
+         * Visits a bucket
+         * 
+         * @param value
+         *            Representative value of the bucket
+         * @param count
+         *            Number of values in the bucket
+         */
+        public abstract void visit(long value, long count);
+    }
+
+    /**
+     * Adds a value
+     * 
+     * @param value
+     *            Value
+     * @param count
+     *            Number of occurrences of the value to add
+     */
+    public abstract void add(long value, long count);
+
+    /**
+     * Gets the number of values less than or equal to the given value
+     * 
+     * @param value
+     *            Value
+     * @return Cumulative frequency
+     */
+    public abstract long getCumulativeFrequency(long value);
+
+    /**
+     * Gets the value at the given rank
+     * 
+     * @param rank
+     *            Zero based rank
+     * @return Value at the rank
+     */
+    public abstract long getValueAtRank(long rank);
+
+    /**
+     * Gets the most frequently occurring value(s) in ascending order
+     * 
+     * @return Modes
+     */
+    public abstract long[] getModes();
+
+    /**
+     * Adds all the values from another histogram into this histogram
+     * 
+     * @param other
+     *            Other histogram, must be of the same kind and configuration
+     *            as this histogram
+     */
+    public abstract void combine(LongHistogram other);
+
+    /**
+     * Visits the non-empty buckets of the histogram in ascending order
+     * 
+     * @param visitor
+     *            Visitor
+     */
+    public abstract void visit(BucketVisitor visitor);
+
+    /**
+     * Creates a new empty histogram with the same configuration as this
+     * histogram
+     * 
+     * @return New histogram
+     */
+    public abstract LongHistogram newEmpty();
+
+    /**
+     * Gets whether values are recorded approximately
+     * 
+     * @return True if approximate, false if exact
+     */
+    public abstract boolean isApproximate();
+}
@@ -14,85 +14,567 @@
 
 package com.github.rvesse.github.pr.stats.collectors;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.math3.stat.Frequency;
-import org.apache.commons.math3.stat.StatUtils;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math3.stat.descriptive.rank.Percentile;
 import org.eclipse.egit.github.core.client.GitHubClient;
 
-public class LongStatsCollector implements Collector<Long> {
+import com.github.rvesse.github.pr.stats.collectors.LongHistogram.BucketVisitor;
 
-    private List<Long> items = new ArrayList<Long>();
-    private Frequency freq = new Frequency();
-    private Percentile percentiles;
-    private DescriptiveStatistics stats = new DescriptiveStatistics();
+/**
+ * Collects statistics over a set of long values
+ * <p>
+ * By default values are held exactly in a single {@link DenseLongHistogram}
+ * from which all the statistics are calculated. Alternatively a precision may
+ * be given in which case values are held in a {@link LogLinearLongHistogram}
+ * which uses bounded memory regardless of the range of values at the cost of
+ * distribution statistics (percentiles, modes and cumulative frequencies)
+ * being approximate. The count, minimum, maximum and means are always exact.
+ * </p>
+ * <p>
+ * A scale may also be given in which case values are added at a finer
+ * resolution than statistics are reported in, e.g. durations added in seconds
+ * and reported in hours. Exact collectors record each value truncated to the
+ * reported unit while sketches record values at the resolution they are added
+ * so reported percentiles and means keep their fractional part. As an exact
+ * collector's histogram spans the range of the reported values it should only
+ * be used with a coarse unit such as days.
+ * </p>
+ * <p>
+ * Statistics derived from the distribution (percentiles, modes and the exact
+ * geometric mean) are only calculated when first requested and are then
+ * remembered until further values are collected, so statistics a report does
+ * not include cost nothing and those it includes are calculated once.
+ * </p>
+ */
+public class LongStatsCollector implements Collector<Long, LongStatsCollector> {
+
+    private final int precision;
+    private final long scale, resolution;
+    private LongHistogram histogram;
+    private long n, sum, min, max;
+    private double sumOfLogs;
+    private boolean ended = false;
+    private Derived derived;
+
+    /**
+     * Creates a collector that records values exactly
+     */
+    public LongStatsCollector() {
+        this(0);
+    }
+
+    /**
+     * Creates a collector
+     *
+     * @param precision
+     *            Number of significant digits to which values are recorded,
+     *            zero to record values exactly
+     */
+    public LongStatsCollector(int precision) {
+        this(precision, 1);
+    }
+
+    /**
+     * Creates a collector
+     *
+     * @param precision
+     *            Number of significant digits to which values are recorded,
+     *            zero to record values exactly
+     * @param scale
+     *            Number of the units values are added in per unit statistics
+     *            are reported in, e.g. 3600 to add values in seconds and report
+     *            statistics in hours
+     */
+    public LongStatsCollector(int precision, long scale) {
+        if (precision < 0 || precision > LogLinearLongHistogram.MAX_DIGITS)
+            throw new IllegalArgumentException(
+                    String.format("precision must be in the range 0 to %d", LogLinearLongHistogram.MAX_DIGITS));
+        if (scale <= 0)
+            throw new IllegalArgumentException("scale must be greater than zero");
+        this.precision = precision;
+        this.scale = scale;
+        // Exact collectors scale values as they are added, sketches when they
+        // are reported
+        this.resolution = precision > 0 ? scale : 1;
+        this.histogram = createHistogram();
+    }
+
+    private LongHistogram createHistogram() {
+        return this.precision > 0 ? new LogLinearLongHistogram(this.precision) : new DenseLongHistogram();
+    }
 
     @Override
     public void collect(GitHubClient client, Long item) {
         if (item == null)
             throw new IllegalArgumentException("item cannot be null");
-        this.items.add(item);
+        add(item.longValue());
+    }
 
-        this.freq.incrementValue(item.longValue(), 1);
-        this.stats.addValue(item.doubleValue());
+    /**
+     * Adds a value
+     *
+     * @param value
+     *            Value
+     */
+    public void add(long value) {
+        if (this.precision == 0)
+            value /= this.scale;
+        if (this.n == 0) {
+            this.min = value;
+            this.max = value;
+        } else {
+            if (value < this.min)
+                this.min = value;
+            if (value > this.max)
+                this.max = value;
+        }
+        this.histogram.add(value, 1);
+        this.derived = null;
+        this.n++;
+        this.sum += value;
+        this.sumOfLogs += Math.log(value);
+    }
+
+    /**
+     * Combines the values collected by another collector into this collector
+     *
+     * @param other
+     *            Other collector, must have the same precision as this
+     *            collector
+     */
+    @Override
+    public void combine(LongStatsCollector other) {
+        if (other.precision != this.precision || other.scale != this.scale)
+            throw new IllegalArgumentException("Cannot combine collectors with different precisions or scales");
+        if (other.n == 0)
+            return;
+        if (this.n == 0) {
+            this.min = other.min;
+            this.max = other.max;
+        } else {
+            this.min = Math.min(this.min, other.min);
+            this.max = Math.max(this.max, other.max);
+        }
+        this.histogram.combine(other.histogram);
+        this.derived = null;
+        this.n += other.n;
+        this.sum += other.sum;
+        this.sumOfLogs += other.sumOfLogs;
     }
 
     @Override
     public void start() {
         // Reset
-        this.items.clear();
-        this.freq.clear();
-        this.stats.clear();
-        this.percentiles = null;
+        this.histogram = createHistogram();
+        this.n = 0;
+        this.sum = 0;
+        this.min = 0;
+        this.max = 0;
+        this.sumOfLogs = 0;
+        this.ended = false;
+        this.derived = null;
     }
 
     @Override
     public void end() {
-        double[] ds = toDoubles();
+        this.ended = true;
+    }
+
+    /**
+     * Writes the values collected so far so that they may later be restored
+     * by {@link #readState(DataInput)}
+     *
+     * @param output
+     *            Output
+     * @throws IOException
+     *             Thrown if the state cannot be written
+     */
+    public void writeState(DataOutput output) throws IOException {
+        final int[] buckets = new int[1];
+        this.histogram.visit(new BucketVisitor() {
+
+            @Override
+            public void visit(long value, long count) {
+                buckets[0]++;
+            }
+        });
+        final long[] pairs = new long[buckets[0] * 2];
+        this.histogram.visit(new BucketVisitor() {
+            private int i = 0;
 
-        // Populate percentiles
-        this.percentiles = new Percentile();
-        this.percentiles.setData(ds);
+            @Override
+            public void visit(long value, long count) {
+                pairs[i++] = value;
+                pairs[i++] = count;
+            }
+        });
+
+        output.writeByte(this.precision);
+        output.writeLong(this.scale);
+        output.writeLong(this.n);
+        output.writeLong(this.sum);
+        output.writeLong(this.min);
+        output.writeLong(this.max);
+        output.writeDouble(this.sumOfLogs);
+        output.writeInt(buckets[0]);
+        for (long v : pairs) {
+            output.writeLong(v);
+        }
     }
 
-    protected double[] toDoubles() {
-        double[] ds = new double[this.items.size()];
-        for (int i = 0; i < ds.length; i++) {
-            ds[i] = this.items.get(i).doubleValue();
+    /**
+     * Replaces the values collected so far with those previously written by
+     * {@link #writeState(DataOutput)}
+     *
+     * @param input
+     *            Input
+     * @throws IOException
+     *             Thrown if the state cannot be read or was written by a
+     *             collector with a different precision or scale
+     */
+    public void readState(DataInput input) throws IOException {
+        int precision = input.readByte();
+        if (precision != this.precision)
+            throw new IOException(String.format(
+                    "Cannot restore statistics collected with precision %d into a collector with precision %d",
+                    precision, this.precision));
+        long scale = input.readLong();
+        if (scale != this.scale)
+            throw new IOException(String.format(
+                    "Cannot restore statistics collected with scale %d into a collector with scale %d", scale,
+                    this.scale));
+        start();
+        this.n = input.readLong();
+        this.sum = input.readLong();
+        this.min = input.readLong();
+        this.max = input.readLong();
+        this.sumOfLogs = input.readDouble();
+        int buckets = input.readInt();
+        for (int i = 0; i < buckets; i++) {
+            long value = input.readLong();
+            this.histogram.add(value, input.readLong());
         }
-        return ds;
     }
 
+    /**
+     * Gets the number of significant digits to which values are recorded
+     *
+     * @return Precision, zero if values are recorded exactly
+     */
+    public int getPrecision() {
+        return this.precision;
+    }
+
+    /**
+     * Gets the number of the units values are added in per unit statistics
+     * are reported in
+     *
+     * @return Scale, 1 if values are reported in the units they are added in
+     */
+    public long getScale() {
+        return this.scale;
+    }
+
+    /**
+     * Gets whether distribution statistics are approximate
+     *
+     * @return True if approximate
+     */
+    public boolean isApproximate() {
+        return this.histogram.isApproximate();
+    }
+
+    public long getCount() {
+        return this.n;
+    }
+
+    public long getMin() {
+        return this.min / this.resolution;
+    }
+
+    public long getMax() {
+        return this.max / this.resolution;
+    }
+
+    public long getSum() {
+        return this.sum / this.resolution;
+    }
+
+    public double getMean() {
+        if (this.n == 0)
+            return Double.NaN;
+        return (double) this.sum / (double) this.n / this.resolution;
+    }
+
+    public double getGeometricMean() {
+        if (this.n == 0)
+            return Double.NaN;
+        if (this.histogram.isApproximate())
+            return Math.exp(this.sumOfLogs / this.n) / this.resolution;
+
+        Derived derived = getDerived();
+        if (derived.geometricMean == null) {
+            // Sum in value order so the result does not depend on the order
+            // in which values were collected or combined
+            final double[] logs = new double[1];
+            this.histogram.visit(new BucketVisitor() {
+
+                @Override
+                public void visit(long value, long count) {
+                    logs[0] += count * Math.log(value);
+                }
+            });
+            derived.geometricMean = Math.exp(logs[0] / this.n);
+        }
+        return derived.geometricMean;
+    }
+
+    /**
+     * Gets the number of values less than or equal to the given value
+     *
+     * @param value
+     *            Value
+     * @return Cumulative frequency
+     */
+    public long getCumulativeFrequency(long value) {
+        // Include every value that truncates to the given value
+        if (value >= Long.MAX_VALUE / this.resolution)
+            return this.n;
+        long bound = value * this.resolution + this.resolution - 1;
+        if (this.n == 0 || bound < this.min)
+            return 0;
+        if (bound >= this.max)
+            return this.n;
+        return this.histogram.getCumulativeFrequency(bound);
+    }
+
+    /**
+     * Gets the proportion of values less than or equal to the given value
+     *
+     * @param value
+     *            Value
+     * @return Cumulative percentage as a value between 0 and 1
+     */
+    public double getCumulativePercentage(long value) {
+        if (this.n == 0)
+            return Double.NaN;
+        return (double) getCumulativeFrequency(value) / (double) this.n;
+    }
+
+    /**
+     * Gets a percentile using the same estimation as the default commons-math
+     * {@link Percentile} implementation
+     *
+     * @param p
+     *            Percentile, must be in the range 0 (exclusive) to 100
+     *            (inclusive)
+     * @return Percentile value
+     */
+    public double getPercentile(double p) {
+        if (!this.ended)
+            throw new IllegalStateException("Cannot calculate percentiles until all stats are collected");
+        if (p <= 0 || p > 100)
+            throw new IllegalArgumentException("p must be in the range (0, 100]");
+        if (this.n == 0)
+            return Double.NaN;
+        if (this.n == 1)
+            return (double) this.min / this.resolution;
+
+        double pos = p == 100 ? this.n : (p / 100d) * (this.n + 1);
+        if (pos < 1)
+            return (double) this.min / this.resolution;
+        if (pos >= this.n)
+            return (double) this.max / this.resolution;
+        double fpos = Math.floor(pos);
+        long intPos = (long) fpos;
+        double lower = getValueAtRank(intPos - 1);
+        double upper = getValueAtRank(intPos);
+        return (lower + (pos - fpos) * (upper - lower)) / this.resolution;
+    }
+
+    private long getValueAtRank(long rank) {
+        Derived derived = getDerived();
+        if (derived.values == null)
+            derived.index(this.histogram);
+
+        // Find the first bucket whose cumulative count exceeds the rank
+        int low = 0, high = derived.cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (derived.cumulative[mid] > rank) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        // Approximate histograms may report values slightly outside the true
+        // range so clamp to the exact bounds
+        long value = derived.values[low];
+        return Math.max(this.min, Math.min(this.max, value));
+    }
+
+    private Derived getDerived() {
+        if (this.derived == null)
+            this.derived = new Derived();
+        return this.derived;
+    }
+
+    /**
+     * Gets the most frequently occurring value(s) in ascending order
+     *
+     * @return Modes
+     */
+    public long[] getModes() {
+        if (!this.ended)
+            throw new IllegalStateException("Cannot calculate modes until all stats are collected");
+        Derived derived = getDerived();
+        if (derived.modes == null)
+            derived.modes = calculateModes();
+        return derived.modes.clone();
+    }
+
+    private long[] calculateModes() {
+        if (this.resolution == 1)
+            return this.histogram.getModes();
+
+        // Buckets are visited in ascending order so all the buckets of each
+        // reported value are visited consecutively
+        final long[] best = new long[2];
+        final List<Long> modes = new ArrayList<Long>();
+        this.histogram.visit(new BucketVisitor() {
+            private long value = -1, count = 0;
+
+            @Override
+            public void visit(long bucket, long bucketCount) {
+                long v = bucket / resolution;
+                if (v != this.value) {
+                    this.value = v;
+                    this.count = 0;
+                }
+                this.count += bucketCount;
+                if (this.count > best[0]) {
+                    best[0] = this.count;
+                    modes.clear();
+                    modes.add(v);
+                } else if (this.count == best[0] && modes.get(modes.size() - 1) != v) {
+                    modes.add(v);
+                }
+            }
+        });
+        long[] results = new long[modes.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = modes.get(i);
+        }
+        return results;
+    }
+
+    /**
+     * Gets descriptive statistics for the collected values
+     * <p>
+     * This materialises the values so should be avoided for large data sets,
+     * prefer the direct getters on this class.
+     * </p>
+     *
+     * @return Descriptive statistics
+     */
     public DescriptiveStatistics getDescriptiveStats() {
-        return this.stats;
+        return new DescriptiveStatistics(toDoubles());
     }
 
+    /**
+     * Gets a frequency distribution for the collected values
+     * <p>
+     * This materialises the distribution so should be avoided for large data
+     * sets, prefer {@link #getCumulativeFrequency(long)} and
+     * {@link #getCumulativePercentage(long)}.
+     * </p>
+     *
+     * @return Frequency distribution
+     */
     public Frequency getFrequencies() {
-        return this.freq;
+        final Frequency freq = new Frequency();
+        this.histogram.visit(new BucketVisitor() {
+
+            @Override
+            public void visit(long value, long count) {
+                freq.incrementValue(value / resolution, count);
+            }
+        });
+        return freq;
     }
 
+    /**
+     * Gets a percentile calculator for the collected values
+     * <p>
+     * This materialises the values so should be avoided for large data sets,
+     * prefer {@link #getPercentile(double)}.
+     * </p>
+     *
+     * @return Percentiles
+     */
     public Percentile getPercentiles() {
-        if (this.percentiles == null)
+        if (!this.ended)
             throw new IllegalStateException("Cannot calculate percentiles until all stats are collected");
-        return this.percentiles;
+        Percentile percentiles = new Percentile();
+        percentiles.setData(toDoubles());
+        return percentiles;
     }
 
-    public long[] getModes() {
-        if (this.percentiles == null)
-            throw new IllegalStateException("Cannot calculate modes until all stats are collected");
+    private double[] toDoubles() {
+        if (this.n > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("Too many values to materialise");
+        final double[] ds = new double[(int) this.n];
+        this.histogram.visit(new BucketVisitor() {
+            private int j = 0;
+
+            @Override
+            public void visit(long value, long count) {
+                Arrays.fill(ds, j, j + (int) count, (double) value / resolution);
+                j += (int) count;
+            }
+        });
+        return ds;
+    }
+
+    /**
+     * Statistics derived from the distribution, each is calculated when first
+     * requested
+     */
+    private static final class Derived {
+        private long[] values, cumulative;
+        private long[] modes;
+        private Double geometricMean;
+
+        private void index(LongHistogram histogram) {
+            final int[] buckets = new int[1];
+            histogram.visit(new BucketVisitor() {
 
-        double[] ds = toDoubles();
-        double[] dmodes = StatUtils.mode(ds);
+                @Override
+                public void visit(long value, long count) {
+                    buckets[0]++;
+                }
+            });
+            this.values = new long[buckets[0]];
+            this.cumulative = new long[buckets[0]];
+            histogram.visit(new BucketVisitor() {
+                private int i = 0;
+                private long total = 0;
 
-        if (dmodes == null)
-            return null;
-        long[] modes = new long[dmodes.length];
-        for (int i = 0; i < modes.length; i++) {
-            modes[i] = (long) dmodes[i];
+                @Override
+                public void visit(long value, long count) {
+                    this.total += count;
+                    values[this.i] = value;
+                    cumulative[this.i++] = this.total;
+                }
+            });
         }
-        return modes;
     }
 }
@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.service.PullRequestService;
+
+/**
+ * Resolves the detailed pull request information, which includes the merging
+ * user, on a bounded pool of background threads
+ * <p>
+ * A resolver with a concurrency of zero makes lookups one at a time on the
+ * calling thread instead.
+ * </p>
+ */
+public class MergeUserResolver implements Closeable {
+
+    private final ExecutorService executor;
+    private final int concurrency;
+
+    public MergeUserResolver(int concurrency) {
+        if (concurrency < 0)
+            throw new IllegalArgumentException("concurrency cannot be negative");
+        this.concurrency = concurrency;
+        if (concurrency == 0) {
+            this.executor = null;
+            return;
+        }
+        final AtomicInteger threadId = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "pr-stats-merge-user-" + threadId.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Gets the maximum number of concurrent lookups
+     *
+     * @return Concurrency, zero if lookups are made on the calling thread
+     */
+    public int getConcurrency() {
+        return this.concurrency;
+    }
+
+    /**
+     * Starts resolving the detailed information for a pull request
+     *
+     * @param client
+     *            GitHub Client
+     * @param pr
+     *            Pull Request
+     * @return Future that yields the detailed pull request, or the original
+     *         pull request if the lookup failed
+     */
+    public Future<PullRequest> resolve(final GitHubClient client, final PullRequest pr) {
+        Callable<PullRequest> lookup = new Callable<PullRequest>() {
+
+            @Override
+            public PullRequest call() throws Exception {
+                return resolveNow(client, pr);
+            }
+        };
+        if (this.executor != null)
+            return this.executor.submit(lookup);
+
+        FutureTask<PullRequest> task = new FutureTask<PullRequest>(lookup);
+        task.run();
+        return task;
+    }
+
+    /**
+     * Resolves the detailed information for a pull request on the calling
+     * thread
+     *
+     * @param client
+     *            GitHub Client
+     * @param pr
+     *            Pull Request
+     * @return Detailed pull request, or the original pull request if the
+     *         lookup failed
+     */
+    public static PullRequest resolveNow(GitHubClient client, PullRequest pr) {
+        try {
+            RepositoryId repo = new RepositoryId(pr.getBase().getRepo().getOwner().getLogin(),
+                    pr.getBase().getRepo().getName());
+            return new PullRequestService(client).getPullRequest(repo, pr.getNumber());
+        } catch (IOException e) {
+            // Ignore
+            System.out.println("Failed to obtain detailed information for PR #" + pr.getNumber());
+            return pr;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.executor != null)
+            this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.eclipse.egit.github.core.client.GitHubClient;
+
+/**
+ * Collects a list of items in parallel by splitting it into parts that are
+ * collected by separate collectors on a fork join pool, the partial results
+ * are then combined in list order
+ */
+public final class ParallelCollection {
+
+    /**
+     * Default number of items below which a part is collected sequentially
+     */
+    public static final int DEFAULT_THRESHOLD = 1000;
+
+    private ParallelCollection() {
+    }
+
+    /**
+     * Factory for the collectors used to collect each part
+     *
+     * @param <T>
+     *            Item type
+     * @param <C>
+     *            Collector type
+     */
+    public static interface CollectorFactory<T, C extends Collector<T, ? super C>> {
+
+        /**
+         * Creates a new collector, the collector will be started by the caller
+         *
+         * @return Collector
+         */
+        public abstract C create();
+    }
+
+    /**
+     * Collects the items in parallel
+     *
+     * @param pool
+     *            Fork join pool
+     * @param client
+     *            GitHub Client
+     * @param items
+     *            Items to collect
+     * @param factory
+     *            Collector factory
+     * @param threshold
+     *            Number of items below which a part is collected sequentially
+     * @return Ended collector holding the combined results
+     */
+    public static <T, C extends Collector<T, ? super C>> C collect(ForkJoinPool pool, GitHubClient client, List<T> items,
+            CollectorFactory<T, C> factory, int threshold) {
+        if (threshold <= 0)
+            throw new IllegalArgumentException("threshold must be greater than zero");
+        return pool.invoke(new CollectTask<T, C>(client, items, factory, threshold));
+    }
+
+    private static final class CollectTask<T, C extends Collector<T, ? super C>> extends RecursiveTask<C> {
+        private static final long serialVersionUID = -3474014937484870423L;
+
+        private final GitHubClient client;
+        private final List<T> items;
+        private final CollectorFactory<T, C> factory;
+        private final int threshold;
+
+        public CollectTask(GitHubClient client, List<T> items, CollectorFactory<T, C> factory, int threshold) {
+            this.client = client;
+            this.items = items;
+            this.factory = factory;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected C compute() {
+            if (this.items.size() <= this.threshold) {
+                C collector = this.factory.create();
+                collector.start();
+                for (T item : this.items) {
+                    collector.collect(this.client, item);
+                }
+                collector.end();
+                return collector;
+            }
+
+            int mid = this.items.size() / 2;
+            CollectTask<T, C> left = new CollectTask<T, C>(this.client, this.items.subList(0, mid), this.factory,
+                    this.threshold);
+            CollectTask<T, C> right = new CollectTask<T, C>(this.client,
+                    this.items.subList(mid, this.items.size()), this.factory, this.threshold);
+            left.fork();
+            C rightResult = right.compute();
+            C leftResult = left.join();
+
+            // Combine left then right to preserve list order, ending again so
+            // anything created while combining is also ended
+            leftResult.combine(rightResult);
+            leftResult.end();
+            return leftResult;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.User;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+
+/**
+ * The facts about a pull request that the collectors need, derived once per
+ * pull request so that every collector it is dispatched to can use them
+ * directly
+ * <p>
+ * Facts are derived as of a given instant, a pull request merged or closed
+ * after that instant is considered still open and a pull request created
+ * after that instant has no facts at all. This allows statistics to be
+ * reproduced as they would have been at some earlier point in time.
+ * </p>
+ */
+public final class PullRequestFacts {
+
+    public static final byte OPEN = 0, MERGED = 1, CLOSED = 2;
+
+    /**
+     * Time used for pull requests which have not been resolved
+     */
+    public static final long NONE = -1;
+
+    private final int number;
+    private final byte state;
+    private final long seconds, createdAt, resolvedAt;
+    private final boolean mergeable;
+    private final User author, merger;
+
+    public PullRequestFacts(int number, byte state, long createdAt, long resolvedAt, long seconds, boolean mergeable,
+            User author, User merger) {
+        this.number = number;
+        this.state = state;
+        this.createdAt = createdAt;
+        this.resolvedAt = resolvedAt;
+        this.seconds = seconds;
+        this.mergeable = mergeable;
+        this.author = author;
+        this.merger = merger;
+    }
+
+    /**
+     * Classifies a pull request
+     * 
+     * @param pr
+     *            Pull request
+     * @param now
+     *            Instant as of which the pull request is classified and
+     *            against which the age of open pull requests is calculated
+     * @return Facts, or {@code null} if the pull request was created after the
+     *         given instant
+     */
+    public static PullRequestFacts of(PullRequest pr, Instant now) {
+        return of(pr.getNumber(), new Instant(pr.getCreatedAt()).getMillis(),
+                pr.getMergedAt() != null ? pr.getMergedAt().getTime() : NONE,
+                pr.getClosedAt() != null ? pr.getClosedAt().getTime() : NONE, pr.isMergeable(), pr.getUser(),
+                pr.getMergedBy(), now);
+    }
+
+    /**
+     * Classifies a pull request from its raw fields
+     * 
+     * @param number
+     *            Pull request number
+     * @param createdAt
+     *            Creation time in epoch milliseconds
+     * @param mergedAt
+     *            Merge time in epoch milliseconds, {@link #NONE} if not merged
+     * @param closedAt
+     *            Close time in epoch milliseconds, {@link #NONE} if not closed
+     * @param mergeable
+     *            Whether the pull request is currently mergeable
+     * @param author
+     *            Author
+     * @param merger
+     *            Merging user, may be {@code null}
+     * @param now
+     *            Instant as of which the pull request is classified
+     * @return Facts, or {@code null} if the pull request was created after the
+     *         given instant
+     */
+    public static PullRequestFacts of(int number, long createdAt, long mergedAt, long closedAt, boolean mergeable,
+            User author, User merger, Instant now) {
+        long nowMillis = now.getMillis();
+        if (createdAt > nowMillis)
+            return null;
+        if (mergedAt != NONE && mergedAt <= nowMillis) {
+            return new PullRequestFacts(number, MERGED, createdAt, mergedAt, calculateSeconds(createdAt, mergedAt), false,
+                    author, merger);
+        } else if (closedAt != NONE && closedAt <= nowMillis) {
+            return new PullRequestFacts(number, CLOSED, createdAt, closedAt, calculateSeconds(createdAt, closedAt), false,
+                    author, merger);
+        } else {
+            // Mergeability is only known for pull requests that are open now
+            boolean open = mergedAt == NONE && closedAt == NONE && mergeable;
+            return new PullRequestFacts(number, OPEN, createdAt, NONE, calculateSeconds(createdAt, nowMillis), open,
+                    author, merger);
+        }
+    }
+
+    private static long calculateSeconds(long start, long end) {
+        return new Duration(start, end).getStandardSeconds();
+    }
+
+    public int getNumber() {
+        return this.number;
+    }
+
+    public byte getState() {
+        return this.state;
+    }
+
+    public boolean isOpen() {
+        return this.state == OPEN;
+    }
+
+    public boolean isMerged() {
+        return this.state == MERGED;
+    }
+
+    public boolean isClosed() {
+        return this.state == CLOSED;
+    }
+
+    /**
+     * Gets when the pull request was created
+     * 
+     * @return Creation time in milliseconds since the epoch
+     */
+    public long getCreatedAt() {
+        return this.createdAt;
+    }
+
+    /**
+     * Gets when the pull request was merged or closed
+     * 
+     * @return Merge or close time in milliseconds since the epoch, or -1 if the
+     *         pull request is open
+     */
+    public long getResolvedAt() {
+        return this.resolvedAt;
+    }
+
+    /**
+     * Gets the age of the pull request in seconds, for merged pull requests
+     * this is the time to merge, for closed pull requests the time to close
+     * and for open pull requests the time open
+     * 
+     * @return Seconds
+     */
+    public long getSeconds() {
+        return this.seconds;
+    }
+
+    /**
+     * Gets whether an open pull request is mergeable
+     * 
+     * @return True if open and mergeable
+     */
+    public boolean isMergeable() {
+        return this.mergeable;
+    }
+
+    public User getAuthor() {
+        return this.author;
+    }
+
+    public int getAuthorId() {
+        return this.author.getId();
+    }
+
+    public User getMerger() {
+        return this.merger;
+    }
+
+    public boolean hasMerger() {
+        return this.merger != null;
+    }
+
+    public int getMergerId() {
+        return this.merger.getId();
+    }
+
+    public boolean isSelfMerged() {
+        return this.state == MERGED && this.merger != null && this.author != null
+                && this.author.getId() == this.merger.getId();
+    }
+}
@@ -14,74 +14,198 @@
 
 package com.github.rvesse.github.pr.stats.collectors;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.eclipse.egit.github.core.PullRequest;
-import org.eclipse.egit.github.core.RepositoryId;
 import org.eclipse.egit.github.core.User;
 import org.eclipse.egit.github.core.client.GitHubClient;
-import org.eclipse.egit.github.core.service.PullRequestService;
+
+import com.github.rvesse.github.pr.stats.sources.PullRequestReview;
 
 public class PullRequestsCollector extends AbstractPullRequestCollector {
 
-    private Map<Integer, UserCollector> users = new HashMap<Integer, UserCollector>();
-    private Map<Integer, MergingUserCollector> mergingUsers = new HashMap<Integer, MergingUserCollector>();
+    private IntObjectMap<UserCollector> users = new IntObjectMap<UserCollector>();
+    private IntObjectMap<MergingUserCollector> mergingUsers = new IntObjectMap<MergingUserCollector>();
+    private int approximateUsers;
+    private HyperLogLog distinctUsers, distinctMergingUsers;
+    private HeavyHitters<UserCollector> topUsers;
+    private HeavyHitters<MergingUserCollector> topMergingUsers;
 
     private boolean userStats, mergingUserStats;
+    private int mergeFetchThreads;
+    private Windowing windowing;
+    private WindowedCollector windows;
+    private MergeUserResolver resolver;
+    private ReviewResolver reviewResolver;
+    private int reviewDays;
+    private ReviewCollector reviews;
+    private GitHubClient client;
+    private Deque<PendingPullRequest> pending = new ArrayDeque<PendingPullRequest>();
 
     public PullRequestsCollector(boolean collectUserStats, boolean collectMergingUserStats) {
+        this(collectUserStats, collectMergingUserStats, 0);
+    }
+
+    /**
+     * Creates a new collector
+     * 
+     * @param collectUserStats
+     *            Whether to collect user statistics
+     * @param collectMergingUserStats
+     *            Whether to collect merging user statistics
+     * @param mergeFetchThreads
+     *            Maximum number of concurrent lookups used to find the merging
+     *            user of pull requests where the listing did not include it,
+     *            if zero lookups are made inline on the collecting thread
+     */
+    public PullRequestsCollector(boolean collectUserStats, boolean collectMergingUserStats, int mergeFetchThreads) {
+        if (mergeFetchThreads < 0)
+            throw new IllegalArgumentException("mergeFetchThreads cannot be negative");
         this.userStats = collectUserStats;
         this.mergingUserStats = collectMergingUserStats;
+        this.mergeFetchThreads = mergeFetchThreads;
     }
 
     @Override
     public void collect(GitHubClient client, PullRequest pr) {
+        // Classify once, the facts are shared by the global, author and
+        // merging user statistics
+        PullRequestFacts facts = classify(pr);
+        if (facts == null)
+            return;
+
+        boolean needsLookup = this.mergingUserStats && facts.isMerged() && !facts.hasMerger();
+        if (needsLookup && this.resolver == null) {
+            facts = classify(MergeUserResolver.resolveNow(client, pr));
+            needsLookup = false;
+        }
+        Future<List<PullRequestReview>> reviewLookup = this.reviews != null && this.reviews.includes(facts)
+                ? this.reviewResolver.resolve(client, pr) : null;
+        if (!needsLookup && reviewLookup == null && this.pending.isEmpty()) {
+            collect(facts);
+            return;
+        }
+
         // Collect standard stats
-        super.collect(client, pr);
-        
+        collectOverall(facts);
+
+        // Per-user and review stats are applied strictly in the order pull
+        // requests were received so that results are deterministic regardless
+        // of the order in which lookups complete
+        this.client = client;
+        Future<PullRequest> lookup = needsLookup ? this.resolver.resolve(client, pr) : null;
+        this.pending.add(new PendingPullRequest(facts, lookup, reviewLookup));
+        drainPending(this.pending.size() > getConcurrency() * 4);
+    }
+
+    private int getConcurrency() {
+        int concurrency = 1;
+        if (this.resolver != null)
+            concurrency = Math.max(concurrency, this.resolver.getConcurrency());
+        if (this.reviewResolver != null)
+            concurrency = Math.max(concurrency, this.reviewResolver.getConcurrency());
+        return concurrency;
+    }
+
+    /**
+     * Collects a pull request that has already been classified, this updates
+     * the global statistics and dispatches the pull request directly to the
+     * statistics for its author and merging user
+     */
+    @Override
+    public void collect(PullRequestFacts facts) {
+        collectOverall(facts);
+        collectUsers(facts);
+    }
+
+    private void collectOverall(PullRequestFacts facts) {
+        super.collect(facts);
+        if (this.windows != null)
+            this.windows.collect(facts);
+    }
+
+    private void drainPending(boolean waitForHead) {
+        while (!this.pending.isEmpty()) {
+            PendingPullRequest head = this.pending.peek();
+            if (!waitForHead && !head.isDone())
+                return;
+            this.pending.poll();
+            collectUsers(head.get());
+            if (head.reviews != null)
+                this.reviews.collect(head.facts, head.getReviews());
+            waitForHead = false;
+        }
+    }
+
+    private void collectUsers(PullRequestFacts facts) {
         // Collect merging user stats
         if (this.mergingUserStats) {
-            if (pr.getMergedAt() != null) {
-                User mergeUser = pr.getMergedBy();
-                if (mergeUser == null) {
-                    try {
-                        RepositoryId repo = new RepositoryId(pr.getBase().getRepo().getOwner().getLogin(), pr.getBase()
-                                .getRepo().getName());
-                        pr = new PullRequestService(client).getPullRequest(repo, pr.getNumber());
-                        mergeUser = pr.getMergedBy();
-                    } catch (IOException e) {
-                        // Ignore
-                        System.out.println("Failed to obtain detailed information for PR #" + pr.getNumber());
-                    }
-                }
-                if (mergeUser != null) {
-                    MergingUserCollector mergeUserCollector = this.mergingUsers.get(mergeUser.getId());
-                    if (mergeUserCollector == null) {
-                        mergeUserCollector = new MergingUserCollector(pr.getMergedBy());
-                        mergeUserCollector.start();
-                        this.mergingUsers.put(pr.getMergedBy().getId(), mergeUserCollector);
-                    }
-                    mergeUserCollector.collect(client, pr);
+            if (facts.isMerged()) {
+                if (facts.hasMerger()) {
+                    getMergingUserCollector(facts).collect(facts);
                 } else {
-                    System.out.println("Unable to determine merging user for PR #" + pr.getNumber());
+                    System.out.println("Unable to determine merging user for PR #" + facts.getNumber());
                 }
             }
         }
 
         // Collect user stats
         if (this.userStats) {
-            UserCollector userCollector = this.users.get(pr.getUser().getId());
+            getUserCollector(facts).collect(facts);
+        }
+    }
+
+    private MergingUserCollector getMergingUserCollector(PullRequestFacts facts) {
+        int id = facts.getMergerId();
+        if (this.topMergingUsers != null) {
+            this.distinctMergingUsers.add(id);
+            MergingUserCollector mergeUserCollector = this.topMergingUsers.increment(id);
+            if (mergeUserCollector == null) {
+                mergeUserCollector = startUser(new MergingUserCollector(facts.getMerger()));
+                this.topMergingUsers.add(id, mergeUserCollector);
+            }
+            return mergeUserCollector;
+        }
+        MergingUserCollector mergeUserCollector = this.mergingUsers.get(id);
+        if (mergeUserCollector == null) {
+            mergeUserCollector = startUser(new MergingUserCollector(facts.getMerger()));
+            this.mergingUsers.put(id, mergeUserCollector);
+        }
+        return mergeUserCollector;
+    }
+
+    private UserCollector getUserCollector(PullRequestFacts facts) {
+        int id = facts.getAuthorId();
+        if (this.topUsers != null) {
+            this.distinctUsers.add(id);
+            UserCollector userCollector = this.topUsers.increment(id);
             if (userCollector == null) {
-                userCollector = new UserCollector(pr.getUser());
-                userCollector.start();
-                this.users.put(pr.getUser().getId(), userCollector);
+                userCollector = startUser(new UserCollector(facts.getAuthor()));
+                this.topUsers.add(id, userCollector);
             }
-            userCollector.collect(client, pr);
+            return userCollector;
         }
+        UserCollector userCollector = this.users.get(id);
+        if (userCollector == null) {
+            userCollector = startUser(new UserCollector(facts.getAuthor()));
+            this.users.put(id, userCollector);
+        }
+        return userCollector;
+    }
+
+    private <T extends AbstractUserPullRequestCollector> T startUser(T userCollector) {
+        userCollector.setPrecision(getPrecision());
+        userCollector.setTimeUnit(getTimeUnit());
+        userCollector.setNow(getNow());
+        userCollector.start();
+        return userCollector;
     }
 
     @Override
@@ -90,33 +214,385 @@ public class PullRequestsCollector extends AbstractPullRequestCollector {
 
         this.users.clear();
         this.mergingUsers.clear();
+        if (this.approximateUsers > 0) {
+            this.distinctUsers = new HyperLogLog();
+            this.distinctMergingUsers = new HyperLogLog();
+            this.topUsers = new HeavyHitters<UserCollector>(this.approximateUsers);
+            this.topMergingUsers = new HeavyHitters<MergingUserCollector>(this.approximateUsers);
+        } else {
+            this.distinctUsers = null;
+            this.distinctMergingUsers = null;
+            this.topUsers = null;
+            this.topMergingUsers = null;
+        }
+        this.pending.clear();
+        if (this.resolver != null)
+            this.resolver.close();
+        this.resolver = this.mergingUserStats && this.mergeFetchThreads > 0
+                ? new MergeUserResolver(this.mergeFetchThreads) : null;
+        this.windows = this.windowing != null
+                ? new WindowedCollector(this.windowing, getNow(), getPrecision(), getTimeUnit()) : null;
+        if (this.windows != null)
+            this.windows.start();
+        this.reviews = this.reviewResolver != null
+                ? new ReviewCollector(getNow(), this.reviewDays, getPrecision(), getTimeUnit()) : null;
     }
 
     @Override
     public void end() {
+        // Wait for any outstanding lookups
+        while (!this.pending.isEmpty()) {
+            drainPending(true);
+        }
+        if (this.resolver != null) {
+            this.resolver.close();
+            this.resolver = null;
+        }
+        this.client = null;
+
         super.end();
+        if (this.windows != null)
+            this.windows.end();
+        if (this.reviews != null)
+            this.reviews.end();
 
-        for (AbstractUserPullRequestCollector userCollector : this.users.values()) {
+        for (AbstractUserPullRequestCollector userCollector : getUserStats()) {
             userCollector.end();
         }
-        for (AbstractUserPullRequestCollector mergeUserCollector : this.mergingUsers.values()) {
+        for (AbstractUserPullRequestCollector mergeUserCollector : getMergingUserStats()) {
             mergeUserCollector.end();
         }
     }
 
+    /**
+     * Combines the statistics gathered by another collector into this
+     * collector including the per-user and per-merging user statistics
+     * <p>
+     * The other collector should have been ended so that any outstanding
+     * merging user lookups have completed, this collector should be ended after
+     * combining.
+     * </p>
+     */
+    @Override
+    public void combine(AbstractPullRequestCollector other) {
+        super.combine(other);
+        if (!(other instanceof PullRequestsCollector))
+            return;
+
+        PullRequestsCollector prs = (PullRequestsCollector) other;
+        if (this.windows != null && prs.windows != null)
+            this.windows.combine(prs.windows);
+        if (this.reviews != null && prs.reviews != null)
+            this.reviews.combine(prs.reviews);
+        if ((this.topUsers != null) != (prs.topUsers != null))
+            throw new IllegalArgumentException("Cannot combine exact and approximate user statistics");
+        if (this.topUsers != null) {
+            this.distinctUsers.combine(prs.distinctUsers);
+            this.distinctMergingUsers.combine(prs.distinctMergingUsers);
+            this.topUsers.combine(prs.topUsers, new HeavyHitters.Combiner<UserCollector>() {
+
+                @Override
+                public UserCollector combine(UserCollector into, UserCollector from) {
+                    if (into == null)
+                        into = startUser(new UserCollector(from.getUser()));
+                    into.combine(from);
+                    return into;
+                }
+            });
+            this.topMergingUsers.combine(prs.topMergingUsers, new HeavyHitters.Combiner<MergingUserCollector>() {
+
+                @Override
+                public MergingUserCollector combine(MergingUserCollector into, MergingUserCollector from) {
+                    if (into == null)
+                        into = startUser(new MergingUserCollector(from.getUser()));
+                    into.combine(from);
+                    return into;
+                }
+            });
+            return;
+        }
+        for (UserCollector otherUser : prs.users.values()) {
+            int id = otherUser.getUser().getId();
+            UserCollector userCollector = this.users.get(id);
+            if (userCollector == null) {
+                userCollector = startUser(new UserCollector(otherUser.getUser()));
+                this.users.put(id, userCollector);
+            }
+            userCollector.combine(otherUser);
+        }
+        for (MergingUserCollector otherMerger : prs.mergingUsers.values()) {
+            int id = otherMerger.getUser().getId();
+            MergingUserCollector mergeUserCollector = this.mergingUsers.get(id);
+            if (mergeUserCollector == null) {
+                mergeUserCollector = startUser(new MergingUserCollector(otherMerger.getUser()));
+                this.mergingUsers.put(id, mergeUserCollector);
+            }
+            mergeUserCollector.combine(otherMerger);
+        }
+    }
+
+    /**
+     * Writes the statistics collected so far so that they may later be
+     * restored by {@link #readState(DataInput)}, this first waits for any
+     * outstanding merging user lookups so that every pull request collected
+     * so far is reflected in the written state
+     */
+    @Override
+    public void writeState(DataOutput output) throws IOException {
+        while (!this.pending.isEmpty()) {
+            drainPending(true);
+        }
+
+        super.writeState(output);
+        output.writeInt(this.approximateUsers);
+        if (this.topUsers != null) {
+            this.distinctUsers.writeState(output);
+            writeTopUsers(output, this.topUsers);
+            this.distinctMergingUsers.writeState(output);
+            writeTopUsers(output, this.topMergingUsers);
+        } else {
+            output.writeInt(this.users.size());
+            for (UserCollector userCollector : this.users.values()) {
+                writeUser(output, userCollector.getUser());
+                userCollector.writeState(output);
+            }
+            output.writeInt(this.mergingUsers.size());
+            for (MergingUserCollector mergeUserCollector : this.mergingUsers.values()) {
+                writeUser(output, mergeUserCollector.getUser());
+                mergeUserCollector.writeState(output);
+            }
+        }
+        output.writeBoolean(this.windows != null);
+        if (this.windows != null)
+            this.windows.writeState(output);
+        output.writeBoolean(this.reviews != null);
+        if (this.reviews != null)
+            this.reviews.writeState(output);
+    }
+
+    @Override
+    public void readState(DataInput input) throws IOException {
+        super.readState(input);
+        if (input.readInt() != this.approximateUsers)
+            throw new IOException("Cannot restore statistics collected with different approximate user settings");
+        this.users.clear();
+        this.mergingUsers.clear();
+        if (this.topUsers != null) {
+            this.distinctUsers.readState(input);
+            this.topUsers.clear();
+            for (int i = input.readInt(); i > 0; i--) {
+                UserCollector userCollector = startUser(new UserCollector(readUser(input)));
+                long count = input.readLong(), error = input.readLong();
+                userCollector.readState(input);
+                this.topUsers.put(userCollector.getUser().getId(), count, error, userCollector);
+            }
+            this.distinctMergingUsers.readState(input);
+            this.topMergingUsers.clear();
+            for (int i = input.readInt(); i > 0; i--) {
+                MergingUserCollector mergeUserCollector = startUser(new MergingUserCollector(readUser(input)));
+                long count = input.readLong(), error = input.readLong();
+                mergeUserCollector.readState(input);
+                this.topMergingUsers.put(mergeUserCollector.getUser().getId(), count, error, mergeUserCollector);
+            }
+        } else {
+            for (int i = input.readInt(); i > 0; i--) {
+                UserCollector userCollector = startUser(new UserCollector(readUser(input)));
+                userCollector.readState(input);
+                this.users.put(userCollector.getUser().getId(), userCollector);
+            }
+            for (int i = input.readInt(); i > 0; i--) {
+                MergingUserCollector mergeUserCollector = startUser(new MergingUserCollector(readUser(input)));
+                mergeUserCollector.readState(input);
+                this.mergingUsers.put(mergeUserCollector.getUser().getId(), mergeUserCollector);
+            }
+        }
+        if (input.readBoolean() != (this.windows != null))
+            throw new IOException("Cannot restore statistics collected with different windowing");
+        if (this.windows != null)
+            this.windows.readState(input);
+        if (input.readBoolean() != (this.reviews != null))
+            throw new IOException("Cannot restore statistics collected with different review settings");
+        if (this.reviews != null)
+            this.reviews.readState(input);
+    }
+
+    private static <T extends AbstractUserPullRequestCollector> void writeTopUsers(DataOutput output,
+            HeavyHitters<T> topUsers) throws IOException {
+        List<HeavyHitters.Entry<T>> entries = topUsers.entries();
+        output.writeInt(entries.size());
+        for (HeavyHitters.Entry<T> entry : entries) {
+            writeUser(output, entry.getValue().getUser());
+            output.writeLong(entry.getCount());
+            output.writeLong(entry.getError());
+            entry.getValue().writeState(output);
+        }
+    }
+
+    private static void writeUser(DataOutput output, User user) throws IOException {
+        output.writeInt(user.getId());
+        output.writeUTF(user.getLogin() != null ? user.getLogin() : "");
+    }
+
+    private static User readUser(DataInput input) throws IOException {
+        return new User().setId(input.readInt()).setLogin(input.readUTF());
+    }
+
+    /**
+     * Sets how time is divided into windows for windowed statistics, takes
+     * effect when {@link #start()} is next called
+     * 
+     * @param windowing
+     *            Windowing, {@code null} to not collect windowed statistics
+     */
+    public void setWindowing(Windowing windowing) {
+        this.windowing = windowing;
+    }
+
+    /**
+     * Sets whether review statistics are collected, takes effect when
+     * {@link #start()} is next called
+     * 
+     * @param resolver
+     *            Resolver used to obtain reviews, which is not closed by this
+     *            collector, {@code null} to not collect review statistics
+     * @param days
+     *            Number of days before now within which pull requests must have
+     *            been opened for their reviews to be collected
+     */
+    public void setReviews(ReviewResolver resolver, int days) {
+        if (resolver != null && days <= 0)
+            throw new IllegalArgumentException("days must be greater than zero");
+        this.reviewResolver = resolver;
+        this.reviewDays = days;
+    }
+
+    /**
+     * Gets the review statistics
+     * 
+     * @return Review statistics, or {@code null} if not collected
+     */
+    public ReviewCollector getReviewStats() {
+        return this.reviews;
+    }
+
+    /**
+     * Gets the windowed statistics
+     * 
+     * @return Windowed statistics, or {@code null} if not collected
+     */
+    public WindowedCollector getWindowStats() {
+        return this.windows;
+    }
+
+    /**
+     * Sets whether users are tracked approximately, takes effect when
+     * {@link #start()} is next called
+     * <p>
+     * When set the number of distinct users and merging users are estimated
+     * with {@link HyperLogLog} sketches and statistics are only kept for the
+     * most frequent users, tracked with {@link HeavyHitters}, so memory use
+     * does not depend on the number of users. The statistics for a user only
+     * cover the pull requests collected since that user was last among the
+     * most frequent users.
+     * </p>
+     * 
+     * @param capacity
+     *            Maximum number of users and of merging users for which
+     *            statistics are kept, zero to keep statistics for every user
+     */
+    public void setApproximateUsers(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("capacity cannot be negative");
+        this.approximateUsers = capacity;
+    }
+
+    /**
+     * Gets whether users are tracked approximately
+     * 
+     * @return True if approximate
+     */
+    public boolean isApproximateUsers() {
+        return this.topUsers != null;
+    }
+
+    /**
+     * Gets the number of distinct users
+     * 
+     * @return Users, an estimate if users are tracked approximately
+     */
     public long getTotalUsers() {
-        return this.users.size();
+        return this.distinctUsers != null ? this.distinctUsers.estimate() : this.users.size();
     }
 
+    /**
+     * Gets the statistics for each user
+     * 
+     * @return User statistics, only for the most frequent users if users are
+     *         tracked approximately
+     */
     public List<UserCollector> getUserStats() {
-        return new ArrayList<UserCollector>(this.users.values());
+        return this.topUsers != null ? this.topUsers.values() : this.users.values();
     }
 
+    /**
+     * Gets the number of distinct merging users
+     * 
+     * @return Merging users, an estimate if users are tracked approximately
+     */
     public long getTotalMergingUsers() {
-        return this.mergingUsers.size();
+        return this.distinctMergingUsers != null ? this.distinctMergingUsers.estimate() : this.mergingUsers.size();
     }
 
+    /**
+     * Gets the statistics for each merging user
+     * 
+     * @return Merging user statistics, only for the most frequent merging
+     *         users if users are tracked approximately
+     */
     public List<MergingUserCollector> getMergingUserStats() {
-        return new ArrayList<MergingUserCollector>(this.mergingUsers.values());
+        return this.topMergingUsers != null ? this.topMergingUsers.values() : this.mergingUsers.values();
+    }
+
+    private final class PendingPullRequest {
+        private final PullRequestFacts facts;
+        private final Future<PullRequest> lookup;
+        private final Future<List<PullRequestReview>> reviews;
+
+        public PendingPullRequest(PullRequestFacts facts, Future<PullRequest> lookup,
+                Future<List<PullRequestReview>> reviews) {
+            this.facts = facts;
+            this.lookup = lookup;
+            this.reviews = reviews;
+        }
+
+        public boolean isDone() {
+            return (this.lookup == null || this.lookup.isDone()) && (this.reviews == null || this.reviews.isDone());
+        }
+
+        public List<PullRequestReview> getReviews() {
+            try {
+                return this.reviews.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                System.out.println("Failed to obtain reviews for PR #" + this.facts.getNumber());
+                return null;
+            }
+        }
+
+        public PullRequestFacts get() {
+            if (this.lookup == null)
+                return this.facts;
+            try {
+                return classify(this.lookup.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return this.facts;
+            } catch (ExecutionException e) {
+                System.out.println("Failed to obtain detailed information for PR #" + this.facts.getNumber());
+                return this.facts;
+            }
+        }
     }
 }
@@ -0,0 +1,388 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.joda.time.Instant;
+
+import com.github.rvesse.github.pr.stats.sources.PullRequestReview;
+
+/**
+ * Collects review latency statistics for the pull requests opened within a
+ * number of days of the instant statistics are collected as of
+ * <p>
+ * Only reviews submitted by someone other than the author of a pull request
+ * count. The review rounds of a pull request are one plus the number of times
+ * changes were requested before it was first approved, or ever if it was never
+ * approved. The review load of each reviewer is also collected.
+ * </p>
+ */
+public class ReviewCollector implements Collector<PullRequest, ReviewCollector> {
+
+    private final Instant now;
+    private final int days;
+    private final long since;
+    private final int precision;
+    private final TimeUnit unit;
+    private long count, reviewed, awaitingReview, approved;
+    private LongStatsCollector timeToFirstReview, timeToApproval, reviewRounds;
+    private final IntObjectMap<ReviewerCollector> reviewers = new IntObjectMap<ReviewerCollector>();
+
+    /**
+     * Creates a new collector
+     * 
+     * @param now
+     *            Instant as of which statistics are collected
+     * @param days
+     *            Number of days before that instant within which pull requests
+     *            must have been opened to be included
+     * @param precision
+     *            Number of significant digits to which latencies are recorded,
+     *            zero to record them exactly
+     * @param unit
+     *            Unit in which latencies are reported
+     */
+    public ReviewCollector(Instant now, int days, int precision, TimeUnit unit) {
+        if (now == null)
+            throw new IllegalArgumentException("now cannot be null");
+        if (days <= 0)
+            throw new IllegalArgumentException("days must be greater than zero");
+        if (unit == null)
+            throw new IllegalArgumentException("unit cannot be null");
+        this.now = now;
+        this.days = days;
+        this.since = now.getMillis() - TimeUnit.DAYS.toMillis(days);
+        this.precision = precision;
+        this.unit = unit;
+        start();
+    }
+
+    public Instant getNow() {
+        return this.now;
+    }
+
+    /**
+     * Gets the number of days before now within which pull requests must have
+     * been opened to be included
+     * 
+     * @return Days
+     */
+    public int getDays() {
+        return this.days;
+    }
+
+    /**
+     * Gets whether a pull request is opened recently enough for its reviews to
+     * be collected, reviews need only be fetched for such pull requests
+     * 
+     * @param facts
+     *            Pull request facts
+     * @return True if included
+     */
+    public boolean includes(PullRequestFacts facts) {
+        return facts.getCreatedAt() >= this.since;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Reviews are fetched on the calling thread unless the pull request
+     * already includes them, prefer {@link ReviewResolver} when collecting
+     * many pull requests.
+     * </p>
+     */
+    @Override
+    public void collect(GitHubClient client, PullRequest pr) {
+        PullRequestFacts facts = PullRequestFacts.of(pr, this.now);
+        if (facts != null && includes(facts))
+            collect(facts, ReviewResolver.fetchNow(client, pr));
+    }
+
+    /**
+     * Collects the reviews of a pull request, the facts must have been derived
+     * as of the same instant as this collector
+     * 
+     * @param facts
+     *            Pull request facts
+     * @param reviews
+     *            Reviews, {@code null} if they could not be obtained in which
+     *            case the pull request is ignored
+     */
+    public void collect(PullRequestFacts facts, List<PullRequestReview> reviews) {
+        if (reviews == null || !includes(facts))
+            return;
+        int authorId = facts.getAuthor() != null ? facts.getAuthorId() : -1;
+
+        long firstReview = PullRequestFacts.NONE, firstApproval = PullRequestFacts.NONE;
+        for (PullRequestReview review : reviews) {
+            long at = getReviewedAt(review, authorId);
+            if (at == PullRequestFacts.NONE)
+                continue;
+            if (firstReview == PullRequestFacts.NONE || at < firstReview)
+                firstReview = at;
+            if (PullRequestReview.STATE_APPROVED.equals(review.getState())
+                    && (firstApproval == PullRequestFacts.NONE || at < firstApproval))
+                firstApproval = at;
+        }
+
+        this.count++;
+        if (firstReview == PullRequestFacts.NONE) {
+            if (facts.isOpen())
+                this.awaitingReview++;
+            return;
+        }
+        this.reviewed++;
+        this.timeToFirstReview.add(toSeconds(firstReview - facts.getCreatedAt()));
+        if (firstApproval != PullRequestFacts.NONE) {
+            this.approved++;
+            this.timeToApproval.add(toSeconds(firstApproval - facts.getCreatedAt()));
+        }
+
+        // Gather the activity of each reviewer on this pull request
+        long rounds = 1;
+        IntObjectMap<ReviewerActivity> activity = new IntObjectMap<ReviewerActivity>();
+        for (PullRequestReview review : reviews) {
+            long at = getReviewedAt(review, authorId);
+            if (at == PullRequestFacts.NONE)
+                continue;
+            boolean changesRequested = PullRequestReview.STATE_CHANGES_REQUESTED.equals(review.getState());
+            if (changesRequested && (firstApproval == PullRequestFacts.NONE || at < firstApproval))
+                rounds++;
+            if (review.getUser() == null)
+                continue;
+            ReviewerActivity reviewer = activity.get(review.getUser().getId());
+            if (reviewer == null) {
+                reviewer = new ReviewerActivity(review.getUser(), at);
+                activity.put(review.getUser().getId(), reviewer);
+            }
+            reviewer.reviewed(at, PullRequestReview.STATE_APPROVED.equals(review.getState()), changesRequested);
+        }
+        this.reviewRounds.add(rounds);
+        for (ReviewerActivity reviewer : activity.values()) {
+            getReviewer(reviewer.user).reviewed(toSeconds(reviewer.firstReview - facts.getCreatedAt()),
+                    reviewer.reviews, reviewer.approvals, reviewer.changesRequested);
+        }
+    }
+
+    private long getReviewedAt(PullRequestReview review, int authorId) {
+        if (review.getSubmittedAt() == null || PullRequestReview.STATE_PENDING.equals(review.getState()))
+            return PullRequestFacts.NONE;
+        if (review.getUser() != null && review.getUser().getId() == authorId)
+            return PullRequestFacts.NONE;
+        long at = review.getSubmittedAt().getTime();
+        return at <= this.now.getMillis() ? at : PullRequestFacts.NONE;
+    }
+
+    private static long toSeconds(long millis) {
+        return Math.max(0, TimeUnit.MILLISECONDS.toSeconds(millis));
+    }
+
+    private ReviewerCollector getReviewer(User user) {
+        ReviewerCollector reviewer = this.reviewers.get(user.getId());
+        if (reviewer == null) {
+            reviewer = new ReviewerCollector(user, this.precision, this.unit);
+            reviewer.start();
+            this.reviewers.put(user.getId(), reviewer);
+        }
+        return reviewer;
+    }
+
+    @Override
+    public void start() {
+        this.count = 0;
+        this.reviewed = 0;
+        this.awaitingReview = 0;
+        this.approved = 0;
+        this.timeToFirstReview = new LongStatsCollector(this.precision, this.unit.toSeconds(1));
+        this.timeToApproval = new LongStatsCollector(this.precision, this.unit.toSeconds(1));
+        this.reviewRounds = new LongStatsCollector(this.precision);
+        this.reviewers.clear();
+    }
+
+    @Override
+    public void end() {
+        this.timeToFirstReview.end();
+        this.timeToApproval.end();
+        this.reviewRounds.end();
+        for (ReviewerCollector reviewer : this.reviewers.values()) {
+            reviewer.end();
+        }
+    }
+
+    /**
+     * Combines the statistics gathered by another collector into this
+     * collector
+     * 
+     * @param other
+     *            Other collector, must have been collected as of the same
+     *            instant over the same number of days
+     */
+    @Override
+    public void combine(ReviewCollector other) {
+        if (other.since != this.since)
+            throw new IllegalArgumentException("Cannot combine review statistics covering different periods");
+        this.count += other.count;
+        this.reviewed += other.reviewed;
+        this.awaitingReview += other.awaitingReview;
+        this.approved += other.approved;
+        this.timeToFirstReview.combine(other.timeToFirstReview);
+        this.timeToApproval.combine(other.timeToApproval);
+        this.reviewRounds.combine(other.reviewRounds);
+        for (ReviewerCollector otherReviewer : other.reviewers.values()) {
+            getReviewer(otherReviewer.getUser()).combine(otherReviewer);
+        }
+    }
+
+    /**
+     * Writes the statistics collected so far so that they may later be
+     * restored by {@link #readState(DataInput)}
+     * 
+     * @param output
+     *            Output
+     * @throws IOException
+     *             Thrown if the state cannot be written
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeLong(this.count);
+        output.writeLong(this.reviewed);
+        output.writeLong(this.awaitingReview);
+        output.writeLong(this.approved);
+        this.timeToFirstReview.writeState(output);
+        this.timeToApproval.writeState(output);
+        this.reviewRounds.writeState(output);
+        output.writeInt(this.reviewers.size());
+        for (ReviewerCollector reviewer : this.reviewers.values()) {
+            output.writeInt(reviewer.getUser().getId());
+            output.writeUTF(reviewer.getUser().getLogin() != null ? reviewer.getUser().getLogin() : "");
+            reviewer.writeState(output);
+        }
+    }
+
+    /**
+     * Replaces the statistics collected so far with those previously written
+     * by {@link #writeState(DataOutput)}
+     * 
+     * @param input
+     *            Input
+     * @throws IOException
+     *             Thrown if the state cannot be read
+     */
+    public void readState(DataInput input) throws IOException {
+        start();
+        this.count = input.readLong();
+        this.reviewed = input.readLong();
+        this.awaitingReview = input.readLong();
+        this.approved = input.readLong();
+        this.timeToFirstReview.readState(input);
+        this.timeToApproval.readState(input);
+        this.reviewRounds.readState(input);
+        for (int i = input.readInt(); i > 0; i--) {
+            User user = new User().setId(input.readInt()).setLogin(input.readUTF());
+            getReviewer(user).readState(input);
+        }
+    }
+
+    /**
+     * Gets the number of pull requests whose reviews were collected
+     * 
+     * @return Pull requests
+     */
+    public long getTotal() {
+        return this.count;
+    }
+
+    /**
+     * Gets the number of pull requests reviewed at least once
+     * 
+     * @return Pull requests reviewed
+     */
+    public long getReviewed() {
+        return this.reviewed;
+    }
+
+    /**
+     * Gets the number of open pull requests not yet reviewed
+     * 
+     * @return Pull requests awaiting review
+     */
+    public long getAwaitingReview() {
+        return this.awaitingReview;
+    }
+
+    /**
+     * Gets the number of pull requests approved at least once
+     * 
+     * @return Pull requests approved
+     */
+    public long getApproved() {
+        return this.approved;
+    }
+
+    /**
+     * Gets the time from pull requests being opened to their first review, in
+     * the unit the statistics are reported in
+     * 
+     * @return Time to first review
+     */
+    public LongStatsCollector getTimeToFirstReviewStats() {
+        return this.timeToFirstReview;
+    }
+
+    /**
+     * Gets the time from pull requests being opened to their first approval,
+     * in the unit the statistics are reported in
+     * 
+     * @return Time to approval
+     */
+    public LongStatsCollector getTimeToApprovalStats() {
+        return this.timeToApproval;
+    }
+
+    public LongStatsCollector getReviewRoundsStats() {
+        return this.reviewRounds;
+    }
+
+    public List<ReviewerCollector> getReviewerStats() {
+        return this.reviewers.values();
+    }
+
+    private static final class ReviewerActivity {
+        private final User user;
+        private long firstReview;
+        private int reviews, approvals, changesRequested;
+
+        private ReviewerActivity(User user, long firstReview) {
+            this.user = user;
+            this.firstReview = firstReview;
+        }
+
+        private void reviewed(long at, boolean approval, boolean changesRequested) {
+            this.firstReview = Math.min(this.firstReview, at);
+            this.reviews++;
+            if (approval)
+                this.approvals++;
+            if (changesRequested)
+                this.changesRequested++;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.client.GitHubClient;
+
+import com.github.rvesse.github.pr.stats.cache.ReviewCache;
+import com.github.rvesse.github.pr.stats.sources.PullRequestReview;
+import com.github.rvesse.github.pr.stats.sources.PullRequestReviewService;
+import com.github.rvesse.github.pr.stats.sources.ReviewedPullRequest;
+
+/**
+ * Resolves the reviews of pull requests on a bounded pool of background
+ * threads
+ * <p>
+ * Pull requests whose reviews were fetched along with them, or whose reviews
+ * are cached and unchanged, are resolved immediately without any request.
+ * </p>
+ */
+public class ReviewResolver implements Closeable {
+
+    private final ExecutorService executor;
+    private final int concurrency;
+    private final File cacheDir;
+    private final Map<String, ReviewCache> caches = new LinkedHashMap<String, ReviewCache>();
+    private final AtomicLong fetched = new AtomicLong(), cached = new AtomicLong();
+
+    /**
+     * Creates a new resolver
+     * 
+     * @param concurrency
+     *            Maximum number of concurrent lookups
+     * @param cacheDir
+     *            Directory in which reviews are cached between runs, may be
+     *            {@code null} to not cache reviews
+     */
+    public ReviewResolver(int concurrency, File cacheDir) {
+        if (concurrency <= 0)
+            throw new IllegalArgumentException("concurrency must be greater than zero");
+        this.concurrency = concurrency;
+        this.cacheDir = cacheDir;
+        final AtomicInteger threadId = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "pr-stats-reviews-" + threadId.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Gets the maximum number of concurrent lookups
+     *
+     * @return Concurrency
+     */
+    public int getConcurrency() {
+        return this.concurrency;
+    }
+
+    /**
+     * Starts resolving the reviews of a pull request
+     * 
+     * @param client
+     *            GitHub Client
+     * @param pr
+     *            Pull Request
+     * @return Future that yields the reviews, or {@code null} if they could not
+     *         be obtained
+     */
+    public Future<List<PullRequestReview>> resolve(final GitHubClient client, final PullRequest pr) {
+        final List<PullRequestReview> known = getKnownReviews(pr);
+        if (known != null) {
+            FutureTask<List<PullRequestReview>> done = new FutureTask<List<PullRequestReview>>(
+                    new Callable<List<PullRequestReview>>() {
+
+                        @Override
+                        public List<PullRequestReview> call() {
+                            return known;
+                        }
+                    });
+            done.run();
+            return done;
+        }
+        return this.executor.submit(new Callable<List<PullRequestReview>>() {
+
+            @Override
+            public List<PullRequestReview> call() throws Exception {
+                return fetch(client, pr);
+            }
+        });
+    }
+
+    private List<PullRequestReview> getKnownReviews(PullRequest pr) {
+        if (pr instanceof ReviewedPullRequest && ((ReviewedPullRequest) pr).getReviews() != null)
+            return ((ReviewedPullRequest) pr).getReviews();
+        ReviewCache cache = getCache(pr);
+        List<PullRequestReview> reviews = cache != null ? cache.get(pr) : null;
+        if (reviews != null)
+            this.cached.incrementAndGet();
+        return reviews;
+    }
+
+    private List<PullRequestReview> fetch(GitHubClient client, PullRequest pr) {
+        List<PullRequestReview> reviews = fetchNow(client, pr);
+        if (reviews != null) {
+            this.fetched.incrementAndGet();
+            ReviewCache cache = getCache(pr);
+            if (cache != null)
+                cache.put(pr, reviews);
+        }
+        return reviews;
+    }
+
+    private synchronized ReviewCache getCache(PullRequest pr) {
+        RepositoryId repo = getRepository(pr);
+        if (this.cacheDir == null || repo == null)
+            return null;
+        ReviewCache cache = this.caches.get(repo.generateId());
+        if (cache == null) {
+            cache = new ReviewCache(ReviewCache.getCacheFile(this.cacheDir, repo), repo);
+            try {
+                cache.load();
+            } catch (IOException e) {
+                System.out.println(e.getMessage() + ", reviews for " + repo.generateId() + " will be fetched again");
+            }
+            this.caches.put(repo.generateId(), cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Saves any reviews fetched since the caches were loaded
+     * 
+     * @throws IOException
+     *             Thrown if a cache cannot be saved
+     */
+    public synchronized void save() throws IOException {
+        for (ReviewCache cache : this.caches.values()) {
+            cache.save();
+        }
+    }
+
+    /**
+     * Gets the number of pull requests whose reviews were fetched
+     * 
+     * @return Pull requests fetched
+     */
+    public long getFetched() {
+        return this.fetched.get();
+    }
+
+    /**
+     * Gets the number of pull requests whose reviews were served from the
+     * cache
+     * 
+     * @return Pull requests served from the cache
+     */
+    public long getCached() {
+        return this.cached.get();
+    }
+
+    /**
+     * Fetches the reviews of a pull request on the calling thread
+     * 
+     * @param client
+     *            GitHub Client
+     * @param pr
+     *            Pull Request
+     * @return Reviews, or {@code null} if they could not be obtained
+     */
+    public static List<PullRequestReview> fetchNow(GitHubClient client, PullRequest pr) {
+        if (pr instanceof ReviewedPullRequest && ((ReviewedPullRequest) pr).getReviews() != null)
+            return ((ReviewedPullRequest) pr).getReviews();
+        RepositoryId repo = getRepository(pr);
+        try {
+            if (repo == null)
+                throw new IOException("Repository unknown");
+            return new PullRequestReviewService(client).getReviews(repo, pr.getNumber());
+        } catch (IOException e) {
+            System.out.println("Failed to obtain reviews for PR #" + pr.getNumber());
+            return null;
+        }
+    }
+
+    private static RepositoryId getRepository(PullRequest pr) {
+        if (pr.getBase() == null || pr.getBase().getRepo() == null || pr.getBase().getRepo().getOwner() == null)
+            return null;
+        return new RepositoryId(pr.getBase().getRepo().getOwner().getLogin(), pr.getBase().getRepo().getName());
+    }
+
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.egit.github.core.User;
+
+/**
+ * The review load of a single reviewer
+ */
+public class ReviewerCollector {
+
+    private final User user;
+    private long pullRequests, reviews, approvals, changesRequested;
+    private final LongStatsCollector timeToReview;
+
+    ReviewerCollector(User user, int precision, TimeUnit unit) {
+        this.user = user;
+        this.timeToReview = new LongStatsCollector(precision, unit.toSeconds(1));
+    }
+
+    /**
+     * Records the reviews made of a single pull request
+     * 
+     * @param timeToReview
+     *            Seconds from the pull request being opened to the first
+     *            review by this reviewer
+     * @param reviews
+     *            Number of reviews
+     * @param approvals
+     *            Number of approving reviews
+     * @param changesRequested
+     *            Number of reviews requesting changes
+     */
+    void reviewed(long timeToReview, int reviews, int approvals, int changesRequested) {
+        this.pullRequests++;
+        this.reviews += reviews;
+        this.approvals += approvals;
+        this.changesRequested += changesRequested;
+        this.timeToReview.add(timeToReview);
+    }
+
+    void combine(ReviewerCollector other) {
+        this.pullRequests += other.pullRequests;
+        this.reviews += other.reviews;
+        this.approvals += other.approvals;
+        this.changesRequested += other.changesRequested;
+        this.timeToReview.combine(other.timeToReview);
+    }
+
+    void writeState(DataOutput output) throws IOException {
+        output.writeLong(this.pullRequests);
+        output.writeLong(this.reviews);
+        output.writeLong(this.approvals);
+        output.writeLong(this.changesRequested);
+        this.timeToReview.writeState(output);
+    }
+
+    void readState(DataInput input) throws IOException {
+        this.pullRequests = input.readLong();
+        this.reviews = input.readLong();
+        this.approvals = input.readLong();
+        this.changesRequested = input.readLong();
+        this.timeToReview.readState(input);
+    }
+
+    void start() {
+        this.timeToReview.start();
+    }
+
+    void end() {
+        this.timeToReview.end();
+    }
+
+    public User getUser() {
+        return this.user;
+    }
+
+    /**
+     * Gets the number of pull requests this user reviewed
+     * 
+     * @return Pull requests reviewed
+     */
+    public long getPullRequests() {
+        return this.pullRequests;
+    }
+
+    public long getReviews() {
+        return this.reviews;
+    }
+
+    public long getApprovals() {
+        return this.approvals;
+    }
+
+    public long getChangesRequested() {
+        return this.changesRequested;
+    }
+
+    /**
+     * Gets the time from pull requests being opened to this user first
+     * reviewing them, in the unit the review statistics are reported in
+     * 
+     * @return Time to review
+     */
+    public LongStatsCollector getTimeToReviewStats() {
+        return this.timeToReview;
+    }
+
+    @Override
+    public String toString() {
+        return this.user.getLogin();
+    }
+}
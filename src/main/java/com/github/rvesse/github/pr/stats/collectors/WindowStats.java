@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics for the pull request activity within a single window of time
+ * <p>
+ * Pull requests are counted in the window in which each event happened, so a
+ * pull request opened in one window and merged in a later window counts as
+ * opened in the first and merged in the second, with its days to merge
+ * counted in the window in which it was merged.
+ * </p>
+ */
+public class WindowStats {
+
+    private final long start, end;
+    private long opened, merged, closed;
+    private final LongStatsCollector daysToMerge, daysToClose;
+
+    WindowStats(long start, long end, int precision, TimeUnit unit) {
+        this.start = start;
+        this.end = end;
+        this.daysToMerge = new LongStatsCollector(precision, unit.toSeconds(1));
+        this.daysToClose = new LongStatsCollector(precision, unit.toSeconds(1));
+    }
+
+    void opened() {
+        this.opened++;
+    }
+
+    void merged(long seconds) {
+        this.merged++;
+        this.daysToMerge.add(seconds);
+    }
+
+    void closed(long seconds) {
+        this.closed++;
+        this.daysToClose.add(seconds);
+    }
+
+    void combine(WindowStats other) {
+        this.opened += other.opened;
+        this.merged += other.merged;
+        this.closed += other.closed;
+        this.daysToMerge.combine(other.daysToMerge);
+        this.daysToClose.combine(other.daysToClose);
+    }
+
+    void writeState(DataOutput output) throws IOException {
+        output.writeLong(this.opened);
+        output.writeLong(this.merged);
+        output.writeLong(this.closed);
+        this.daysToMerge.writeState(output);
+        this.daysToClose.writeState(output);
+    }
+
+    void readState(DataInput input) throws IOException {
+        this.opened = input.readLong();
+        this.merged = input.readLong();
+        this.closed = input.readLong();
+        this.daysToMerge.readState(input);
+        this.daysToClose.readState(input);
+    }
+
+    void end() {
+        this.daysToMerge.end();
+        this.daysToClose.end();
+    }
+
+    /**
+     * Gets the start of the window
+     * 
+     * @return Start in milliseconds since the epoch (inclusive)
+     */
+    public long getStart() {
+        return this.start;
+    }
+
+    /**
+     * Gets the end of the window
+     * 
+     * @return End in milliseconds since the epoch (exclusive)
+     */
+    public long getEnd() {
+        return this.end;
+    }
+
+    /**
+     * Gets the number of pull requests opened in the window
+     * 
+     * @return Pull requests opened
+     */
+    public long getOpened() {
+        return this.opened;
+    }
+
+    /**
+     * Gets the number of pull requests merged in the window
+     * 
+     * @return Pull requests merged
+     */
+    public long getMerged() {
+        return this.merged;
+    }
+
+    /**
+     * Gets the number of pull requests closed without merging in the window
+     * 
+     * @return Pull requests closed
+     */
+    public long getClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Gets the days to merge of the pull requests merged in the window
+     * 
+     * @return Days to merge
+     */
+    public LongStatsCollector getDaysToMergeStats() {
+        return this.daysToMerge;
+    }
+
+    /**
+     * Gets the days to close of the pull requests closed in the window
+     * 
+     * @return Days to close
+     */
+    public LongStatsCollector getDaysToCloseStats() {
+        return this.daysToClose;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.joda.time.Instant;
+
+/**
+ * Collects pull request throughput and latency statistics for each window of
+ * time in a single pass over the pull requests
+ */
+public class WindowedCollector implements Collector<PullRequest, WindowedCollector> {
+
+    private final Windowing windowing;
+    private final Instant now;
+    private final int precision;
+    private final TimeUnit unit;
+    private final Map<Long, WindowStats> windows = new TreeMap<Long, WindowStats>();
+    private WindowStats last;
+
+    /**
+     * Creates a new collector
+     * 
+     * @param windowing
+     *            Windowing
+     * @param now
+     *            Instant as of which statistics are collected
+     * @param precision
+     *            Number of significant digits to which ages are recorded,
+     *            zero to record ages exactly
+     * @param unit
+     *            Unit in which ages are reported
+     */
+    public WindowedCollector(Windowing windowing, Instant now, int precision, TimeUnit unit) {
+        if (windowing == null)
+            throw new IllegalArgumentException("windowing cannot be null");
+        if (now == null)
+            throw new IllegalArgumentException("now cannot be null");
+        if (unit == null)
+            throw new IllegalArgumentException("unit cannot be null");
+        this.windowing = windowing;
+        this.now = now;
+        this.precision = precision;
+        this.unit = unit;
+    }
+
+    public Windowing getWindowing() {
+        return this.windowing;
+    }
+
+    public Instant getNow() {
+        return this.now;
+    }
+
+    @Override
+    public void collect(GitHubClient client, PullRequest pr) {
+        PullRequestFacts facts = PullRequestFacts.of(pr, this.now);
+        if (facts != null)
+            collect(facts);
+    }
+
+    /**
+     * Collects a pull request that has already been classified, the facts
+     * must have been derived as of the same instant as this collector
+     * 
+     * @param facts
+     *            Pull request facts
+     */
+    public void collect(PullRequestFacts facts) {
+        getWindow(facts.getCreatedAt()).opened();
+        if (facts.isMerged()) {
+            getWindow(facts.getResolvedAt()).merged(facts.getSeconds());
+        } else if (facts.isClosed()) {
+            getWindow(facts.getResolvedAt()).closed(facts.getSeconds());
+        }
+    }
+
+    private WindowStats getWindow(long time) {
+        // Pull requests tend to arrive in date order so check the most
+        // recently used window first
+        if (this.last != null && time >= this.last.getStart() && time < this.last.getEnd())
+            return this.last;
+        long start = this.windowing.getStart(time, this.now);
+        WindowStats window = this.windows.get(start);
+        if (window == null) {
+            window = new WindowStats(start, this.windowing.getNext(start, this.now), this.precision, this.unit);
+            this.windows.put(start, window);
+        }
+        this.last = window;
+        return window;
+    }
+
+    @Override
+    public void start() {
+        this.windows.clear();
+        this.last = null;
+    }
+
+    @Override
+    public void end() {
+        for (WindowStats window : this.windows.values()) {
+            window.end();
+        }
+    }
+
+    @Override
+    public void combine(WindowedCollector other) {
+        if (!other.windowing.getName().equals(this.windowing.getName()) || !other.now.equals(this.now))
+            throw new IllegalArgumentException("Cannot combine collectors with different windows");
+        for (WindowStats otherWindow : other.windows.values()) {
+            WindowStats window = this.windows.get(otherWindow.getStart());
+            if (window == null) {
+                window = new WindowStats(otherWindow.getStart(), otherWindow.getEnd(), this.precision, this.unit);
+                this.windows.put(window.getStart(), window);
+            }
+            window.combine(otherWindow);
+        }
+        this.last = null;
+    }
+
+    /**
+     * Writes the windows collected so far so that they may later be restored
+     * by {@link #readState(DataInput)}
+     * 
+     * @param output
+     *            Output
+     * @throws IOException
+     *             Thrown if the state cannot be written
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeUTF(this.windowing.getName());
+        output.writeInt(this.windows.size());
+        for (WindowStats window : this.windows.values()) {
+            output.writeLong(window.getStart());
+            output.writeLong(window.getEnd());
+            window.writeState(output);
+        }
+    }
+
+    /**
+     * Replaces the windows collected so far with those previously written by
+     * {@link #writeState(DataOutput)}
+     * 
+     * @param input
+     *            Input
+     * @throws IOException
+     *             Thrown if the state cannot be read or was written with
+     *             different windows
+     */
+    public void readState(DataInput input) throws IOException {
+        String name = input.readUTF();
+        if (!name.equals(this.windowing.getName()))
+            throw new IOException("Cannot restore windows of " + name + " into a collector with windows of "
+                    + this.windowing.getName());
+        start();
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            WindowStats window = new WindowStats(input.readLong(), input.readLong(), this.precision, this.unit);
+            window.readState(input);
+            this.windows.put(window.getStart(), window);
+        }
+    }
+
+    /**
+     * Gets the statistics for each window in time order, windows with no
+     * activity between the first and last active windows are included so that
+     * trends are continuous
+     * 
+     * @return Window statistics
+     */
+    public List<WindowStats> getWindows() {
+        List<WindowStats> results = new ArrayList<WindowStats>();
+        WindowStats previous = null;
+        for (WindowStats window : this.windows.values()) {
+            if (previous != null) {
+                for (long start = previous.getEnd(); start < window.getStart(); start = this.windowing.getNext(start,
+                        this.now)) {
+                    WindowStats empty = new WindowStats(start, this.windowing.getNext(start, this.now),
+                            this.precision, this.unit);
+                    empty.end();
+                    results.add(empty);
+                }
+            }
+            results.add(window);
+            previous = window;
+        }
+        return results;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.collectors;
+
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Instant;
+
+/**
+ * Describes how time is divided into windows for windowed statistics
+ * <p>
+ * Weekly windows start on Mondays and monthly windows on the first of the
+ * month, both in UTC. Day windows are a fixed number of days long and are
+ * anchored so that the most recent window ends at the instant statistics are
+ * collected as of, so for example 90 day windows give the last 90 days, the
+ * 90 days before that and so on.
+ * </p>
+ */
+public abstract class Windowing {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Weekly windows
+     */
+    public static final Windowing WEEK = new Windowing("week") {
+
+        @Override
+        public long getStart(long time, Instant now) {
+            return new DateTime(time, DateTimeZone.UTC).weekOfWeekyear().roundFloorCopy().getMillis();
+        }
+
+        @Override
+        public long getNext(long start, Instant now) {
+            return new DateTime(start, DateTimeZone.UTC).plusWeeks(1).getMillis();
+        }
+    };
+
+    /**
+     * Monthly windows
+     */
+    public static final Windowing MONTH = new Windowing("month") {
+
+        @Override
+        public long getStart(long time, Instant now) {
+            return new DateTime(time, DateTimeZone.UTC).monthOfYear().roundFloorCopy().getMillis();
+        }
+
+        @Override
+        public long getNext(long start, Instant now) {
+            return new DateTime(start, DateTimeZone.UTC).plusMonths(1).getMillis();
+        }
+    };
+
+    private final String name;
+
+    protected Windowing(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Creates windows of a fixed number of days ending at the instant
+     * statistics are collected as of
+     * 
+     * @param days
+     *            Days per window
+     * @return Windowing
+     */
+    public static Windowing days(final int days) {
+        if (days <= 0)
+            throw new IllegalArgumentException("days must be greater than zero");
+        final long length = days * DAY;
+        return new Windowing(days + (days == 1 ? " day" : " days")) {
+
+            @Override
+            public long getStart(long time, Instant now) {
+                // Windows are half open so the most recent window must end
+                // just after now in order to include it
+                long end = now.getMillis() + 1;
+                long offset = end - 1 - time;
+                long windows = offset >= 0 ? offset / length : -((-offset + length - 1) / length);
+                return end - (windows + 1) * length;
+            }
+
+            @Override
+            public long getNext(long start, Instant now) {
+                return start + length;
+            }
+        };
+    }
+
+    /**
+     * Parses a windowing
+     * 
+     * @param value
+     *            Either {@code week}, {@code month} or a number of days
+     * @return Windowing
+     */
+    public static Windowing parse(String value) {
+        if (WEEK.name.equalsIgnoreCase(value))
+            return WEEK;
+        if (MONTH.name.equalsIgnoreCase(value))
+            return MONTH;
+        try {
+            return days(Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    String.format("Window '%s' is not valid, must be week, month or a number of days", value));
+        }
+    }
+
+    /**
+     * Gets the start of the window containing a time
+     * 
+     * @param time
+     *            Time in milliseconds since the epoch
+     * @param now
+     *            Instant statistics are collected as of
+     * @return Start of the window in milliseconds since the epoch
+     */
+    public abstract long getStart(long time, Instant now);
+
+    /**
+     * Gets the start of the window following a window
+     * 
+     * @param start
+     *            Start of a window as returned by
+     *            {@link #getStart(long, Instant)}
+     * @param now
+     *            Instant statistics are collected as of
+     * @return Start of the next window in milliseconds since the epoch
+     */
+    public abstract long getNext(long start, Instant now);
+
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
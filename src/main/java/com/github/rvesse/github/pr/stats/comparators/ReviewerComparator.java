@@ -0,0 +1,38 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.comparators;
+
+import java.util.Comparator;
+
+import com.github.rvesse.github.pr.stats.collectors.ReviewerCollector;
+
+/**
+ * Orders reviewers by the number of pull requests they reviewed, most first,
+ * and then by login
+ */
+public class ReviewerComparator implements Comparator<ReviewerCollector> {
+
+    @Override
+    public int compare(ReviewerCollector o1, ReviewerCollector o2) {
+        if (o1 == o2)
+            return 0;
+
+        int c = Long.compare(o2.getPullRequests(), o1.getPullRequests());
+        if (c != 0)
+            return c;
+        return o1.getUser().getLogin().compareTo(o2.getUser().getLogin());
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.comparators;
+
+import java.util.Comparator;
+
+import com.github.rvesse.github.pr.stats.collectors.AbstractUserPullRequestCollector;
+import com.github.rvesse.github.pr.stats.report.UserMetric;
+
+/**
+ * Orders users by a metric, highest first, and then by login so that users
+ * with the same value are always ranked the same way
+ */
+public class UserRankComparator<T extends AbstractUserPullRequestCollector> implements Comparator<T> {
+
+    private final UserMetric metric;
+
+    public UserRankComparator(UserMetric metric) {
+        if (metric == null)
+            throw new IllegalArgumentException("metric cannot be null");
+        this.metric = metric;
+    }
+
+    @Override
+    public int compare(T o1, T o2) {
+        if (o1 == o2)
+            return 0;
+
+        int c = Double.compare(this.metric.get(o2), this.metric.get(o1));
+        if (c != 0)
+            return c;
+        return loginOf(o1).compareTo(loginOf(o2));
+    }
+
+    private static String loginOf(AbstractUserPullRequestCollector user) {
+        return user.getUser().getLogin() != null ? user.getUser().getLogin() : "";
+    }
+}
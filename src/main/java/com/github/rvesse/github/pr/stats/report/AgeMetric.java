@@ -0,0 +1,133 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.report;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.github.rvesse.github.pr.stats.collectors.AbstractPullRequestCollector;
+import com.github.rvesse.github.pr.stats.collectors.LongStatsCollector;
+
+/**
+ * The age statistics that are reported, in the order they are reported
+ * <p>
+ * The titles and names of the metrics include the unit ages are reported in,
+ * e.g. {@code Days to Merge} and {@code hours_to_merge}.
+ * </p>
+ */
+public enum AgeMetric {
+    DAYS_TO_MERGE("%s to Merge", "%s_to_merge"), DAYS_OPEN("%s Open", "%s_open"), DAYS_TO_CLOSE("%s to Close",
+            "%s_to_close");
+
+    /**
+     * Percentiles reported for each metric
+     */
+    static final int[] PERCENTILES = { 25, 50, 75, 100 };
+
+    private static final long[] SECOND_THRESHOLDS = { 60, 300, 3600, 14400, 86400 },
+            MINUTE_THRESHOLDS = { 15, 60, 240, 1440, 10080 }, HOUR_THRESHOLDS = { 1, 4, 24, 72, 168 },
+            DAY_THRESHOLDS = { 7, 30, 90, 180, 365 };
+
+    private final String title, name;
+
+    private AgeMetric(String title, String name) {
+        this.title = title;
+        this.name = name;
+    }
+
+    /**
+     * Gets the values for which the cumulative percentage is reported for each
+     * metric
+     * 
+     * @param unit
+     *            Unit ages are reported in
+     * @return Thresholds
+     */
+    static long[] getThresholds(TimeUnit unit) {
+        switch (unit) {
+        case SECONDS:
+            return SECOND_THRESHOLDS;
+        case MINUTES:
+            return MINUTE_THRESHOLDS;
+        case HOURS:
+            return HOUR_THRESHOLDS;
+        default:
+            return DAY_THRESHOLDS;
+        }
+    }
+
+    /**
+     * Gets the title of a unit used in human readable reports
+     * 
+     * @param unit
+     *            Unit
+     * @return Title e.g. {@code Days}
+     */
+    static String getUnitTitle(TimeUnit unit) {
+        String name = getUnitName(unit);
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Gets the name of a unit used in machine readable reports
+     * 
+     * @param unit
+     *            Unit
+     * @return Name e.g. {@code days}
+     */
+    static String getUnitName(TimeUnit unit) {
+        return unit.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the title used in human readable reports
+     * 
+     * @param unit
+     *            Unit ages are reported in
+     * @return Title
+     */
+    public String getTitle(TimeUnit unit) {
+        return String.format(this.title, getUnitTitle(unit));
+    }
+
+    /**
+     * Gets the name used in machine readable reports
+     * 
+     * @param unit
+     *            Unit ages are reported in
+     * @return Name
+     */
+    public String getName(TimeUnit unit) {
+        return String.format(this.name, getUnitName(unit));
+    }
+
+    /**
+     * Gets the statistics for this metric from a collector
+     * 
+     * @param collector
+     *            Collector
+     * @return Statistics
+     */
+    public LongStatsCollector get(AbstractPullRequestCollector collector) {
+        switch (this) {
+        case DAYS_TO_MERGE:
+            return collector.getDaysToMergeStats();
+        case DAYS_OPEN:
+            return collector.getDaysOpenStats();
+        default:
+            return collector.getDaysToCloseStats();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import com.github.rvesse.github.pr.stats.collectors.AbstractPullRequestCollector;
+import com.github.rvesse.github.pr.stats.collectors.AbstractUserPullRequestCollector;
+import com.github.rvesse.github.pr.stats.collectors.LongStatsCollector;
+import com.github.rvesse.github.pr.stats.collectors.ReviewCollector;
+import com.github.rvesse.github.pr.stats.collectors.ReviewerCollector;
+import com.github.rvesse.github.pr.stats.collectors.WindowStats;
+import com.github.rvesse.github.pr.stats.collectors.Windowing;
+
+/**
+ * Writes the report as CSV with one row for the overall statistics followed by
+ * one row per user, each row is written as soon as it is produced
+ * <p>
+ * The {@code scope} column distinguishes the overall row ({@code all}) from
+ * window ({@code window}), author ({@code user}) and merging user
+ * ({@code merging_user}) rows. For window rows the {@code total} column is
+ * the number of pull requests opened in the window and the other counts and
+ * ages are for the pull requests merged or closed in the window. User
+ * summaries are not written since they can be derived from the user rows.
+ * </p>
+ * <p>
+ * When review statistics are reported the review columns are added, these are
+ * only filled in for the review ({@code reviews}) and reviewer
+ * ({@code reviewer}) rows. For the review row the {@code total} column is the
+ * number of pull requests opened within the review period, for reviewer rows
+ * it is the number of those pull requests the reviewer reviewed.
+ * </p>
+ */
+public class CsvReportSink implements ReportSink {
+
+    private static final String SCOPE_ALL = "all", SCOPE_WINDOW = "window", SCOPE_REVIEWS = "reviews",
+            SCOPE_REVIEWER = "reviewer";
+    private static final DateTimeFormatter DATE_TIME_FORMAT = ISODateTimeFormat.dateTime().withZoneUTC();
+
+    private final CSVPrinter csv;
+    private final List<Object> row = new ArrayList<Object>();
+    private TimeUnit unit;
+    private int reviewColumns;
+
+    public CsvReportSink(Writer writer) throws IOException {
+        this.csv = new CSVPrinter(writer, CSVFormat.DEFAULT);
+    }
+
+    @Override
+    public void begin(int precision, TimeUnit unit, boolean reviews) throws IOException {
+        this.unit = unit;
+        this.row.clear();
+        this.row.add("scope");
+        this.row.add("login");
+        this.row.add("window_start");
+        this.row.add("total");
+        this.row.add("open");
+        this.row.add("open_mergeable");
+        this.row.add("merged");
+        this.row.add("closed");
+        this.row.add("self_merged");
+        for (AgeMetric metric : AgeMetric.values()) {
+            addAgeHeaders(metric.getName(this.unit), AgeMetric.getThresholds(this.unit));
+        }
+        int columns = this.row.size();
+        if (reviews) {
+            this.row.add("reviewed");
+            this.row.add("approved");
+            this.row.add("awaiting_review");
+            this.row.add("reviews");
+            this.row.add("approvals");
+            this.row.add("changes_requested");
+            for (ReviewMetric metric : ReviewMetric.values()) {
+                addAgeHeaders(metric.getName(this.unit), metric.getThresholds(this.unit));
+            }
+            addAgeHeaders(ReviewMetric.getReviewerLatencyName(this.unit), ReviewMetric.getLatencyThresholds(this.unit));
+        }
+        this.reviewColumns = this.row.size() - columns;
+        this.csv.printRecord(this.row);
+    }
+
+    private void addAgeHeaders(String name, long[] thresholds) {
+        this.row.add(name + "_count");
+        this.row.add(name + "_min");
+        this.row.add(name + "_max");
+        this.row.add(name + "_mean");
+        this.row.add(name + "_geometric_mean");
+        for (int p : AgeMetric.PERCENTILES) {
+            this.row.add(name + "_p" + p);
+        }
+        for (long value : thresholds) {
+            this.row.add(name + "_under_" + value + "_percentage");
+        }
+    }
+
+    @Override
+    public void overall(AbstractPullRequestCollector stats) throws IOException {
+        writeRow(SCOPE_ALL, stats);
+    }
+
+    @Override
+    public void beginWindows(Windowing windowing) {
+        // Nothing to do
+    }
+
+    @Override
+    public void window(WindowStats window) throws IOException {
+        this.row.clear();
+        this.row.add(SCOPE_WINDOW);
+        this.row.add(null);
+        this.row.add(DATE_TIME_FORMAT.print(window.getStart()));
+        this.row.add(window.getOpened());
+        this.row.add(null);
+        this.row.add(null);
+        this.row.add(window.getMerged());
+        this.row.add(window.getClosed());
+        this.row.add(null);
+        for (AgeMetric metric : AgeMetric.values()) {
+            switch (metric) {
+            case DAYS_TO_MERGE:
+                addAgeStats(window.getDaysToMergeStats(), AgeMetric.getThresholds(this.unit));
+                break;
+            case DAYS_TO_CLOSE:
+                addAgeStats(window.getDaysToCloseStats(), AgeMetric.getThresholds(this.unit));
+                break;
+            default:
+                addAgeStats(null, AgeMetric.getThresholds(this.unit));
+            }
+        }
+        addEmpty(this.reviewColumns);
+        this.csv.printRecord(this.row);
+    }
+
+    @Override
+    public void endWindows() throws IOException {
+        this.csv.flush();
+    }
+
+    @Override
+    public void beginReviews(ReviewCollector stats) throws IOException {
+        this.row.clear();
+        this.row.add(SCOPE_REVIEWS);
+        this.row.add(null);
+        this.row.add(null);
+        this.row.add(stats.getTotal());
+        addEmpty(5);
+        for (int i = 0; i < AgeMetric.values().length; i++) {
+            addAgeStats(null, AgeMetric.getThresholds(this.unit));
+        }
+        this.row.add(stats.getReviewed());
+        this.row.add(stats.getApproved());
+        this.row.add(stats.getAwaitingReview());
+        addEmpty(3);
+        for (ReviewMetric metric : ReviewMetric.values()) {
+            addAgeStats(metric.get(stats), metric.getThresholds(this.unit));
+        }
+        addAgeStats(null, ReviewMetric.getLatencyThresholds(this.unit));
+        this.csv.printRecord(this.row);
+    }
+
+    @Override
+    public void reviewer(ReviewerCollector stats) throws IOException {
+        this.row.clear();
+        this.row.add(SCOPE_REVIEWER);
+        this.row.add(stats.getUser().getLogin());
+        this.row.add(null);
+        this.row.add(stats.getPullRequests());
+        addEmpty(5);
+        for (int i = 0; i < AgeMetric.values().length; i++) {
+            addAgeStats(null, AgeMetric.getThresholds(this.unit));
+        }
+        addEmpty(3);
+        this.row.add(stats.getReviews());
+        this.row.add(stats.getApprovals());
+        this.row.add(stats.getChangesRequested());
+        for (ReviewMetric metric : ReviewMetric.values()) {
+            addAgeStats(null, metric.getThresholds(this.unit));
+        }
+        addAgeStats(stats.getTimeToReviewStats(), ReviewMetric.getLatencyThresholds(this.unit));
+        this.csv.printRecord(this.row);
+    }
+
+    @Override
+    public void endReviews() throws IOException {
+        this.csv.flush();
+    }
+
+    @Override
+    public void userSummary(UserSummary summary) {
+        // Derivable from the user rows
+    }
+
+    @Override
+    public void beginUsers(UserKind kind) {
+        // Nothing to do
+    }
+
+    @Override
+    public void user(UserKind kind, AbstractUserPullRequestCollector stats) throws IOException {
+        writeRow(kind.getSingularName(), stats);
+    }
+
+    @Override
+    public void endUsers(UserKind kind) throws IOException {
+        this.csv.flush();
+    }
+
+    @Override
+    public void end() throws IOException {
+        this.csv.flush();
+    }
+
+    private void writeRow(String scope, AbstractPullRequestCollector stats) throws IOException {
+        this.row.clear();
+        this.row.add(scope);
+        if (stats instanceof AbstractUserPullRequestCollector) {
+            this.row.add(((AbstractUserPullRequestCollector) stats).getUser().getLogin());
+        } else {
+            this.row.add(null);
+        }
+        this.row.add(null);
+        this.row.add(stats.getTotal());
+        this.row.add(stats.getOpen());
+        this.row.add(stats.getOpenMergeable());
+        this.row.add(stats.getMerged());
+        this.row.add(stats.getClosed());
+        if (stats instanceof AbstractUserPullRequestCollector) {
+            this.row.add(((AbstractUserPullRequestCollector) stats).getSelfMerged());
+        } else {
+            this.row.add(null);
+        }
+        for (AgeMetric metric : AgeMetric.values()) {
+            addAgeStats(metric.get(stats), AgeMetric.getThresholds(this.unit));
+        }
+        addEmpty(this.reviewColumns);
+        this.csv.printRecord(this.row);
+    }
+
+    private void addEmpty(int columns) {
+        for (int i = 0; i < columns; i++) {
+            this.row.add(null);
+        }
+    }
+
+    private void addAgeStats(LongStatsCollector stats, long[] thresholds) {
+        this.row.add(stats != null ? stats.getCount() : null);
+        boolean empty = stats == null || stats.getCount() == 0;
+        this.row.add(empty ? null : stats.getMin());
+        this.row.add(empty ? null : stats.getMax());
+        this.row.add(empty ? null : stats.getMean());
+        this.row.add(empty ? null : stats.getGeometricMean());
+        for (int p : AgeMetric.PERCENTILES) {
+            this.row.add(empty ? null : stats.getPercentile(p));
+        }
+        for (long value : thresholds) {
+            this.row.add(empty ? null : stats.getCumulativePercentage(value) * 100);
+        }
+    }
+}
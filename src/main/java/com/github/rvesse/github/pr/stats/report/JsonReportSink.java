@@ -0,0 +1,248 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import com.github.rvesse.github.pr.stats.collectors.AbstractPullRequestCollector;
+import com.github.rvesse.github.pr.stats.collectors.AbstractUserPullRequestCollector;
+import com.github.rvesse.github.pr.stats.collectors.LongStatsCollector;
+import com.github.rvesse.github.pr.stats.collectors.ReviewCollector;
+import com.github.rvesse.github.pr.stats.collectors.ReviewerCollector;
+import com.github.rvesse.github.pr.stats.collectors.WindowStats;
+import com.github.rvesse.github.pr.stats.collectors.Windowing;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes the report as a single JSON object, the object is streamed as it is
+ * produced so the report is never held in memory
+ */
+public class JsonReportSink implements ReportSink {
+
+    private static final DateTimeFormatter DATE_TIME_FORMAT = ISODateTimeFormat.dateTime().withZoneUTC();
+
+    private final JsonWriter json;
+    private TimeUnit unit;
+
+    public JsonReportSink(Writer writer) {
+        this.json = new JsonWriter(writer);
+        this.json.setIndent("  ");
+    }
+
+    @Override
+    public void begin(int precision, TimeUnit unit, boolean reviews) throws IOException {
+        this.unit = unit;
+        this.json.beginObject();
+        this.json.name("precision").value(precision);
+        this.json.name("approximate").value(precision > 0);
+        this.json.name("time_unit").value(AgeMetric.getUnitName(unit));
+    }
+
+    @Override
+    public void overall(AbstractPullRequestCollector stats) throws IOException {
+        this.json.name("summary");
+        writeStats(stats);
+    }
+
+    @Override
+    public void beginWindows(Windowing windowing) throws IOException {
+        this.json.name("windows");
+        this.json.beginObject();
+        this.json.name("window").value(windowing.getName());
+        this.json.name("buckets");
+        this.json.beginArray();
+    }
+
+    @Override
+    public void window(WindowStats window) throws IOException {
+        this.json.beginObject();
+        this.json.name("start").value(DATE_TIME_FORMAT.print(window.getStart()));
+        this.json.name("end").value(DATE_TIME_FORMAT.print(window.getEnd()));
+        this.json.name("opened").value(window.getOpened());
+        this.json.name("merged").value(window.getMerged());
+        this.json.name("closed").value(window.getClosed());
+        this.json.name(AgeMetric.DAYS_TO_MERGE.getName(this.unit));
+        writeAgeStats(window.getDaysToMergeStats(), AgeMetric.getThresholds(this.unit));
+        this.json.name(AgeMetric.DAYS_TO_CLOSE.getName(this.unit));
+        writeAgeStats(window.getDaysToCloseStats(), AgeMetric.getThresholds(this.unit));
+        this.json.endObject();
+    }
+
+    @Override
+    public void endWindows() throws IOException {
+        this.json.endArray();
+        this.json.endObject();
+        this.json.flush();
+    }
+
+    @Override
+    public void beginReviews(ReviewCollector stats) throws IOException {
+        this.json.name("reviews");
+        this.json.beginObject();
+        this.json.name("days").value(stats.getDays());
+        this.json.name("total").value(stats.getTotal());
+        this.json.name("reviewed").value(stats.getReviewed());
+        this.json.name("approved").value(stats.getApproved());
+        this.json.name("awaiting_review").value(stats.getAwaitingReview());
+        for (ReviewMetric metric : ReviewMetric.values()) {
+            this.json.name(metric.getName(this.unit));
+            writeAgeStats(metric.get(stats), metric.getThresholds(this.unit));
+        }
+        this.json.name("reviewers");
+        this.json.beginArray();
+    }
+
+    @Override
+    public void reviewer(ReviewerCollector stats) throws IOException {
+        this.json.beginObject();
+        this.json.name("login").value(stats.getUser().getLogin());
+        this.json.name("id").value(stats.getUser().getId());
+        this.json.name("pull_requests").value(stats.getPullRequests());
+        this.json.name("reviews").value(stats.getReviews());
+        this.json.name("approvals").value(stats.getApprovals());
+        this.json.name("changes_requested").value(stats.getChangesRequested());
+        this.json.name(ReviewMetric.getReviewerLatencyName(this.unit));
+        writeAgeStats(stats.getTimeToReviewStats(), ReviewMetric.getLatencyThresholds(this.unit));
+        this.json.endObject();
+    }
+
+    @Override
+    public void endReviews() throws IOException {
+        this.json.endArray();
+        this.json.endObject();
+        this.json.flush();
+    }
+
+    @Override
+    public void userSummary(UserSummary summary) throws IOException {
+        this.json.name(summary.getKind().getSingularName() + "_summary");
+        this.json.beginObject();
+        this.json.name("users").value(summary.getUsers());
+        this.json.name("approximate").value(summary.isApproximate());
+        if (summary.getUsers() > 0) {
+            this.json.name("max").value(summary.getMax());
+            writeLogins("max_users", summary.getMaxUsers());
+            if (!summary.isApproximate()) {
+                this.json.name("min").value(summary.getMin());
+                writeLogins("min_users", summary.getMinUsers());
+            }
+            this.json.name("average").value(summary.getAverage());
+        }
+        this.json.endObject();
+    }
+
+    private void writeLogins(String name, Iterable<String> logins) throws IOException {
+        this.json.name(name);
+        this.json.beginArray();
+        for (String login : logins) {
+            this.json.value(login);
+        }
+        this.json.endArray();
+    }
+
+    @Override
+    public void beginUsers(UserKind kind) throws IOException {
+        this.json.name(kind.getName());
+        this.json.beginArray();
+    }
+
+    @Override
+    public void user(UserKind kind, AbstractUserPullRequestCollector stats) throws IOException {
+        writeStats(stats);
+    }
+
+    @Override
+    public void endUsers(UserKind kind) throws IOException {
+        this.json.endArray();
+        this.json.flush();
+    }
+
+    @Override
+    public void end() throws IOException {
+        this.json.endObject();
+        this.json.flush();
+    }
+
+    private void writeStats(AbstractPullRequestCollector stats) throws IOException {
+        this.json.beginObject();
+        if (stats instanceof AbstractUserPullRequestCollector) {
+            AbstractUserPullRequestCollector user = (AbstractUserPullRequestCollector) stats;
+            this.json.name("login").value(user.getUser().getLogin());
+            this.json.name("id").value(user.getUser().getId());
+        }
+        this.json.name("total").value(stats.getTotal());
+        this.json.name("open").value(stats.getOpen());
+        this.json.name("open_mergeable").value(stats.getOpenMergeable());
+        this.json.name("merged").value(stats.getMerged());
+        this.json.name("closed").value(stats.getClosed());
+        if (stats instanceof AbstractUserPullRequestCollector)
+            this.json.name("self_merged").value(((AbstractUserPullRequestCollector) stats).getSelfMerged());
+        if (stats.getTotal() > 0) {
+            this.json.name("open_percentage").value(stats.getOpenPercentage() * 100);
+            this.json.name("merged_percentage").value(stats.getMergedPercentage() * 100);
+            this.json.name("closed_percentage").value(stats.getClosedPercentage() * 100);
+        }
+        for (AgeMetric metric : AgeMetric.values()) {
+            this.json.name(metric.getName(this.unit));
+            writeAgeStats(metric.get(stats), AgeMetric.getThresholds(this.unit));
+        }
+        this.json.endObject();
+    }
+
+    private void writeAgeStats(LongStatsCollector stats, long[] thresholds) throws IOException {
+        this.json.beginObject();
+        this.json.name("count").value(stats.getCount());
+        if (stats.getCount() > 0) {
+            this.json.name("min").value(stats.getMin());
+            this.json.name("max").value(stats.getMax());
+            this.json.name("mean").value(stats.getMean());
+            this.json.name("geometric_mean");
+            writeDouble(stats.getGeometricMean());
+            this.json.name("modes");
+            this.json.beginArray();
+            for (long mode : stats.getModes()) {
+                this.json.value(mode);
+            }
+            this.json.endArray();
+            this.json.name("percentiles");
+            this.json.beginObject();
+            for (int p : AgeMetric.PERCENTILES) {
+                this.json.name(Integer.toString(p)).value(stats.getPercentile(p));
+            }
+            this.json.endObject();
+            this.json.name("under_percentage");
+            this.json.beginObject();
+            for (long value : thresholds) {
+                this.json.name(Long.toString(value)).value(stats.getCumulativePercentage(value) * 100);
+            }
+            this.json.endObject();
+        }
+        this.json.endObject();
+    }
+
+    private void writeDouble(double value) throws IOException {
+        // JSON has no representation for NaN or infinities
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            this.json.nullValue();
+        } else {
+            this.json.value(value);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.report;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The available report formats
+ */
+public enum ReportFormat {
+    TEXT, JSON, CSV;
+
+    /**
+     * Creates a sink that writes a report in this format
+     * 
+     * @param writer
+     *            Writer to which the report is written, the sink does not
+     *            close the writer
+     * @return Sink
+     * @throws IOException
+     *             Thrown if the sink cannot be created
+     */
+    public ReportSink createSink(Writer writer) throws IOException {
+        switch (this) {
+        case JSON:
+            return new JsonReportSink(writer);
+        case CSV:
+            return new CsvReportSink(writer);
+        default:
+            return new TextReportSink(writer);
+        }
+    }
+}
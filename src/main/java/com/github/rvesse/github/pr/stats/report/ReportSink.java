@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.report;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.github.rvesse.github.pr.stats.collectors.AbstractPullRequestCollector;
+import com.github.rvesse.github.pr.stats.collectors.AbstractUserPullRequestCollector;
+import com.github.rvesse.github.pr.stats.collectors.ReviewCollector;
+import com.github.rvesse.github.pr.stats.collectors.ReviewerCollector;
+import com.github.rvesse.github.pr.stats.collectors.WindowStats;
+import com.github.rvesse.github.pr.stats.collectors.Windowing;
+
+/**
+ * A destination for the statistics report
+ * <p>
+ * The report is delivered as a sequence of calls,
+ * {@link #begin(int, TimeUnit, boolean)} first, then the overall statistics,
+ * then optionally the statistics for each window of time, then if requested
+ * the review statistics followed by the statistics for each reviewer, then for
+ * each kind of user an optional summary followed by optionally the statistics
+ * for each user and finally {@link #end()}. Sinks write each part as it is
+ * delivered rather than accumulating the report so the memory used does not
+ * depend on the number of users reported.
+ * </p>
+ */
+public interface ReportSink {
+
+    /**
+     * Begins the report
+     * 
+     * @param precision
+     *            Number of significant digits to which age distributions are
+     *            approximate, zero if exact
+     * @param unit
+     *            Unit ages and review latencies are reported in
+     * @param reviews
+     *            Whether the report includes review statistics
+     * @throws IOException
+     *             Thrown if the report cannot be written
+     */
+    void begin(int precision, TimeUnit unit, boolean reviews) throws IOException;
+
+    /**
+     * Reports the overall statistics
+     * 
+     * @param stats
+     *            Overall statistics
+     * @throws IOException
+     *             Thrown if the report cannot be written
+     */
+    void overall(AbstractPullRequestCollector stats) throws IOException;
+
+    /**
+     * Begins reporting the statistics for each window of time
+     * 
+     * @param windowing
+     *            Windowing
+     * @throws IOException
+     *             Thrown if the report cannot be written
+     */
+    void beginWindows(Windowing windowing) throws IOException;
+
+    /**
+     * Reports the statistics for a window of time
+     * 
+     * @param window
+     *            Window statistics
+     * @throws IOException
+     *             Thrown if the report cannot be written
+     */
+    void window(WindowStats window) throws IOException;
+
+    /**
+     * Ends reporting the statistics for each window of time
+     * 
+     * @throws IOException
+     *             Thrown if the report cannot be written
+     */
+    void endWindows() throws IOException;
+
+    /**
+     * Begins reporting the review statistics, the statistics for each reviewer
+     * follow
+     * 
+     * @param stats
+     *            Review statistics
+     * @throws IOException
+     *             Thrown if the report cannot be written
+     */
+    void beginReviews(ReviewCollector stats) throws IOException;
+
+    /**
+     * Reports the statistics for a reviewer
+     * 
+     * @param stats
+     *            Reviewer statistics
+     * @throws IOException
+     *             Thrown if the report cannot be written
+     */
+    void reviewer(ReviewerCollector stats) throws IOException;
+
+    /**
+     * Ends reporting the review statistics
+     * 
+     * @throws IOException
+     *             Thrown if the report cannot be written
+     */
+    void endReviews() throws IOException;
+
+    /**
+     * Reports a summary of a kind of users
+     * 
+     * @param summary
+     *            Summary
+     * @throws IOException
+     *             Thrown if the report cannot be written
+     */
+    void userSummary(UserSummary summary) throws IOException;
+
+    /**
+     * Begins reporting the statistics for each user of a kind
+     * 
+     * @param kind
+     *            Kind of users
+     * @throws IOException
+     *             Thrown if the report cannot be written
+     */
+    void beginUsers(UserKind kind) throws IOException;
+
+    /**
+     * Reports the statistics for a user
+     * 
+     * @param kind
+     *            Kind of user
+     * @param stats
+     *            User statistics
+     * @throws IOException
+     *             Thrown if the report cannot be written
+     */
+    void user(UserKind kind, AbstractUserPullRequestCollector stats) throws IOException;
+
+    /**
+     * Ends reporting the statistics for each user of a kind
+     * 
+     * @param kind
+     *            Kind of users
+     * @throws IOException
+     *             Thrown if the report cannot be written
+     */
+    void endUsers(UserKind kind) throws IOException;
+
+    /**
+     * Ends the report, flushing any buffered output
+     * 
+     * @throws IOException
+     *             Thrown if the report cannot be written
+     */
+    void end() throws IOException;
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.report;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.rvesse.github.pr.stats.collectors.LongStatsCollector;
+import com.github.rvesse.github.pr.stats.collectors.ReviewCollector;
+
+/**
+ * The review statistics that are reported, in the order they are reported
+ * <p>
+ * Review latencies are reported in the same unit as ages and their titles and
+ * names include that unit, review rounds are counts so do not.
+ * </p>
+ */
+public enum ReviewMetric {
+    TIME_TO_FIRST_REVIEW("%s to First Review", "%s_to_first_review"), TIME_TO_APPROVAL("%s to Approval",
+            "%s_to_approval"), REVIEW_ROUNDS("Review Rounds", "review_rounds");
+
+    private static final long[] SECOND_THRESHOLDS = { 60, 300, 3600, 14400, 86400 },
+            MINUTE_THRESHOLDS = { 15, 60, 240, 1440, 10080 }, HOUR_THRESHOLDS = { 1, 4, 24, 72, 168 },
+            DAY_THRESHOLDS = { 1, 3, 7, 14, 30 }, ROUND_THRESHOLDS = { 1, 2, 3, 5 };
+
+    private final String title, name;
+
+    private ReviewMetric(String title, String name) {
+        this.title = title;
+        this.name = name;
+    }
+
+    /**
+     * Gets whether this metric is a latency, and so reported in the same unit
+     * as ages
+     * 
+     * @return True if a latency
+     */
+    boolean isLatency() {
+        return this != REVIEW_ROUNDS;
+    }
+
+    /**
+     * Gets the title used in human readable reports
+     * 
+     * @param unit
+     *            Unit latencies are reported in
+     * @return Title
+     */
+    public String getTitle(TimeUnit unit) {
+        return isLatency() ? String.format(this.title, AgeMetric.getUnitTitle(unit)) : this.title;
+    }
+
+    /**
+     * Gets the name used in machine readable reports
+     * 
+     * @param unit
+     *            Unit latencies are reported in
+     * @return Name
+     */
+    public String getName(TimeUnit unit) {
+        return isLatency() ? String.format(this.name, AgeMetric.getUnitName(unit)) : this.name;
+    }
+
+    /**
+     * Gets the values for which the cumulative percentage is reported
+     * 
+     * @param unit
+     *            Unit latencies are reported in
+     * @return Thresholds
+     */
+    long[] getThresholds(TimeUnit unit) {
+        if (!isLatency())
+            return ROUND_THRESHOLDS;
+        return getLatencyThresholds(unit);
+    }
+
+    /**
+     * Gets the values for which the cumulative percentage of a review latency
+     * is reported
+     * 
+     * @param unit
+     *            Unit latencies are reported in
+     * @return Thresholds
+     */
+    static long[] getLatencyThresholds(TimeUnit unit) {
+        switch (unit) {
+        case SECONDS:
+            return SECOND_THRESHOLDS;
+        case MINUTES:
+            return MINUTE_THRESHOLDS;
+        case HOURS:
+            return HOUR_THRESHOLDS;
+        default:
+            return DAY_THRESHOLDS;
+        }
+    }
+
+    /**
+     * Gets the name used in machine readable reports for the time a reviewer
+     * took to first review pull requests
+     * 
+     * @param unit
+     *            Unit latencies are reported in
+     * @return Name
+     */
+    static String getReviewerLatencyName(TimeUnit unit) {
+        return AgeMetric.getUnitName(unit) + "_to_review";
+    }
+
+    /**
+     * Gets the statistics for this metric from a collector
+     * 
+     * @param collector
+     *            Collector
+     * @return Statistics
+     */
+    public LongStatsCollector get(ReviewCollector collector) {
+        switch (this) {
+        case TIME_TO_FIRST_REVIEW:
+            return collector.getTimeToFirstReviewStats();
+        case TIME_TO_APPROVAL:
+            return collector.getTimeToApprovalStats();
+        default:
+            return collector.getReviewRoundsStats();
+        }
+    }
+}
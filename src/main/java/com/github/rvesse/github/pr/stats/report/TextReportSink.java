@@ -0,0 +1,256 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.report;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import com.github.rvesse.github.pr.stats.collectors.AbstractPullRequestCollector;
+import com.github.rvesse.github.pr.stats.collectors.AbstractUserPullRequestCollector;
+import com.github.rvesse.github.pr.stats.collectors.LongStatsCollector;
+import com.github.rvesse.github.pr.stats.collectors.ReviewCollector;
+import com.github.rvesse.github.pr.stats.collectors.ReviewerCollector;
+import com.github.rvesse.github.pr.stats.collectors.WindowStats;
+import com.github.rvesse.github.pr.stats.collectors.Windowing;
+
+/**
+ * Writes the report as human readable text
+ */
+public class TextReportSink implements ReportSink {
+
+    private static final DateTimeFormatter DATE_FORMAT = ISODateTimeFormat.date().withZoneUTC();
+
+    private final PrintWriter out;
+    private int precision;
+    private TimeUnit unit;
+
+    public TextReportSink(Writer writer) {
+        this.out = writer instanceof PrintWriter ? (PrintWriter) writer : new PrintWriter(writer);
+    }
+
+    @Override
+    public void begin(int precision, TimeUnit unit, boolean reviews) {
+        this.precision = precision;
+        this.unit = unit;
+    }
+
+    @Override
+    public void overall(AbstractPullRequestCollector stats) {
+        // Basic stats
+        outputBasicStatus(stats);
+        this.out.println();
+
+        // Age Stats
+        if (this.precision > 0) {
+            this.out.println("Age distributions are approximate to " + this.precision + " significant digits");
+            this.out.println();
+        }
+        for (AgeMetric metric : AgeMetric.values()) {
+            outputAgeStats(metric.get(stats), metric.getTitle(this.unit), AgeMetric.getThresholds(this.unit));
+            this.out.println();
+        }
+    }
+
+    @Override
+    public void beginWindows(Windowing windowing) {
+        this.out.println("Trends per " + windowing.getName() + ":");
+    }
+
+    @Override
+    public void window(WindowStats window) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("  ").append(DATE_FORMAT.print(window.getStart())).append(": Opened ")
+                .append(window.getOpened()).append(", Merged ").append(window.getMerged()).append(", Closed ")
+                .append(window.getClosed());
+        if (window.getMerged() > 0)
+            builder.append(", Median ").append(AgeMetric.DAYS_TO_MERGE.getTitle(this.unit)).append(' ')
+                    .append((long) window.getDaysToMergeStats().getPercentile(50));
+        if (window.getClosed() > 0)
+            builder.append(", Median ").append(AgeMetric.DAYS_TO_CLOSE.getTitle(this.unit)).append(' ')
+                    .append((long) window.getDaysToCloseStats().getPercentile(50));
+        this.out.println(builder);
+    }
+
+    @Override
+    public void endWindows() throws IOException {
+        this.out.println();
+        checkError();
+    }
+
+    @Override
+    public void beginReviews(ReviewCollector stats) {
+        this.out.println("Reviews of Pull Requests Opened in the Last " + stats.getDays() + " Days:");
+        this.out.println("Total Pull Requests: " + stats.getTotal());
+        if (stats.getTotal() > 0) {
+            this.out.println("Reviewed Pull Requests: " + stats.getReviewed());
+            this.out.println("Approved Pull Requests: " + stats.getApproved());
+            this.out.println("Pull Requests Awaiting Review: " + stats.getAwaitingReview());
+        }
+        this.out.println();
+        for (ReviewMetric metric : ReviewMetric.values()) {
+            LongStatsCollector collector = metric.get(stats);
+            if (collector.getCount() == 0)
+                continue;
+            outputAgeStats(collector, metric.getTitle(this.unit), metric.getThresholds(this.unit));
+            this.out.println();
+        }
+    }
+
+    @Override
+    public void reviewer(ReviewerCollector stats) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(stats.getUser().getLogin()).append(": Reviewed ").append(stats.getPullRequests())
+                .append(" Pull Requests, Reviews ").append(stats.getReviews()).append(", Approvals ")
+                .append(stats.getApprovals()).append(", Changes Requested ").append(stats.getChangesRequested());
+        if (stats.getTimeToReviewStats().getCount() > 0)
+            builder.append(", Median ").append(AgeMetric.getUnitTitle(this.unit)).append(" to Review ")
+                    .append((long) stats.getTimeToReviewStats().getPercentile(50));
+        this.out.println(builder);
+    }
+
+    @Override
+    public void endReviews() throws IOException {
+        this.out.println();
+        checkError();
+    }
+
+    @Override
+    public void userSummary(UserSummary summary) {
+        boolean merging = summary.getKind() == UserKind.MERGERS;
+        this.out.println((merging ? "Total Merging Users" : "Total Users")
+                + (summary.isApproximate() ? " (Approximate): " : ": ") + summary.getUsers());
+        if (summary.getUsers() > 0) {
+            String merged = merging ? "Merged " : "";
+            this.out.println(
+                    "Max Pull Requests " + merged + "by User: " + summary.getMax() + " " + summary.getMaxUsers());
+            if (!summary.isApproximate())
+                this.out.println(
+                        "Min Pull Requests " + merged + "by User: " + summary.getMin() + " " + summary.getMinUsers());
+            this.out.println("Average Pull Requests " + merged + "per User: " + summary.getAverage());
+        }
+        this.out.println();
+    }
+
+    @Override
+    public void beginUsers(UserKind kind) {
+        // Nothing to do
+    }
+
+    @Override
+    public void user(UserKind kind, AbstractUserPullRequestCollector stats) {
+        this.out.println(stats.getUser().getLogin());
+        outputBasicStatus(stats);
+        outputPercentage(stats.getSelfMergedPercentage(), "Self Merged Pull Requests");
+        for (AgeMetric metric : AgeMetric.values()) {
+            outputAgeStats(metric.get(stats), metric.getTitle(this.unit), null);
+        }
+        this.out.println();
+    }
+
+    @Override
+    public void endUsers(UserKind kind) throws IOException {
+        checkError();
+    }
+
+    @Override
+    public void end() throws IOException {
+        this.out.flush();
+        checkError();
+    }
+
+    private void checkError() throws IOException {
+        // PrintWriter swallows errors so surface them, e.g. a closed pipe
+        if (this.out.checkError())
+            throw new IOException("Failed to write report");
+    }
+
+    private void outputBasicStatus(AbstractPullRequestCollector collector) {
+        if (collector.getTotal() == 0)
+            return;
+        this.out.println("Total Pull Requests: " + collector.getTotal());
+        if (collector.getMerged() > 0) {
+            this.out.println("Merged Pull Requests: " + collector.getMerged());
+        }
+        if (collector.getOpen() > 0) {
+            this.out.println("Open Pull Requests: " + collector.getOpen());
+            this.out.println("Open Mergeable Pull Requests: " + collector.getOpenMergeable());
+        }
+        if (collector.getClosed() > 0) {
+            this.out.println("Closed Pull Requests: " + collector.getClosed());
+        }
+        if (collector.getMerged() > 0) {
+            outputPercentage(collector.getMergedPercentage(), "Merged Pull Requests");
+        }
+        if (collector.getOpen() > 0) {
+            outputPercentage(collector.getOpenPercentage(), "Open Pull Requests");
+        }
+        if (collector.getClosed() > 0) {
+            outputPercentage(collector.getClosedPercentage(), "Closed Pull Requests");
+        }
+    }
+
+    private void outputAgeStats(LongStatsCollector collector, String metric, long[] thresholds) {
+        if (collector.getCount() == 0)
+            return;
+
+        // Present stats
+        this.out.println("Minimum " + metric + ": " + collector.getMin());
+        this.out.println("Maximum " + metric + ": " + collector.getMax());
+        this.out.println("Average (Arithmetic Mean) " + metric + ": " + (long) collector.getMean());
+        this.out.println("Average (Geometric Mean) " + metric + ": " + (long) collector.getGeometricMean());
+
+        if (thresholds != null) {
+            long[] modes = collector.getModes();
+            if (modes != null)
+                this.out.println("Most Popular " + metric + ": " + toPrintableList(modes));
+            this.out.println("Cumulative Frequency:");
+            for (int p : AgeMetric.PERCENTILES) {
+                outputPercentile(collector, p, metric);
+            }
+            for (long value : thresholds) {
+                outputCumulativePrecentage(collector, value, metric);
+            }
+        }
+    }
+
+    private void outputPercentage(double percentage, String metric) {
+        this.out.println("Percentage " + metric + ": " + (int) (percentage * 100) + "%");
+    }
+
+    private void outputPercentile(LongStatsCollector collector, int p, String metric) {
+        long value = (long) collector.getPercentile((double) p);
+        this.out.println("  " + p + "% (" + value + " " + metric + "): " + collector.getCumulativeFrequency(value));
+    }
+
+    private void outputCumulativePrecentage(LongStatsCollector collector, long value, String metric) {
+        this.out.println("Under " + value + " " + metric + ": "
+                + (long) (collector.getCumulativePercentage(value) * 100) + "%");
+    }
+
+    private String toPrintableList(long[] values) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                builder.append(',');
+            builder.append(values[i]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.report;
+
+/**
+ * The kinds of users statistics are reported for
+ */
+public enum UserKind {
+    /**
+     * Users who opened pull requests
+     */
+    AUTHORS("users", "user"),
+    /**
+     * Users who merged pull requests
+     */
+    MERGERS("merging_users", "merging_user");
+
+    private final String name, singularName;
+
+    private UserKind(String name, String singularName) {
+        this.name = name;
+        this.singularName = singularName;
+    }
+
+    /**
+     * Gets the name used for this kind of users in machine readable reports
+     * 
+     * @return Name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the name used for a single user of this kind in machine readable
+     * reports
+     * 
+     * @return Singular name
+     */
+    public String getSingularName() {
+        return this.singularName;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.report;
+
+import java.util.Locale;
+
+import com.github.rvesse.github.pr.stats.collectors.AbstractUserPullRequestCollector;
+
+/**
+ * The per-user statistics by which users may be ranked
+ */
+public enum UserMetric {
+    TOTAL, OPEN, OPEN_MERGEABLE, MERGED, CLOSED, SELF_MERGED, MERGED_PERCENTAGE, SELF_MERGED_PERCENTAGE;
+
+    /**
+     * Gets the name used on the command line and in machine readable reports
+     * 
+     * @return Name
+     */
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the value of this metric for a user
+     * 
+     * @param stats
+     *            User statistics
+     * @return Value
+     */
+    public double get(AbstractUserPullRequestCollector stats) {
+        switch (this) {
+        case TOTAL:
+            return stats.getTotal();
+        case OPEN:
+            return stats.getOpen();
+        case OPEN_MERGEABLE:
+            return stats.getOpenMergeable();
+        case MERGED:
+            return stats.getMerged();
+        case CLOSED:
+            return stats.getClosed();
+        case SELF_MERGED:
+            return stats.getSelfMerged();
+        case MERGED_PERCENTAGE:
+            return stats.getMergedPercentage();
+        default:
+            return stats.getSelfMergedPercentage();
+        }
+    }
+
+    /**
+     * Parses a metric from its name
+     * 
+     * @param name
+     *            Name e.g. {@code self_merged}
+     * @return Metric
+     */
+    public static UserMetric parse(String name) {
+        for (UserMetric metric : values()) {
+            if (metric.getName().equals(name))
+                return metric;
+        }
+        throw new IllegalArgumentException("Unknown user metric " + name);
+    }
+}
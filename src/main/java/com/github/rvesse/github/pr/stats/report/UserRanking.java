@@ -0,0 +1,89 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.report;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.github.rvesse.github.pr.stats.collectors.AbstractUserPullRequestCollector;
+import com.github.rvesse.github.pr.stats.comparators.ReversedComparator;
+import com.github.rvesse.github.pr.stats.comparators.UserRankComparator;
+
+/**
+ * Selects the users ranked highest by a metric
+ * <p>
+ * Users are selected in a single pass keeping only the best users seen so far
+ * in a bounded heap, so selecting the top few of many thousands of users does
+ * not sort every user. Users with the same value are ranked by login.
+ * </p>
+ */
+public class UserRanking<T extends AbstractUserPullRequestCollector> {
+
+    private final UserMetric metric;
+    private final int limit;
+    private final Comparator<T> comparator;
+
+    /**
+     * Creates a new ranking
+     * 
+     * @param metric
+     *            Metric to rank by
+     * @param limit
+     *            Maximum number of users to select
+     */
+    public UserRanking(UserMetric metric, int limit) {
+        if (limit <= 0)
+            throw new IllegalArgumentException("limit must be greater than zero");
+        this.metric = metric;
+        this.limit = limit;
+        this.comparator = new UserRankComparator<T>(metric);
+    }
+
+    public UserMetric getMetric() {
+        return this.metric;
+    }
+
+    public int getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * Selects the highest ranked users
+     * 
+     * @param users
+     *            Users
+     * @return At most the limit users, highest ranked first
+     */
+    public List<T> select(Collection<T> users) {
+        // The head of the heap is the lowest ranked of the users kept
+        PriorityQueue<T> heap = new PriorityQueue<T>(Math.min(this.limit, users.size()) + 1,
+                new ReversedComparator<T>(this.comparator));
+        for (T user : users) {
+            if (heap.size() < this.limit) {
+                heap.add(user);
+            } else if (this.comparator.compare(user, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(user);
+            }
+        }
+        List<T> top = new ArrayList<T>(heap);
+        Collections.sort(top, this.comparator);
+        return top;
+    }
+}
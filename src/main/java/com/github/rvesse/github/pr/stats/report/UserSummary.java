@@ -0,0 +1,185 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.rvesse.github.pr.stats.collectors.AbstractPullRequestCollector;
+import com.github.rvesse.github.pr.stats.collectors.AbstractUserPullRequestCollector;
+
+/**
+ * A summary of the users of a kind, for authors the summary is of pull
+ * requests opened and for merging users of pull requests merged
+ */
+public class UserSummary {
+
+    private final UserKind kind;
+    private final long users;
+    private final long max, min, average;
+    private final List<String> maxUsers, minUsers;
+    private final boolean approximate;
+
+    public UserSummary(UserKind kind, long users, long max, List<String> maxUsers, long min, List<String> minUsers,
+            long average) {
+        this(kind, users, max, maxUsers, min, minUsers, average, false);
+    }
+
+    /**
+     * Creates a new summary
+     * 
+     * @param kind
+     *            Kind of users
+     * @param users
+     *            Number of users
+     * @param max
+     *            Most pull requests of any user
+     * @param maxUsers
+     *            Users with the most pull requests
+     * @param min
+     *            Fewest pull requests of any user, ignored if approximate
+     * @param minUsers
+     *            Users with the fewest pull requests, ignored if approximate
+     * @param average
+     *            Average pull requests per user
+     * @param approximate
+     *            Whether the number of users is an estimate, in which case
+     *            the users with the fewest pull requests are unknown
+     */
+    public UserSummary(UserKind kind, long users, long max, List<String> maxUsers, long min, List<String> minUsers,
+            long average, boolean approximate) {
+        this.kind = kind;
+        this.users = users;
+        this.approximate = approximate;
+        this.max = max;
+        this.maxUsers = Collections.unmodifiableList(maxUsers);
+        this.min = min;
+        this.minUsers = Collections.unmodifiableList(minUsers);
+        this.average = average;
+    }
+
+    /**
+     * Summarises the users of a kind
+     * 
+     * @param kind
+     *            Kind of users
+     * @param overall
+     *            Overall statistics
+     * @param users
+     *            Statistics for each user
+     * @return Summary
+     */
+    public static UserSummary summarise(UserKind kind, AbstractPullRequestCollector overall,
+            List<? extends AbstractUserPullRequestCollector> users) {
+        long max = Long.MIN_VALUE, min = Long.MAX_VALUE;
+        for (AbstractUserPullRequestCollector user : users) {
+            long value = valueOf(kind, user);
+            max = Math.max(max, value);
+            min = Math.min(min, value);
+        }
+        List<String> maxUsers = new ArrayList<String>(), minUsers = new ArrayList<String>();
+        for (AbstractUserPullRequestCollector user : users) {
+            long value = valueOf(kind, user);
+            if (value == max)
+                maxUsers.add(user.getUser().getLogin());
+            if (value == min)
+                minUsers.add(user.getUser().getLogin());
+        }
+        if (users.isEmpty())
+            return new UserSummary(kind, 0, 0, maxUsers, 0, minUsers, 0);
+        return new UserSummary(kind, users.size(), max, maxUsers, min, minUsers, valueOf(kind, overall) / users.size());
+    }
+
+    /**
+     * Summarises the users of a kind when users were tracked approximately,
+     * the users with the most pull requests are found amongst the most
+     * frequent users for which statistics were kept
+     * 
+     * @param kind
+     *            Kind of users
+     * @param overall
+     *            Overall statistics
+     * @param users
+     *            Statistics for the most frequent users
+     * @param distinctUsers
+     *            Estimated number of distinct users
+     * @return Summary
+     */
+    public static UserSummary summariseApproximate(UserKind kind, AbstractPullRequestCollector overall,
+            List<? extends AbstractUserPullRequestCollector> users, long distinctUsers) {
+        long max = Long.MIN_VALUE;
+        for (AbstractUserPullRequestCollector user : users) {
+            max = Math.max(max, valueOf(kind, user));
+        }
+        List<String> maxUsers = new ArrayList<String>();
+        for (AbstractUserPullRequestCollector user : users) {
+            if (valueOf(kind, user) == max)
+                maxUsers.add(user.getUser().getLogin());
+        }
+        List<String> minUsers = Collections.emptyList();
+        if (users.isEmpty() || distinctUsers <= 0)
+            return new UserSummary(kind, 0, 0, maxUsers, 0, minUsers, 0, true);
+        return new UserSummary(kind, distinctUsers, max, maxUsers, 0, minUsers, valueOf(kind, overall) / distinctUsers,
+                true);
+    }
+
+    private static long valueOf(UserKind kind, AbstractPullRequestCollector collector) {
+        return kind == UserKind.MERGERS ? collector.getMerged() : collector.getTotal();
+    }
+
+    public UserKind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Gets the number of users
+     * 
+     * @return Users
+     */
+    public long getUsers() {
+        return this.users;
+    }
+
+    /**
+     * Gets whether the number of users is an estimate, if so the minimum is
+     * not known
+     * 
+     * @return True if approximate
+     */
+    public boolean isApproximate() {
+        return this.approximate;
+    }
+
+    public long getMax() {
+        return this.max;
+    }
+
+    public List<String> getMaxUsers() {
+        return this.maxUsers;
+    }
+
+    public long getMin() {
+        return this.min;
+    }
+
+    public List<String> getMinUsers() {
+        return this.minUsers;
+    }
+
+    public long getAverage() {
+        return this.average;
+    }
+}
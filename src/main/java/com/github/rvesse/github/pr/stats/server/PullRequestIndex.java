@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.joda.time.Instant;
+
+import com.github.rvesse.github.pr.stats.cache.PullRequestCache;
+import com.github.rvesse.github.pr.stats.collectors.MergeUserResolver;
+import com.github.rvesse.github.pr.stats.store.PullRequestStore;
+
+/**
+ * An in-memory index of the pull requests of a repository which is refreshed
+ * incrementally
+ * <p>
+ * Refreshes only fetch pull requests updated since the previous refresh, each
+ * refresh publishes an immutable columnar snapshot of the pull requests so
+ * queries are never blocked by a refresh in progress. Persistent indexes are
+ * published from a memory mapped snapshot file so that they can answer
+ * queries as soon as they are loaded.
+ * </p>
+ */
+public class PullRequestIndex {
+
+    private final PullRequestCache cache;
+    private final File snapshotFile;
+    private boolean cacheLoaded, mapped;
+    private volatile PullRequestStore snapshot = PullRequestStore.of(Collections.<PullRequest> emptyList());
+    private volatile Instant refreshedAt;
+
+    /**
+     * Creates a new index
+     * 
+     * @param cache
+     *            Cache which holds the pull requests
+     * @param snapshotFile
+     *            Snapshot file to which the index is written so that it
+     *            survives restarts, {@code null} if the index is not
+     *            persistent
+     */
+    public PullRequestIndex(PullRequestCache cache, File snapshotFile) {
+        this.cache = cache;
+        this.snapshotFile = snapshotFile;
+        this.cacheLoaded = snapshotFile == null;
+    }
+
+    public RepositoryId getRepository() {
+        return this.cache.getRepository();
+    }
+
+    /**
+     * Loads the index from disk if persistent
+     * 
+     * @return True if the index was loaded from an up to date snapshot, in
+     *         which case the cache itself is only loaded by the first refresh
+     * @throws IOException
+     *             Thrown if the index cannot be loaded
+     */
+    public synchronized boolean load() throws IOException {
+        if (this.snapshotFile == null)
+            return false;
+        if (this.snapshotFile.exists() && this.snapshotFile.lastModified() >= this.cache.getFile().lastModified()) {
+            this.snapshot = PullRequestStore.open(this.snapshotFile);
+            this.mapped = true;
+            return true;
+        }
+        this.cache.load();
+        this.cacheLoaded = true;
+        this.snapshot = PullRequestStore.of(this.cache.getPullRequests());
+        return false;
+    }
+
+    /**
+     * Refreshes the index
+     * 
+     * @param client
+     *            GitHub Client
+     * @param resolver
+     *            Resolver used to fill in merging users, may be {@code null}
+     *            if merging users are not required
+     * @return Number of pull requests fetched
+     * @throws IOException
+     *             Thrown if the pull requests cannot be fetched
+     */
+    public synchronized int refresh(GitHubClient client, MergeUserResolver resolver) throws IOException {
+        if (!this.cacheLoaded) {
+            this.cache.load();
+            this.cacheLoaded = true;
+        }
+        int fetched = this.cache.refresh(client);
+        int resolved = resolver != null ? this.cache.resolveMergingUsers(client, resolver) : 0;
+        if (this.snapshotFile == null) {
+            // Only rebuild the store when something changed
+            if (fetched > 0 || resolved > 0 || this.refreshedAt == null)
+                this.snapshot = PullRequestStore.of(this.cache.getPullRequests());
+        } else if (fetched > 0 || resolved > 0 || !this.mapped) {
+            this.cache.save();
+            PullRequestStore.of(this.cache.getPullRequests()).write(this.snapshotFile);
+            this.snapshot = PullRequestStore.open(this.snapshotFile);
+            this.mapped = true;
+        }
+        this.refreshedAt = Instant.now();
+        return fetched;
+    }
+
+    /**
+     * Gets the pull requests as of the most recent refresh
+     * 
+     * @return Pull requests
+     */
+    public PullRequestStore getPullRequests() {
+        return this.snapshot;
+    }
+
+    /**
+     * Gets when the index was last refreshed
+     * 
+     * @return Refresh time, {@code null} if never refreshed
+     */
+    public Instant getRefreshedAt() {
+        return this.refreshedAt;
+    }
+}
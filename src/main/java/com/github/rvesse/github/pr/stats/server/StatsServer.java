@@ -0,0 +1,316 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.joda.time.Instant;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import com.github.rvesse.github.pr.stats.collectors.MergeUserResolver;
+import com.github.rvesse.github.pr.stats.collectors.ParallelCollection.CollectorFactory;
+import com.github.rvesse.github.pr.stats.collectors.PullRequestsCollector;
+import com.github.rvesse.github.pr.stats.collectors.Windowing;
+import com.github.rvesse.github.pr.stats.report.ReportFormat;
+import com.github.rvesse.github.pr.stats.report.ReportSink;
+import com.github.rvesse.github.pr.stats.sources.PullRequestFilter;
+import com.github.rvesse.github.pr.stats.store.PullRequestStore;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A HTTP server which answers statistics queries from in-memory pull request
+ * indexes that are refreshed on a schedule
+ * <p>
+ * {@code GET /stats} generates a statistics report, the following query
+ * parameters are supported:
+ * </p>
+ * <ul>
+ * <li>{@code repo} - Restricts to a single repository given as
+ * {@code owner/name}, defaults to all repositories</li>
+ * <li>{@code user} - Restricts to pull requests opened by this user</li>
+ * <li>{@code merger} - Restricts to pull requests merged by this user</li>
+ * <li>{@code base} - Restricts to pull requests targeting this branch</li>
+ * <li>{@code since}, {@code until} - Restricts to pull requests created in
+ * this ISO 8601 date time range</li>
+ * <li>{@code now} - ISO 8601 date time as of which to generate statistics,
+ * defaults to the current time</li>
+ * <li>{@code window} - Includes trends for this window</li>
+ * <li>{@code unit} - Unit ages are reported in, {@code minutes},
+ * {@code hours} or {@code days}, defaults to the unit the server was started
+ * with</li>
+ * <li>{@code format} - Report format, {@code json} (the default),
+ * {@code csv} or {@code text}</li>
+ * </ul>
+ * <p>
+ * {@code GET /repositories} lists the indexed repositories.
+ * </p>
+ */
+public class StatsServer implements Closeable {
+
+    /**
+     * Generates a report from collected statistics
+     */
+    public static interface ReportGenerator {
+
+        /**
+         * Generates a report
+         * 
+         * @param collector
+         *            Collector, has been ended
+         * @param sink
+         *            Sink to write the report to
+         * @throws IOException
+         *             Thrown if the report cannot be written
+         */
+        public abstract void generate(PullRequestsCollector collector, ReportSink sink) throws IOException;
+    }
+
+    private static final DateTimeFormatter DATE_PARSER = ISODateTimeFormat.dateTimeParser().withZoneUTC();
+
+    private final Map<String, PullRequestIndex> indexes;
+    private final GitHubClient client;
+    private final CollectorFactory<PullRequest, PullRequestsCollector> factory;
+    private final ReportGenerator generator;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * Creates a new server
+     * 
+     * @param address
+     *            Address to listen on
+     * @param threads
+     *            Number of threads used to answer queries
+     * @param indexes
+     *            Indexes keyed by repository ID
+     * @param client
+     *            GitHub Client used to refresh the indexes
+     * @param factory
+     *            Factory for the collectors used to answer queries, the
+     *            collectors should not make lookups of their own
+     * @param generator
+     *            Report generator
+     * @throws IOException
+     *             Thrown if the server cannot be created
+     */
+    public StatsServer(InetSocketAddress address, int threads, Map<String, PullRequestIndex> indexes,
+            GitHubClient client, CollectorFactory<PullRequest, PullRequestsCollector> factory,
+            ReportGenerator generator) throws IOException {
+        this.indexes = indexes;
+        this.client = client;
+        this.factory = factory;
+        this.generator = generator;
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/stats", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleStats(exchange);
+            }
+        });
+        this.server.createContext("/repositories", new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleRepositories(exchange);
+            }
+        });
+    }
+
+    /**
+     * Starts answering queries and refreshing the indexes
+     * 
+     * @param initialDelay
+     *            Delay before the first refresh
+     * @param refreshInterval
+     *            Interval between refreshes
+     * @param unit
+     *            Unit of the delay and interval
+     * @param resolver
+     *            Resolver used to fill in merging users when refreshing, may
+     *            be {@code null}
+     */
+    public void start(long initialDelay, long refreshInterval, TimeUnit unit, final MergeUserResolver resolver) {
+        this.server.start();
+        this.refresher.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                for (PullRequestIndex index : indexes.values()) {
+                    try {
+                        int fetched = index.refresh(client, resolver);
+                        if (fetched > 0)
+                            System.out.println("Refreshed " + index.getRepository().generateId() + ", fetched "
+                                    + fetched + " updated pull requests");
+                    } catch (IOException | RuntimeException e) {
+                        System.out.println("Failed to refresh " + index.getRepository().generateId() + ": "
+                                + e.getMessage());
+                    }
+                }
+            }
+        }, initialDelay, refreshInterval, unit);
+    }
+
+    public InetSocketAddress getAddress() {
+        return this.server.getAddress();
+    }
+
+    @Override
+    public void close() {
+        this.refresher.shutdownNow();
+        this.server.stop(0);
+        this.executor.shutdown();
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "text/plain", "Only GET is supported".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            List<PullRequestIndex> selected = new ArrayList<PullRequestIndex>();
+            if (params.containsKey("repo")) {
+                PullRequestIndex index = this.indexes.get(params.get("repo"));
+                if (index == null) {
+                    send(exchange, 404, "text/plain",
+                            ("Repository " + params.get("repo") + " is not indexed").getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                selected.add(index);
+            } else {
+                selected.addAll(this.indexes.values());
+            }
+
+            PullRequestFilter filter = new PullRequestFilter().setAuthor(params.get("user"))
+                    .setBase(params.get("base"));
+            if (params.containsKey("since"))
+                filter.setSince(DATE_PARSER.parseDateTime(params.get("since")).toDate());
+            if (params.containsKey("until"))
+                filter.setUntil(DATE_PARSER.parseDateTime(params.get("until")).toDate());
+            String merger = params.get("merger");
+            ReportFormat format = params.containsKey("format")
+                    ? ReportFormat.valueOf(params.get("format").toUpperCase(Locale.ROOT)) : ReportFormat.JSON;
+
+            PullRequestsCollector collector = this.factory.create();
+            collector.setNow(params.containsKey("now") ? DATE_PARSER.parseDateTime(params.get("now")).toInstant()
+                    : Instant.now());
+            if (params.containsKey("window"))
+                collector.setWindowing(Windowing.parse(params.get("window")));
+            if (params.containsKey("unit"))
+                collector.setTimeUnit(parseUnit(params.get("unit")));
+            collector.start();
+            for (PullRequestIndex index : selected) {
+                PullRequestStore store = index.getPullRequests();
+                BitSet rows = store.select(filter);
+                if (merger != null)
+                    store.selectMerger(rows, merger);
+                store.collect(collector, rows);
+            }
+            collector.end();
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+            this.generator.generate(collector, format.createSink(writer));
+            writer.flush();
+            send(exchange, 200, format == ReportFormat.JSON ? "application/json"
+                    : format == ReportFormat.CSV ? "text/csv" : "text/plain", body.toByteArray());
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, "text/plain", String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            send(exchange, 500, "text/plain", String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void handleRepositories(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8))) {
+            writer.beginArray();
+            for (PullRequestIndex index : this.indexes.values()) {
+                writer.beginObject();
+                writer.name("repository").value(index.getRepository().generateId());
+                writer.name("pull_requests").value(index.getPullRequests().size());
+                writer.name("refreshed_at");
+                if (index.getRefreshedAt() != null) {
+                    writer.value(index.getRefreshedAt().toString());
+                } else {
+                    writer.nullValue();
+                }
+                writer.endObject();
+            }
+            writer.endArray();
+        }
+        send(exchange, 200, "application/json", body.toByteArray());
+    }
+
+    private static TimeUnit parseUnit(String value) {
+        TimeUnit unit = TimeUnit.valueOf(value.toUpperCase(Locale.ROOT));
+        if (unit != TimeUnit.MINUTES && unit != TimeUnit.HOURS && unit != TimeUnit.DAYS)
+            throw new IllegalArgumentException("unit must be minutes, hours or days");
+        return unit;
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<String, String>();
+        if (query == null || query.isEmpty())
+            return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0)
+                continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                    URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.sources;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.egit.github.core.Issue;
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.PageIterator;
+import org.eclipse.egit.github.core.service.IssueService;
+import org.joda.time.format.ISODateTimeFormat;
+
+/**
+ * A pull request source that delivers only those pull requests of another
+ * source which match a filter
+ * <p>
+ * Pull request listings do not include labels so when filtering by label the
+ * numbers of the pull requests with that label are first found via the issues
+ * API, which can filter by label, author and update time server side, and
+ * pull requests are then matched against those numbers.
+ * </p>
+ */
+public class FilteredPullRequestSource implements PullRequestSource {
+
+    private static final String FILTER_CREATOR = "creator", FILTER_SINCE = "since", STATE_ALL = "all";
+
+    private final PullRequestSource source;
+    private final PullRequestFilter filter;
+    private final GitHubClient client;
+    private final RepositoryId repo;
+    private final int pageSize;
+
+    public FilteredPullRequestSource(PullRequestSource source, PullRequestFilter filter, GitHubClient client,
+            RepositoryId repo, int pageSize) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("pageSize must be greater than zero");
+        this.source = source;
+        this.filter = filter;
+        this.client = client;
+        this.repo = repo;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public Iterator<Collection<PullRequest>> pages() throws IOException {
+        return pages(null);
+    }
+
+    @Override
+    public Iterator<Collection<PullRequest>> pages(String cursor) throws IOException {
+        final Set<Integer> labelled = this.filter.getLabel() != null ? findLabelled() : null;
+        final Iterator<Collection<PullRequest>> pages = this.source.pages(cursor);
+        return new Iterator<Collection<PullRequest>>() {
+
+            @Override
+            public boolean hasNext() {
+                return pages.hasNext();
+            }
+
+            @Override
+            public Collection<PullRequest> next() {
+                Collection<PullRequest> page = pages.next();
+                PullRequestPage matches = new PullRequestPage(page.size(),
+                        page instanceof PullRequestPage ? ((PullRequestPage) page).getCursor() : null);
+                for (PullRequest pr : page) {
+                    if (filter.matches(pr) && (labelled == null || labelled.contains(pr.getNumber())))
+                        matches.add(pr);
+                }
+                return matches;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private Set<Integer> findLabelled() throws IOException {
+        Map<String, String> params = new HashMap<String, String>();
+        params.put(IssueService.FILTER_LABELS, this.filter.getLabel());
+        params.put(IssueService.FILTER_STATE, STATE_ALL);
+        if (this.filter.getAuthor() != null)
+            params.put(FILTER_CREATOR, this.filter.getAuthor());
+        // Anything created since the lower bound must also have been updated
+        // since then
+        if (this.filter.getSince() != null)
+            params.put(FILTER_SINCE, ISODateTimeFormat.dateTimeNoMillis().withZoneUTC().print(
+                    this.filter.getSince().getTime()));
+
+        Set<Integer> numbers = new HashSet<Integer>();
+        PageIterator<Issue> issues = new IssueService(this.client).pageIssues(this.repo, params, this.pageSize);
+        while (issues.hasNext()) {
+            for (Issue issue : issues.next()) {
+                if (issue.getPullRequest() != null)
+                    numbers.add(issue.getNumber());
+            }
+        }
+        return numbers;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.sources;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.PullRequestMarker;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.client.NoSuchPageException;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import com.github.rvesse.github.pr.stats.client.PullRequestStatsClient;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * A pull request source that pages through pull requests using the GitHub
+ * GraphQL API
+ * <p>
+ * Unlike the REST listing the GraphQL query returns the merging user and
+ * mergeability of every pull request so no further requests per pull request
+ * are needed. Each page costs a single request regardless of page size and
+ * only the fields the collectors use are requested.
+ * </p>
+ * <p>
+ * When given a filter the base branch and label are pushed down to the query
+ * and if a creation time bound is given pull requests are ordered by creation
+ * time so that paging stops as soon as it moves past that bound. The author is
+ * not applied, wrap in a {@link FilteredPullRequestSource} for that.
+ * </p>
+ * <p>
+ * When reviews are included the first 100 reviews of each pull request are
+ * returned as part of the same query and pull requests are delivered as
+ * {@link ReviewedPullRequest} instances.
+ * </p>
+ */
+public class GraphQLPullRequestSource implements PullRequestSource {
+
+    /**
+     * Maximum page size permitted by the GraphQL API
+     */
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final String ACTOR_FIELDS = "login ... on User { databaseId } ... on Bot { databaseId } "
+            + "... on Mannequin { databaseId } ... on Organization { databaseId }";
+    private static final String QUERY_START = "query($owner: String!, $name: String!, $pageSize: Int!, "
+            + "$cursor: String, $base: String, $labels: [String!], $direction: OrderDirection!) { "
+            + "repository(owner: $owner, name: $name) { "
+            + "pullRequests(first: $pageSize, after: $cursor, baseRefName: $base, labels: $labels, "
+            + "orderBy: { field: CREATED_AT, direction: $direction }) { "
+            + "pageInfo { hasNextPage endCursor } "
+            + "nodes { databaseId number state createdAt updatedAt mergedAt closedAt merged mergeable baseRefName "
+            + "author { " + ACTOR_FIELDS + " } mergedBy { " + ACTOR_FIELDS + " } ";
+    private static final String QUERY_END = "} } } }";
+    private static final String QUERY = QUERY_START + QUERY_END;
+    private static final String QUERY_WITH_REVIEWS = QUERY_START + "reviews(first: 100) { nodes { databaseId "
+            + "state submittedAt author { " + ACTOR_FIELDS + " } } } " + QUERY_END;
+
+    private static final DateTimeFormatter DATE_PARSER = ISODateTimeFormat.dateTimeParser().withZoneUTC();
+
+    private final PullRequestStatsClient client;
+    private final RepositoryId repo;
+    private final int pageSize;
+    private final PullRequestFilter filter;
+    private boolean includeReviews = false;
+
+    public GraphQLPullRequestSource(PullRequestStatsClient client, RepositoryId repo, int pageSize) {
+        this(client, repo, pageSize, null);
+    }
+
+    public GraphQLPullRequestSource(PullRequestStatsClient client, RepositoryId repo, int pageSize,
+            PullRequestFilter filter) {
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE)
+            throw new IllegalArgumentException(
+                    String.format("pageSize must be in the range 1 to %d", MAX_PAGE_SIZE));
+        this.client = client;
+        this.repo = repo;
+        this.pageSize = pageSize;
+        this.filter = filter != null ? filter : new PullRequestFilter();
+    }
+
+    /**
+     * Sets whether the reviews of each pull request are fetched as part of
+     * the same query
+     * 
+     * @param includeReviews
+     *            Whether to include reviews
+     * @return Source
+     */
+    public GraphQLPullRequestSource setIncludeReviews(boolean includeReviews) {
+        this.includeReviews = includeReviews;
+        return this;
+    }
+
+    @Override
+    public Iterator<Collection<PullRequest>> pages() {
+        return pages(null);
+    }
+
+    @Override
+    public Iterator<Collection<PullRequest>> pages(final String initialCursor) {
+        // As with the REST source walk away from whichever creation time bound
+        // is set so paging can stop as soon as it is crossed
+        final boolean descending = this.filter.getSince() != null || this.filter.getUntil() == null;
+        final Map<String, Object> variables = new LinkedHashMap<String, Object>();
+        variables.put("owner", this.repo.getOwner());
+        variables.put("name", this.repo.getName());
+        variables.put("pageSize", this.pageSize);
+        variables.put("direction", descending ? "DESC" : "ASC");
+        if (this.filter.getBase() != null)
+            variables.put("base", this.filter.getBase());
+        if (this.filter.getLabel() != null)
+            variables.put("labels", Collections.singletonList(this.filter.getLabel()));
+
+        return new Iterator<Collection<PullRequest>>() {
+            private boolean done = false;
+            private String cursor = initialCursor;
+
+            @Override
+            public boolean hasNext() {
+                return !this.done;
+            }
+
+            @Override
+            public Collection<PullRequest> next() {
+                if (this.done)
+                    throw new NoSuchElementException();
+                JsonObject connection;
+                try {
+                    connection = fetch(variables, this.cursor);
+                } catch (IOException e) {
+                    throw new NoSuchPageException(e);
+                }
+
+                JsonArray nodes = connection.getAsJsonArray("nodes");
+                JsonObject pageInfo = connection.getAsJsonObject("pageInfo");
+                JsonElement endCursor = pageInfo.get("endCursor");
+                if (endCursor != null && !endCursor.isJsonNull())
+                    this.cursor = endCursor.getAsString();
+                PullRequestPage page = new PullRequestPage(nodes.size(), this.cursor);
+                for (JsonElement node : nodes) {
+                    PullRequest pr = toPullRequest(node.getAsJsonObject());
+                    if (descending ? filter.isBeforeRange(pr) : filter.isAfterRange(pr)) {
+                        this.done = true;
+                        break;
+                    }
+                    page.add(pr);
+                }
+
+                if (!pageInfo.get("hasNextPage").getAsBoolean())
+                    this.done = true;
+                return page;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private JsonObject fetch(Map<String, Object> variables, String cursor) throws IOException {
+        Map<String, Object> pageVariables = new LinkedHashMap<String, Object>(variables);
+        if (cursor != null)
+            pageVariables.put("cursor", cursor);
+        Map<String, Object> request = new LinkedHashMap<String, Object>();
+        request.put("query", this.includeReviews ? QUERY_WITH_REVIEWS : QUERY);
+        request.put("variables", pageVariables);
+
+        JsonObject response = this.client.graphql(request, JsonObject.class);
+        if (response.has("errors") && response.get("errors").isJsonArray()
+                && response.getAsJsonArray("errors").size() > 0) {
+            JsonObject error = response.getAsJsonArray("errors").get(0).getAsJsonObject();
+            throw new IOException("GraphQL query failed: "
+                    + (error.has("message") ? error.get("message").getAsString() : error.toString()));
+        }
+        JsonElement repository = response.getAsJsonObject("data").get("repository");
+        if (repository == null || repository.isJsonNull())
+            throw new IOException("Repository " + this.repo.generateId() + " not found");
+        return repository.getAsJsonObject().getAsJsonObject("pullRequests");
+    }
+
+    static PullRequest toPullRequest(JsonObject node) {
+        PullRequest pr;
+        JsonElement reviews = node.get("reviews");
+        if (reviews != null && !reviews.isJsonNull()) {
+            List<PullRequestReview> results = new ArrayList<PullRequestReview>();
+            for (JsonElement review : reviews.getAsJsonObject().getAsJsonArray("nodes")) {
+                JsonObject reviewNode = review.getAsJsonObject();
+                results.add(new PullRequestReview().setId(getLong(reviewNode, "databaseId"))
+                        .setState(getString(reviewNode, "state")).setSubmittedAt(getDate(reviewNode, "submittedAt"))
+                        .setUser(toUser(reviewNode.get("author"))));
+            }
+            pr = new ReviewedPullRequest().setReviews(results);
+        } else {
+            pr = new PullRequest();
+        }
+        pr.setId(getLong(node, "databaseId"));
+        pr.setNumber(node.get("number").getAsInt());
+        // REST reports merged pull requests as closed
+        String state = getString(node, "state");
+        pr.setState("OPEN".equals(state) ? "open" : "closed");
+        pr.setCreatedAt(getDate(node, "createdAt"));
+        pr.setUpdatedAt(getDate(node, "updatedAt"));
+        pr.setMergedAt(getDate(node, "mergedAt"));
+        pr.setClosedAt(getDate(node, "closedAt"));
+        pr.setMerged(node.has("merged") && node.get("merged").getAsBoolean());
+        pr.setMergeable("MERGEABLE".equals(getString(node, "mergeable")));
+        pr.setUser(toUser(node.get("author")));
+        pr.setMergedBy(toUser(node.get("mergedBy")));
+        String base = getString(node, "baseRefName");
+        if (base != null) {
+            PullRequestMarker marker = new PullRequestMarker();
+            marker.setRef(base);
+            pr.setBase(marker);
+        }
+        return pr;
+    }
+
+    private static User toUser(JsonElement element) {
+        if (element == null || element.isJsonNull())
+            return null;
+        JsonObject actor = element.getAsJsonObject();
+        String login = getString(actor, "login");
+        int id = (int) getLong(actor, "databaseId");
+        if (id == 0 && login != null) {
+            // Users are keyed by id so actors without one are given a negative
+            // id derived from their login, which can never clash with a real
+            // id, rather than all sharing id zero
+            id = -1 - (login.toLowerCase(Locale.ROOT).hashCode() & Integer.MAX_VALUE);
+        }
+        return new User().setId(id).setLogin(login);
+    }
+
+    private static String getString(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+
+    private static long getLong(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        return element == null || element.isJsonNull() ? 0 : element.getAsLong();
+    }
+
+    private static Date getDate(JsonObject object, String name) {
+        String value = getString(object, name);
+        return value != null ? DATE_PARSER.parseDateTime(value).toDate() : null;
+    }
+}
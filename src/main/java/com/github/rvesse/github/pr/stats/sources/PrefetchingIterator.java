@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.sources;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * An iterator that fetches the next item from an underlying iterator on a
+ * background thread while the caller processes the current item
+ * <p>
+ * At most one item is fetched ahead so when used over pages of results memory
+ * usage is bounded to two pages regardless of the total number of pages.
+ * </p>
+ *
+ * @param <T>
+ *            Item type
+ */
+public class PrefetchingIterator<T> implements Iterator<T>, Closeable {
+
+    private final Iterator<T> iter;
+    private final ExecutorService executor;
+    private Future<T> next;
+
+    public PrefetchingIterator(Iterator<T> iter) {
+        this.iter = iter;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "pr-stats-prefetch");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        prefetch();
+    }
+
+    private void prefetch() {
+        if (this.iter.hasNext()) {
+            this.next = this.executor.submit(new Callable<T>() {
+
+                @Override
+                public T call() throws Exception {
+                    return iter.next();
+                }
+            });
+        } else {
+            this.next = null;
+            close();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return this.next != null;
+    }
+
+    @Override
+    public T next() {
+        if (this.next == null)
+            throw new NoSuchElementException();
+
+        T item;
+        try {
+            item = this.next.get();
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new NoSuchElementException("Interrupted while waiting for next item");
+        } catch (ExecutionException e) {
+            close();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+
+        // Start fetching the next item before handing this one back
+        prefetch();
+        return item;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        this.next = null;
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.sources;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.joda.time.Instant;
+
+/**
+ * Restricts which pull requests statistics are generated for
+ * <p>
+ * As much of the filter as possible is pushed down to the GitHub API by
+ * {@link RestPullRequestSource} and {@link FilteredPullRequestSource}, this
+ * class checks the remainder client side.
+ * </p>
+ */
+public class PullRequestFilter {
+
+    private Date since, until;
+    private String base, author, label;
+
+    public Date getSince() {
+        return this.since;
+    }
+
+    /**
+     * Sets the earliest creation time of pull requests to include
+     * 
+     * @param since
+     *            Earliest creation time (inclusive), {@code null} for no
+     *            bound
+     * @return Filter
+     */
+    public PullRequestFilter setSince(Date since) {
+        this.since = since;
+        return this;
+    }
+
+    public Date getUntil() {
+        return this.until;
+    }
+
+    /**
+     * Sets the creation time before which pull requests must have been created
+     * to be included
+     * 
+     * @param until
+     *            Latest creation time (exclusive), {@code null} for no bound
+     * @return Filter
+     */
+    public PullRequestFilter setUntil(Date until) {
+        this.until = until;
+        return this;
+    }
+
+    public String getBase() {
+        return this.base;
+    }
+
+    /**
+     * Sets the base branch pull requests must target to be included
+     * 
+     * @param base
+     *            Base branch, {@code null} for any branch
+     * @return Filter
+     */
+    public PullRequestFilter setBase(String base) {
+        this.base = base;
+        return this;
+    }
+
+    public String getAuthor() {
+        return this.author;
+    }
+
+    /**
+     * Sets the login of the user who must have opened pull requests for them
+     * to be included
+     * 
+     * @param author
+     *            Author login, {@code null} for any author
+     * @return Filter
+     */
+    public PullRequestFilter setAuthor(String author) {
+        this.author = author;
+        return this;
+    }
+
+    public String getLabel() {
+        return this.label;
+    }
+
+    /**
+     * Sets a label pull requests must have to be included, since pull request
+     * listings do not include labels this is checked by
+     * {@link FilteredPullRequestSource} rather than by
+     * {@link #matches(PullRequest)}
+     * 
+     * @param label
+     *            Label, {@code null} for any labels
+     * @return Filter
+     */
+    public PullRequestFilter setLabel(String label) {
+        this.label = label;
+        return this;
+    }
+
+    /**
+     * Creates a copy of this filter
+     * 
+     * @return Copy
+     */
+    public PullRequestFilter copy() {
+        return new PullRequestFilter().setSince(this.since).setUntil(this.until).setBase(this.base)
+                .setAuthor(this.author).setLabel(this.label);
+    }
+
+    /**
+     * Gets whether the filter includes all pull requests
+     * 
+     * @return True if empty
+     */
+    public boolean isEmpty() {
+        return this.since == null && this.until == null && this.base == null && this.author == null
+                && this.label == null;
+    }
+
+    /**
+     * Gets whether a pull request was created before the range of creation
+     * times included by this filter
+     * 
+     * @param pr
+     *            Pull request
+     * @return True if created too early
+     */
+    public boolean isBeforeRange(PullRequest pr) {
+        return this.since != null && pr.getCreatedAt() != null && pr.getCreatedAt().before(this.since);
+    }
+
+    /**
+     * Gets whether a pull request was created after the range of creation
+     * times included by this filter
+     * 
+     * @param pr
+     *            Pull request
+     * @return True if created too late
+     */
+    public boolean isAfterRange(PullRequest pr) {
+        return this.until != null && pr.getCreatedAt() != null && !pr.getCreatedAt().before(this.until);
+    }
+
+    /**
+     * Checks whether a pull request matches all the criteria of this filter
+     * other than the label
+     * 
+     * @param pr
+     *            Pull request
+     * @return True if matches
+     */
+    public boolean matches(PullRequest pr) {
+        if (isBeforeRange(pr) || isAfterRange(pr))
+            return false;
+        if (this.base != null && (pr.getBase() == null || !this.base.equals(pr.getBase().getRef())))
+            return false;
+        if (this.author != null && (pr.getUser() == null || !this.author.equalsIgnoreCase(pr.getUser().getLogin())))
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        List<String> criteria = new ArrayList<String>();
+        if (this.since != null)
+            criteria.add("created since " + new Instant(this.since));
+        if (this.until != null)
+            criteria.add("created before " + new Instant(this.until));
+        if (this.base != null)
+            criteria.add("targeting " + this.base);
+        if (this.author != null)
+            criteria.add("opened by " + this.author);
+        if (this.label != null)
+            criteria.add("labelled " + this.label);
+        if (criteria.isEmpty())
+            return "all pull requests";
+        StringBuilder builder = new StringBuilder("pull requests");
+        for (int i = 0; i < criteria.size(); i++) {
+            builder.append(i == 0 ? " " : i == criteria.size() - 1 ? " and " : ", ").append(criteria.get(i));
+        }
+        return builder.toString();
+    }
+}
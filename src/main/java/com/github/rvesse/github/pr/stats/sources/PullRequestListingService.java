@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.sources;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.PagedRequest;
+import org.eclipse.egit.github.core.service.PullRequestService;
+
+/**
+ * A pull request service that allows the ordering of the pull request listing
+ * to be controlled
+ */
+public class PullRequestListingService extends PullRequestService {
+
+    public static final String SORT_CREATED = "created";
+    public static final String SORT_UPDATED = "updated";
+    public static final String DIRECTION_ASC = "asc";
+    public static final String DIRECTION_DESC = "desc";
+
+    private final String sort, direction;
+    private String base;
+
+    public PullRequestListingService(GitHubClient client, String sort, String direction) {
+        super(client);
+        this.sort = sort;
+        this.direction = direction;
+    }
+
+    /**
+     * Sets the base branch the listing is restricted to
+     * 
+     * @param base
+     *            Base branch, {@code null} to list pull requests against any
+     *            branch
+     */
+    public void setBase(String base) {
+        this.base = base;
+    }
+
+    @Override
+    protected PagedRequest<PullRequest> createPullsRequest(IRepositoryIdProvider provider, String state, int start,
+            int size) {
+        PagedRequest<PullRequest> request = super.createPullsRequest(provider, state, start, size);
+
+        // The base implementation may use an immutable map so copy
+        Map<String, String> params = new HashMap<String, String>();
+        if (request.getParams() != null)
+            params.putAll(request.getParams());
+        if (this.sort != null)
+            params.put("sort", this.sort);
+        if (this.direction != null)
+            params.put("direction", this.direction);
+        if (this.base != null)
+            params.put("base", this.base);
+        request.setParams(params);
+        return request;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.sources;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.eclipse.egit.github.core.PullRequest;
+
+/**
+ * A page of pull requests which knows where a listing should continue from
+ * after it
+ */
+public class PullRequestPage extends ArrayList<PullRequest> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String cursor;
+
+    public PullRequestPage(int capacity, String cursor) {
+        super(capacity);
+        this.cursor = cursor;
+    }
+
+    public PullRequestPage(Collection<PullRequest> prs, String cursor) {
+        super(prs);
+        this.cursor = cursor;
+    }
+
+    /**
+     * Gets the cursor to pass to {@link PullRequestSource#pages(String)} to
+     * continue the listing after this page
+     *
+     * @return Cursor
+     */
+    public String getCursor() {
+        return this.cursor;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.sources;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import org.eclipse.egit.github.core.User;
+
+/**
+ * A review of a pull request
+ */
+public class PullRequestReview implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String STATE_APPROVED = "APPROVED";
+    public static final String STATE_CHANGES_REQUESTED = "CHANGES_REQUESTED";
+    public static final String STATE_COMMENTED = "COMMENTED";
+    public static final String STATE_DISMISSED = "DISMISSED";
+    public static final String STATE_PENDING = "PENDING";
+
+    private long id;
+    private User user;
+    private String state;
+    private Date submittedAt;
+
+    public long getId() {
+        return this.id;
+    }
+
+    public PullRequestReview setId(long id) {
+        this.id = id;
+        return this;
+    }
+
+    public User getUser() {
+        return this.user;
+    }
+
+    public PullRequestReview setUser(User user) {
+        this.user = user;
+        return this;
+    }
+
+    public String getState() {
+        return this.state;
+    }
+
+    public PullRequestReview setState(String state) {
+        this.state = state;
+        return this;
+    }
+
+    /**
+     * Gets when the review was submitted
+     * 
+     * @return Submission time, {@code null} for pending reviews
+     */
+    public Date getSubmittedAt() {
+        return this.submittedAt;
+    }
+
+    public PullRequestReview setSubmittedAt(Date submittedAt) {
+        this.submittedAt = submittedAt;
+        return this;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.sources;
+
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_PULLS;
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_REPOS;
+import static org.eclipse.egit.github.core.client.PagedRequest.PAGE_FIRST;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.PagedRequest;
+import org.eclipse.egit.github.core.service.GitHubService;
+
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * A service for listing the reviews of pull requests, which the standard pull
+ * request service does not support
+ */
+public class PullRequestReviewService extends GitHubService {
+
+    private static final String SEGMENT_REVIEWS = "/reviews";
+    private static final int PAGE_SIZE = 100;
+
+    public PullRequestReviewService(GitHubClient client) {
+        super(client);
+    }
+
+    /**
+     * Gets all the reviews of a pull request in the order they were made
+     * 
+     * @param repository
+     *            Repository
+     * @param number
+     *            Pull request number
+     * @return Reviews
+     * @throws IOException
+     *             Thrown if the reviews cannot be fetched
+     */
+    public List<PullRequestReview> getReviews(IRepositoryIdProvider repository, int number) throws IOException {
+        StringBuilder uri = new StringBuilder(SEGMENT_REPOS);
+        uri.append('/').append(getId(repository));
+        uri.append(SEGMENT_PULLS);
+        uri.append('/').append(number);
+        uri.append(SEGMENT_REVIEWS);
+        PagedRequest<PullRequestReview> request = createPagedRequest(PAGE_FIRST, PAGE_SIZE);
+        request.setUri(uri);
+        request.setType(new TypeToken<List<PullRequestReview>>() {
+        }.getType());
+        return getAll(request);
+    }
+}
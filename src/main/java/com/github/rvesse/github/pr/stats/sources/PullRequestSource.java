@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.sources;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.eclipse.egit.github.core.PullRequest;
+
+/**
+ * A source of pull requests which are delivered a page at a time
+ */
+public interface PullRequestSource {
+
+    /**
+     * Gets an iterator over the pages of pull requests, pages are fetched
+     * lazily as the iterator is advanced so callers should process and
+     * discard each page before requesting the next
+     *
+     * @return Page iterator
+     * @throws IOException
+     *             Thrown if the source cannot be read
+     */
+    public abstract Iterator<Collection<PullRequest>> pages() throws IOException;
+
+    /**
+     * Gets an iterator over the pages of pull requests continuing on from an
+     * earlier listing, the pages returned are {@link PullRequestPage}
+     * instances whose cursors may be used to continue after that page
+     *
+     * @param cursor
+     *            Cursor of the last page previously processed, {@code null}
+     *            to start from the first page
+     * @return Page iterator
+     * @throws IOException
+     *             Thrown if the source cannot be read
+     */
+    public abstract Iterator<Collection<PullRequest>> pages(String cursor) throws IOException;
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.sources;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.service.PullRequestService;
+
+/**
+ * A pull request source that pages through the REST API pull requests listing
+ * <p>
+ * When given a filter the base branch is pushed down to the API and if a
+ * creation time bound is given the listing is ordered by creation time so
+ * that paging stops as soon as it moves past that bound. Other filter
+ * criteria are not applied, wrap in a {@link FilteredPullRequestSource} for
+ * that.
+ * </p>
+ */
+public class RestPullRequestSource implements PullRequestSource {
+
+    private final GitHubClient client;
+    private final RepositoryId repo;
+    private final String state;
+    private final int pageSize;
+    private final PullRequestFilter filter;
+
+    public RestPullRequestSource(GitHubClient client, RepositoryId repo, String state, int pageSize) {
+        this(client, repo, state, pageSize, null);
+    }
+
+    public RestPullRequestSource(GitHubClient client, RepositoryId repo, String state, int pageSize,
+            PullRequestFilter filter) {
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("pageSize must be greater than zero");
+        this.client = client;
+        this.repo = repo;
+        this.state = state;
+        this.pageSize = pageSize;
+        this.filter = filter;
+    }
+
+    @Override
+    public Iterator<Collection<PullRequest>> pages() {
+        return pages(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Cursors are page numbers, if pull requests are created between the
+     * original and the continued listing some pull requests may be listed
+     * again.
+     * </p>
+     */
+    @Override
+    public Iterator<Collection<PullRequest>> pages(String cursor) {
+        final int start;
+        try {
+            start = cursor != null ? Integer.parseInt(cursor) : 1;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+
+        // Walk away from whichever creation time bound is set so we can stop
+        // as soon as we cross it, preferring the lower bound since recent pull
+        // requests are the usual case
+        final boolean descending = this.filter != null && this.filter.getSince() != null;
+        final boolean bounded = descending || (this.filter != null && this.filter.getUntil() != null);
+        final Iterator<Collection<PullRequest>> pages;
+        if (this.filter == null) {
+            pages = new PullRequestService(this.client).pagePullRequests(this.repo, this.state, start, this.pageSize);
+        } else {
+            PullRequestListingService service = new PullRequestListingService(this.client,
+                    bounded ? PullRequestListingService.SORT_CREATED : null,
+                    bounded ? (descending ? PullRequestListingService.DIRECTION_DESC
+                            : PullRequestListingService.DIRECTION_ASC) : null);
+            service.setBase(this.filter.getBase());
+            pages = service.pagePullRequests(this.repo, this.state, start, this.pageSize);
+        }
+
+        return new Iterator<Collection<PullRequest>>() {
+            private boolean done = false;
+            private int next = start;
+
+            @Override
+            public boolean hasNext() {
+                return !this.done && pages.hasNext();
+            }
+
+            @Override
+            public Collection<PullRequest> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Collection<PullRequest> page = pages.next();
+                this.next++;
+                PullRequestPage included = new PullRequestPage(page.size(), Integer.toString(this.next));
+                for (PullRequest pr : page) {
+                    if (bounded && (descending ? filter.isBeforeRange(pr) : filter.isAfterRange(pr))) {
+                        this.done = true;
+                        break;
+                    }
+                    included.add(pr);
+                }
+                return included;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    public RepositoryId getRepository() {
+        return this.repo;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.sources;
+
+import java.util.List;
+
+import org.eclipse.egit.github.core.PullRequest;
+
+/**
+ * A pull request whose reviews were fetched along with it, so they need not
+ * be looked up separately
+ */
+public class ReviewedPullRequest extends PullRequest {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient List<PullRequestReview> reviews;
+
+    public List<PullRequestReview> getReviews() {
+        return this.reviews;
+    }
+
+    public ReviewedPullRequest setReviews(List<PullRequestReview> reviews) {
+        this.reviews = reviews;
+        return this;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.User;
+import org.joda.time.Instant;
+
+import com.github.rvesse.github.pr.stats.collectors.PullRequestFacts;
+
+/**
+ * A pull request store which holds each column in a primitive array on the
+ * heap
+ */
+public class HeapPullRequestStore extends PullRequestStore {
+
+    private int size = 0;
+    private int[] numbers, authors, mergers, bases;
+    private long[] created, merged, closed;
+    private boolean[] mergeable;
+
+    private final List<User> users = new ArrayList<User>();
+    private final Map<Integer, Integer> userCodes = new HashMap<Integer, Integer>();
+    private final Map<String, Integer> loginCodes = new HashMap<String, Integer>();
+    private final List<String> branches = new ArrayList<String>();
+    private final Map<String, Integer> branchCodes = new HashMap<String, Integer>();
+
+    public HeapPullRequestStore() {
+        this(64);
+    }
+
+    /**
+     * Creates a new store
+     * 
+     * @param capacity
+     *            Initial capacity
+     */
+    public HeapPullRequestStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.numbers = new int[capacity];
+        this.authors = new int[capacity];
+        this.mergers = new int[capacity];
+        this.bases = new int[capacity];
+        this.created = new long[capacity];
+        this.merged = new long[capacity];
+        this.closed = new long[capacity];
+        this.mergeable = new boolean[capacity];
+    }
+
+    /**
+     * Adds a pull request
+     * 
+     * @param pr
+     *            Pull request
+     */
+    public void add(PullRequest pr) {
+        ensureCapacity(this.size + 1);
+        int row = this.size++;
+        this.numbers[row] = pr.getNumber();
+        this.authors[row] = encodeUser(pr.getUser());
+        this.mergers[row] = encodeUser(pr.getMergedBy());
+        this.bases[row] = encodeBranch(pr.getBase() != null ? pr.getBase().getRef() : null);
+        this.created[row] = new Instant(pr.getCreatedAt()).getMillis();
+        this.merged[row] = pr.getMergedAt() != null ? pr.getMergedAt().getTime() : PullRequestFacts.NONE;
+        this.closed[row] = pr.getClosedAt() != null ? pr.getClosedAt().getTime() : PullRequestFacts.NONE;
+        this.mergeable[row] = pr.isMergeable();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.numbers.length)
+            return;
+        int grown = Math.max(capacity, this.numbers.length * 2);
+        this.numbers = Arrays.copyOf(this.numbers, grown);
+        this.authors = Arrays.copyOf(this.authors, grown);
+        this.mergers = Arrays.copyOf(this.mergers, grown);
+        this.bases = Arrays.copyOf(this.bases, grown);
+        this.created = Arrays.copyOf(this.created, grown);
+        this.merged = Arrays.copyOf(this.merged, grown);
+        this.closed = Arrays.copyOf(this.closed, grown);
+        this.mergeable = Arrays.copyOf(this.mergeable, grown);
+    }
+
+    private int encodeUser(User user) {
+        if (user == null)
+            return NONE;
+        Integer code = this.userCodes.get(user.getId());
+        if (code == null) {
+            code = this.users.size();
+            this.users.add(new User().setId(user.getId()).setLogin(user.getLogin()));
+            this.userCodes.put(user.getId(), code);
+            if (user.getLogin() != null)
+                this.loginCodes.put(user.getLogin().toLowerCase(Locale.ROOT), code);
+        }
+        return code;
+    }
+
+    private int encodeBranch(String branch) {
+        if (branch == null)
+            return NONE;
+        Integer code = this.branchCodes.get(branch);
+        if (code == null) {
+            code = this.branches.size();
+            this.branches.add(branch);
+            this.branchCodes.put(branch, code);
+        }
+        return code;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public int getUserCount() {
+        return this.users.size();
+    }
+
+    @Override
+    public User getUser(int code) {
+        return this.users.get(code);
+    }
+
+    @Override
+    public int findUser(String login) {
+        Integer code = this.loginCodes.get(login.toLowerCase(Locale.ROOT));
+        return code != null ? code : NONE;
+    }
+
+    @Override
+    public int getBranchCount() {
+        return this.branches.size();
+    }
+
+    @Override
+    public String getBranch(int code) {
+        return this.branches.get(code);
+    }
+
+    @Override
+    public int findBranch(String branch) {
+        Integer code = this.branchCodes.get(branch);
+        return code != null ? code : NONE;
+    }
+
+    @Override
+    protected int getNumber(int row) {
+        return this.numbers[row];
+    }
+
+    @Override
+    protected int getAuthor(int row) {
+        return this.authors[row];
+    }
+
+    @Override
+    protected int getMerger(int row) {
+        return this.mergers[row];
+    }
+
+    @Override
+    protected int getBase(int row) {
+        return this.bases[row];
+    }
+
+    @Override
+    protected long getCreatedAt(int row) {
+        return this.created[row];
+    }
+
+    @Override
+    protected long getMergedAt(int row) {
+        return this.merged[row];
+    }
+
+    @Override
+    protected long getClosedAt(int row) {
+        return this.closed[row];
+    }
+
+    @Override
+    protected boolean isMergeable(int row) {
+        return this.mergeable[row];
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.eclipse.egit.github.core.User;
+
+/**
+ * A pull request store which reads its rows directly from a memory mapped
+ * snapshot file
+ * <p>
+ * Only the user and branch tables are decoded when the snapshot is opened,
+ * rows are read from the mapped file as they are needed so opening is quick
+ * regardless of the number of pull requests and the rows are held off the
+ * heap.
+ * </p>
+ */
+public class MappedPullRequestStore extends PullRequestStore {
+
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final User[] users;
+    private final Map<String, Integer> loginCodes = new HashMap<String, Integer>();
+    private final String[] branches;
+    private final Map<String, Integer> branchCodes = new HashMap<String, Integer>();
+
+    private MappedPullRequestStore(MappedByteBuffer buffer, int size, User[] users, String[] branches) {
+        this.buffer = buffer;
+        this.size = size;
+        this.users = users;
+        this.branches = branches;
+        for (int code = 0; code < users.length; code++) {
+            if (users[code].getLogin() != null)
+                this.loginCodes.put(users[code].getLogin().toLowerCase(Locale.ROOT), code);
+        }
+        for (int code = 0; code < branches.length; code++) {
+            this.branchCodes.put(branches[code], code);
+        }
+    }
+
+    /**
+     * Opens a snapshot file
+     * 
+     * @param file
+     *            Snapshot file
+     * @return Store
+     * @throws IOException
+     *             Thrown if the snapshot cannot be opened or is invalid
+     */
+    public static MappedPullRequestStore open(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(String.format("Snapshot file %s is too large", file));
+            // The mapping remains valid after the channel is closed
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (buffer.getInt() != SNAPSHOT_MAGIC)
+                throw new IOException(String.format("%s is not a pull request snapshot", file));
+            int version = buffer.getInt();
+            if (version != SNAPSHOT_VERSION)
+                throw new IOException(
+                        String.format("Snapshot file %s has unsupported format version %d", file, version));
+            int size = buffer.getInt();
+            int userCount = buffer.getInt();
+            int branchCount = buffer.getInt();
+            if (buffer.getInt() != RECORD_SIZE || size < 0 || userCount < 0 || branchCount < 0
+                    || (long) HEADER_SIZE + (long) size * RECORD_SIZE > buffer.limit())
+                throw new IOException(String.format("Snapshot file %s is corrupt", file));
+
+            buffer.position(HEADER_SIZE + size * RECORD_SIZE);
+            User[] users = new User[userCount];
+            for (int code = 0; code < userCount; code++) {
+                users[code] = new User().setId(buffer.getInt()).setLogin(readString(buffer));
+            }
+            String[] branches = new String[branchCount];
+            for (int code = 0; code < branchCount; code++) {
+                branches[code] = readString(buffer);
+            }
+            return new MappedPullRequestStore(buffer, size, users, branches);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException(String.format("Snapshot file %s is corrupt", file), e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0)
+            return null;
+        if (length > buffer.remaining())
+            throw new BufferUnderflowException();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int offset(int row) {
+        if (row < 0 || row >= this.size)
+            throw new IndexOutOfBoundsException("No such row " + row);
+        return HEADER_SIZE + row * RECORD_SIZE;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public int getUserCount() {
+        return this.users.length;
+    }
+
+    @Override
+    public User getUser(int code) {
+        return this.users[code];
+    }
+
+    @Override
+    public int findUser(String login) {
+        Integer code = this.loginCodes.get(login.toLowerCase(Locale.ROOT));
+        return code != null ? code : NONE;
+    }
+
+    @Override
+    public int getBranchCount() {
+        return this.branches.length;
+    }
+
+    @Override
+    public String getBranch(int code) {
+        return this.branches[code];
+    }
+
+    @Override
+    public int findBranch(String branch) {
+        Integer code = this.branchCodes.get(branch);
+        return code != null ? code : NONE;
+    }
+
+    // Rows are only ever read with absolute gets so a single mapping may be
+    // shared by concurrent queries
+
+    @Override
+    protected int getNumber(int row) {
+        return this.buffer.getInt(offset(row) + NUMBER_OFFSET);
+    }
+
+    @Override
+    protected int getAuthor(int row) {
+        return this.buffer.getInt(offset(row) + AUTHOR_OFFSET);
+    }
+
+    @Override
+    protected int getMerger(int row) {
+        return this.buffer.getInt(offset(row) + MERGER_OFFSET);
+    }
+
+    @Override
+    protected int getBase(int row) {
+        return this.buffer.getInt(offset(row) + BASE_OFFSET);
+    }
+
+    @Override
+    protected long getCreatedAt(int row) {
+        return this.buffer.getLong(offset(row) + CREATED_OFFSET);
+    }
+
+    @Override
+    protected long getMergedAt(int row) {
+        return this.buffer.getLong(offset(row) + MERGED_OFFSET);
+    }
+
+    @Override
+    protected long getClosedAt(int row) {
+        return this.buffer.getLong(offset(row) + CLOSED_OFFSET);
+    }
+
+    @Override
+    protected boolean isMergeable(int row) {
+        return (this.buffer.get(offset(row) + FLAGS_OFFSET) & FLAG_MERGEABLE) != 0;
+    }
+}
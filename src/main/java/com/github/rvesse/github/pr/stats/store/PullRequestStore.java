@@ -0,0 +1,426 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rvesse.github.pr.stats.store;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Collection;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.User;
+import org.joda.time.Instant;
+
+import com.github.rvesse.github.pr.stats.collectors.PullRequestFacts;
+import com.github.rvesse.github.pr.stats.collectors.PullRequestsCollector;
+import com.github.rvesse.github.pr.stats.sources.PullRequestFilter;
+
+/**
+ * A compact columnar store of the pull request fields used by the collectors
+ * <p>
+ * Each row of the store is a pull request, users and base branches are
+ * dictionary encoded so each row holds only small integer codes. Slices of the
+ * pull requests are selected with simple loops over the columns and the
+ * selected rows are then fed to the existing collectors, so new slices need
+ * neither another fetch nor new collectors.
+ * </p>
+ * <p>
+ * A store may be held on the heap, see {@link #of(Collection)}, or written to
+ * a snapshot file with {@link #write(File)} and later memory mapped with
+ * {@link #open(File)}.
+ * </p>
+ */
+public abstract class PullRequestStore {
+
+    /**
+     * Code used for absent users and branches
+     */
+    public static final int NONE = -1;
+
+    static final int SNAPSHOT_MAGIC = 0x50525353;
+    static final int SNAPSHOT_VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int RECORD_SIZE = 48;
+    static final int CREATED_OFFSET = 0, MERGED_OFFSET = 8, CLOSED_OFFSET = 16, NUMBER_OFFSET = 24,
+            AUTHOR_OFFSET = 28, MERGER_OFFSET = 32, BASE_OFFSET = 36, FLAGS_OFFSET = 40;
+    static final int FLAG_MERGEABLE = 1;
+
+    /**
+     * Creates a heap store holding the given pull requests
+     * 
+     * @param prs
+     *            Pull requests
+     * @return Store
+     */
+    public static PullRequestStore of(Collection<PullRequest> prs) {
+        HeapPullRequestStore store = new HeapPullRequestStore(prs.size());
+        for (PullRequest pr : prs) {
+            store.add(pr);
+        }
+        return store;
+    }
+
+    /**
+     * Opens a snapshot file previously written by {@link #write(File)}
+     * 
+     * @param file
+     *            Snapshot file
+     * @return Memory mapped store
+     * @throws IOException
+     *             Thrown if the snapshot cannot be opened or is invalid
+     */
+    public static PullRequestStore open(File file) throws IOException {
+        return MappedPullRequestStore.open(file);
+    }
+
+    /**
+     * Gets the snapshot file for a repository within a directory
+     * 
+     * @param dir
+     *            Directory
+     * @param repo
+     *            Repository
+     * @return Snapshot file
+     */
+    public static File getSnapshotFile(File dir, RepositoryId repo) {
+        return new File(new File(dir, repo.getOwner()), repo.getName() + ".snapshot");
+    }
+
+    /**
+     * Gets the number of pull requests in the store
+     * 
+     * @return Number of pull requests
+     */
+    public abstract int size();
+
+    /**
+     * Gets the number of distinct users, authors and merging users, in the
+     * store
+     * 
+     * @return Number of users
+     */
+    public abstract int getUserCount();
+
+    /**
+     * Gets the user with a given code
+     * 
+     * @param code
+     *            Code
+     * @return User
+     */
+    public abstract User getUser(int code);
+
+    /**
+     * Gets the code for a user
+     * 
+     * @param login
+     *            Login, matched case insensitively
+     * @return Code, {@link #NONE} if no such user
+     */
+    public abstract int findUser(String login);
+
+    /**
+     * Gets the number of distinct base branches in the store
+     * 
+     * @return Number of branches
+     */
+    public abstract int getBranchCount();
+
+    /**
+     * Gets the base branch with a given code
+     * 
+     * @param code
+     *            Code
+     * @return Branch
+     */
+    public abstract String getBranch(int code);
+
+    /**
+     * Gets the code for a base branch
+     * 
+     * @param branch
+     *            Branch
+     * @return Code, {@link #NONE} if no such branch
+     */
+    public abstract int findBranch(String branch);
+
+    protected abstract int getNumber(int row);
+
+    protected abstract int getAuthor(int row);
+
+    protected abstract int getMerger(int row);
+
+    protected abstract int getBase(int row);
+
+    protected abstract long getCreatedAt(int row);
+
+    protected abstract long getMergedAt(int row);
+
+    protected abstract long getClosedAt(int row);
+
+    protected abstract boolean isMergeable(int row);
+
+    /**
+     * Selects all rows
+     * 
+     * @return Selected rows
+     */
+    public BitSet selectAll() {
+        BitSet rows = new BitSet(size());
+        rows.set(0, size());
+        return rows;
+    }
+
+    /**
+     * Selects the rows matching a filter
+     * 
+     * @param filter
+     *            Filter, labels are not held in the store so must not be set
+     * @return Selected rows
+     */
+    public BitSet select(PullRequestFilter filter) {
+        if (filter.getLabel() != null)
+            throw new IllegalArgumentException("Pull request labels are not held in the store");
+        BitSet rows = selectAll();
+        if (filter.getSince() != null)
+            selectCreatedFrom(rows, filter.getSince().getTime());
+        if (filter.getUntil() != null)
+            selectCreatedBefore(rows, filter.getUntil().getTime());
+        if (filter.getBase() != null) {
+            int code = findBranch(filter.getBase());
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                if (code == NONE || getBase(row) != code)
+                    rows.clear(row);
+            }
+        }
+        if (filter.getAuthor() != null)
+            selectAuthor(rows, filter.getAuthor());
+        return rows;
+    }
+
+    /**
+     * Narrows a selection to pull requests opened by a user
+     * 
+     * @param rows
+     *            Selection
+     * @param login
+     *            Login
+     */
+    public void selectAuthor(BitSet rows, String login) {
+        int code = findUser(login);
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (code == NONE || getAuthor(row) != code)
+                rows.clear(row);
+        }
+    }
+
+    /**
+     * Narrows a selection to pull requests merged by a user
+     * 
+     * @param rows
+     *            Selection
+     * @param login
+     *            Login
+     */
+    public void selectMerger(BitSet rows, String login) {
+        int code = findUser(login);
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (code == NONE || getMerger(row) != code)
+                rows.clear(row);
+        }
+    }
+
+    /**
+     * Narrows a selection to pull requests created at or after a time
+     * 
+     * @param rows
+     *            Selection
+     * @param time
+     *            Time in epoch milliseconds
+     */
+    public void selectCreatedFrom(BitSet rows, long time) {
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (getCreatedAt(row) < time)
+                rows.clear(row);
+        }
+    }
+
+    /**
+     * Narrows a selection to pull requests created before a time
+     * 
+     * @param rows
+     *            Selection
+     * @param time
+     *            Time in epoch milliseconds
+     */
+    public void selectCreatedBefore(BitSet rows, long time) {
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            if (getCreatedAt(row) >= time)
+                rows.clear(row);
+        }
+    }
+
+    /**
+     * Counts the selected pull requests opened by each user as of a given
+     * time
+     * 
+     * @param rows
+     *            Selection
+     * @param now
+     *            Time as of which to count
+     * @return Counts indexed by user code
+     */
+    public long[] countByAuthor(BitSet rows, Instant now) {
+        long[] counts = new long[getUserCount()];
+        long nowMillis = now.getMillis();
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            int author = getAuthor(row);
+            if (getCreatedAt(row) <= nowMillis && author != NONE)
+                counts[author]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the selected pull requests merged by each user as of a given time
+     * 
+     * @param rows
+     *            Selection
+     * @param now
+     *            Time as of which to count
+     * @return Counts indexed by user code
+     */
+    public long[] countByMerger(BitSet rows, Instant now) {
+        long[] counts = new long[getUserCount()];
+        long nowMillis = now.getMillis();
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            long mergedAt = getMergedAt(row);
+            int merger = getMerger(row);
+            if (mergedAt != PullRequestFacts.NONE && mergedAt <= nowMillis && merger != NONE)
+                counts[merger]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Classifies a row
+     * 
+     * @param row
+     *            Row
+     * @param now
+     *            Time as of which to classify
+     * @return Facts, {@code null} if the pull request was created after the
+     *         given time
+     */
+    public PullRequestFacts getFacts(int row, Instant now) {
+        if (row < 0 || row >= size())
+            throw new IndexOutOfBoundsException("No such row " + row);
+        int author = getAuthor(row), merger = getMerger(row);
+        return PullRequestFacts.of(getNumber(row), getCreatedAt(row), getMergedAt(row), getClosedAt(row),
+                isMergeable(row), author != NONE ? getUser(author) : null, merger != NONE ? getUser(merger) : null,
+                now);
+    }
+
+    /**
+     * Collects the selected rows into a collector as of the collector's time
+     * 
+     * @param collector
+     *            Collector, must have been started
+     * @param rows
+     *            Selection
+     */
+    public void collect(PullRequestsCollector collector, BitSet rows) {
+        Instant now = collector.getNow();
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            PullRequestFacts facts = getFacts(row, now);
+            if (facts != null)
+                collector.collect(facts);
+        }
+    }
+
+    /**
+     * Writes the store to a snapshot file which may later be memory mapped
+     * with {@link #open(File)}
+     * <p>
+     * A snapshot consists of a header, a fixed width record per row and then
+     * tables of the user logins and branch names that the records refer to.
+     * </p>
+     * 
+     * @param file
+     *            Snapshot file
+     * @throws IOException
+     *             Thrown if the snapshot cannot be written
+     */
+    public void write(File file) throws IOException {
+        if ((long) size() * RECORD_SIZE > Integer.MAX_VALUE - HEADER_SIZE)
+            throw new IOException("Too many pull requests to write a snapshot");
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Unable to create snapshot directory " + dir);
+
+        // Write to a temporary file and then move into place so that an
+        // interrupted write never leaves a truncated snapshot behind
+        File temp = new File(dir, file.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            output.writeInt(SNAPSHOT_MAGIC);
+            output.writeInt(SNAPSHOT_VERSION);
+            output.writeInt(size());
+            output.writeInt(getUserCount());
+            output.writeInt(getBranchCount());
+            output.writeInt(RECORD_SIZE);
+
+            byte[] padding = new byte[RECORD_SIZE - FLAGS_OFFSET - 1];
+            for (int row = 0; row < size(); row++) {
+                output.writeLong(getCreatedAt(row));
+                output.writeLong(getMergedAt(row));
+                output.writeLong(getClosedAt(row));
+                output.writeInt(getNumber(row));
+                output.writeInt(getAuthor(row));
+                output.writeInt(getMerger(row));
+                output.writeInt(getBase(row));
+                output.writeByte(isMergeable(row) ? FLAG_MERGEABLE : 0);
+                output.write(padding);
+            }
+
+            for (int code = 0; code < getUserCount(); code++) {
+                User user = getUser(code);
+                output.writeInt(user.getId());
+                writeString(output, user.getLogin());
+            }
+            for (int code = 0; code < getBranchCount(); code++) {
+                writeString(output, getBranch(code));
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+}